@@ -0,0 +1,145 @@
+// Java port of api-load.js for environments without k6 (same stages, same 4-request batch, sleep 1s per iteration).
+// Requires Java 21 (run as a single-file program; the load generator itself uses virtual threads).
+// Prints throughput, latency percentiles, the 503 rate and sampled hikaricp.connections.pending.
+//
+//   BASE_URL=http://localhost:8080 USERNAME=loadtest PASSWORD=password PEAK_VUS=1000 java -Xmx1g loadtest/ApiLoad.java
+//
+// PEAK_VUS (default 1000) scales the stages: 30s to PEAK_VUS/5, 1m to PEAK_VUS, 1m hold, 30s down.
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ApiLoad {
+    static final String BASE = System.getenv().getOrDefault("BASE_URL", "http://localhost:8080");
+    static final int PEAK = Integer.parseInt(System.getenv().getOrDefault("PEAK_VUS", "1000"));
+    static final int[][] STAGES = {{30, PEAK / 5}, {60, PEAK}, {60, PEAK}, {30, 0}};
+    static final String[] PATHS = {"/api/groups/invite/my", "/api/friends/list/detailed",
+            "/api/challenges/progress", "/api/challenges/ranking"};
+    static final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30)).executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    static final ConcurrentLinkedQueue<Long> latenciesMicros = new ConcurrentLinkedQueue<>();
+    static final ConcurrentHashMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    static final AtomicLong errors = new AtomicLong();
+    static String token;
+
+    public static void main(String[] args) throws Exception {
+        String login = "{\"username\":\"" + System.getenv().getOrDefault("USERNAME", "loadtest")
+                + "\",\"password\":\"" + System.getenv().getOrDefault("PASSWORD", "password") + "\"}";
+        HttpResponse<String> res = client.send(HttpRequest.newBuilder(URI.create(BASE + "/api/auth/login"))
+                .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(login)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher m = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"").matcher(res.body());
+        if (!m.find()) throw new IllegalStateException("login failed: " + res.body());
+        token = m.group(1);
+
+        List<AtomicBoolean> vus = new ArrayList<>();
+        List<Double> pending = new ArrayList<>();
+        long start = System.nanoTime();
+        int total = Arrays.stream(STAGES).mapToInt(s -> s[0]).sum();
+        long nextSample = 0;
+        while (true) {
+            double t = (System.nanoTime() - start) / 1e9;
+            if (t >= total) break;
+            int target = target(t);
+            while (vus.size() < target) {
+                AtomicBoolean alive = new AtomicBoolean(true);
+                vus.add(alive);
+                Thread.startVirtualThread(() -> vu(alive));
+            }
+            while (vus.size() > target) vus.remove(vus.size() - 1).set(false);
+            if (t * 1000 >= nextSample) {
+                nextSample += 1000;
+                Thread.startVirtualThread(() -> { Double v = metric("hikaricp.connections.pending"); if (v != null) synchronized (pending) { pending.add(v); } });
+            }
+            Thread.sleep(100);
+        }
+        vus.forEach(v -> v.set(false));
+        Thread.sleep(5000);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] lat = latenciesMicros.stream().mapToLong(Long::longValue).sorted().toArray();
+        long requests = lat.length + errors.get();
+        long s503 = statuses.getOrDefault(503, new AtomicLong()).get();
+        long s5xx = statuses.entrySet().stream().filter(e -> e.getKey() >= 500).mapToLong(e -> e.getValue().get()).sum();
+        System.out.printf("requests=%d elapsed=%.1fs throughput=%.1f req/s%n", requests, elapsed, requests / elapsed);
+        System.out.printf("latency ms: avg=%.1f p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+                Arrays.stream(lat).average().orElse(0) / 1000, pct(lat, 50), pct(lat, 95), pct(lat, 99),
+                lat.length > 0 ? lat[lat.length - 1] / 1000.0 : 0);
+        System.out.printf("status=%s transportErrors=%d 503=%d (%.2f%%) 5xx=%d (%.2f%%)%n", new TreeMap<>(statuses),
+                errors.get(), s503, 100.0 * s503 / requests, s5xx, 100.0 * s5xx / requests);
+        synchronized (pending) {
+            System.out.printf("hikaricp.connections.pending samples=%d max=%.0f mean=%.2f nonzero=%d%n", pending.size(),
+                    pending.stream().mapToDouble(Double::doubleValue).max().orElse(0),
+                    pending.stream().mapToDouble(Double::doubleValue).average().orElse(0),
+                    pending.stream().filter(v -> v > 0).count());
+        }
+        System.out.println("concurrency-limit.rejected=" + metric("http.concurrency-limit.rejected"));
+        System.exit(0);
+    }
+
+    static int target(double t) {
+        int from = 0;
+        double offset = 0;
+        for (int[] stage : STAGES) {
+            if (t < offset + stage[0]) return (int) Math.round(from + (stage[1] - from) * (t - offset) / stage[0]);
+            offset += stage[0];
+            from = stage[1];
+        }
+        return 0;
+    }
+
+    static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, idx)] / 1000.0;
+    }
+
+    static void vu(AtomicBoolean alive) {
+        while (alive.get()) {
+            List<CompletableFuture<?>> batch = new ArrayList<>();
+            for (String path : PATHS) {
+                long t0 = System.nanoTime();
+                batch.add(client.sendAsync(HttpRequest.newBuilder(URI.create(BASE + path))
+                                .header("Authorization", "Bearer " + token).timeout(Duration.ofSeconds(60)).build(),
+                        HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((r, e) -> {
+                            if (e != null) { errors.incrementAndGet(); return; }
+                            latenciesMicros.add((System.nanoTime() - t0) / 1000);
+                            statuses.computeIfAbsent(r.statusCode(), k -> new AtomicLong()).incrementAndGet();
+                        }));
+            }
+            try {
+                CompletableFuture.allOf(batch.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    static Double metric(String name) {
+        try {
+            HttpResponse<String> r = client.send(HttpRequest.newBuilder(URI.create(BASE + "/actuator/metrics/" + name))
+                    .header("Authorization", "Bearer " + token).timeout(Duration.ofSeconds(10)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher m = Pattern.compile("\"value\"\\s*:\\s*([0-9.Ee+-]+)").matcher(r.body());
+            return m.find() ? Double.valueOf(m.group(1)) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+// k6 load test for the blocking REST endpoints.
+// Run it once with VIRTUAL_THREADS_ENABLED=false and once with true, against the same DB, and compare
+// http_req_duration, http_reqs and the 503 rate (http.concurrency-limit.rejected on /actuator/metrics).
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e USERNAME=loadtest -e PASSWORD=password loadtest/api-load.js
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+
+export const options = {
+  scenarios: {
+    ramp: {
+      executor: 'ramping-vus',
+      startVUs: 0,
+      stages: [
+        { duration: '30s', target: 200 },
+        { duration: '1m', target: 1000 },
+        { duration: '1m', target: 1000 },
+        { duration: '30s', target: 0 },
+      ],
+    },
+  },
+  thresholds: {
+    http_req_failed: ['rate<0.01'],
+    http_req_duration: ['p(95)<500'],
+  },
+};
+
+export function setup() {
+  const res = http.post(`${BASE_URL}/api/auth/login`,
+    JSON.stringify({ username: __ENV.USERNAME || 'loadtest', password: __ENV.PASSWORD || 'password' }),
+    { headers: { 'Content-Type': 'application/json' } });
+  check(res, { 'logged in': (r) => r.status === 200 });
+  return { token: res.json('accessToken') };
+}
+
+export default function (data) {
+  const params = { headers: { Authorization: `Bearer ${data.token}` } };
+  const responses = http.batch([
+    ['GET', `${BASE_URL}/api/groups/invite/my`, null, params],
+    ['GET', `${BASE_URL}/api/friends/list/detailed`, null, params],
+    ['GET', `${BASE_URL}/api/challenges/progress`, null, params],
+    ['GET', `${BASE_URL}/api/challenges/ranking`, null, params],
+  ]);
+  responses.forEach((r) => check(r, { 'not 5xx': (res) => res.status < 500 }));
+  sleep(1);
+}
@@ -0,0 +1,22 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Anonymous name (group alias) cache configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.anonymous-names.cache")
+public class AnonymousNameCacheProperties {
+
+    private long maximumSize = 100000;
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+}
@@ -0,0 +1,48 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Anonymous name configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.anonymous-names")
+public class AnonymousNameProperties {
+
+    /**
+     * STORED: random names persisted in group_member_aliases and rotated daily.
+     * DERIVED: names computed from an HMAC of (group, user, date) without any storage.
+     */
+    public enum Mode {
+        STORED, DERIVED
+    }
+
+    private Mode mode = Mode.STORED;
+    private String secret;
+    private boolean avoidCollisions = false;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    public boolean isAvoidCollisions() {
+        return avoidCollisions;
+    }
+
+    public void setAvoidCollisions(boolean avoidCollisions) {
+        this.avoidCollisions = avoidCollisions;
+    }
+}
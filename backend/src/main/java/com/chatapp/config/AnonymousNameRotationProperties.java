@@ -0,0 +1,31 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Daily anonymous name rotation job configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.anonymous-names.rotation")
+public class AnonymousNameRotationProperties {
+
+    private int chunkSize = 1000;
+    private boolean catchUpOnStartup = true;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isCatchUpOnStartup() {
+        return catchUpOnStartup;
+    }
+
+    public void setCatchUpOnStartup(boolean catchUpOnStartup) {
+        this.catchUpOnStartup = catchUpOnStartup;
+    }
+}
@@ -0,0 +1,51 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-user challenge statistics (user_challenge_stats) backfill configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.challenges.stats")
+public class ChallengeStatsProperties {
+
+    /**
+     * Users processed per backfill transaction.
+     */
+    private int backfillChunkSize = 500;
+
+    /**
+     * Create missing rows from challenge_completions on startup.
+     */
+    private boolean backfillOnStartup = true;
+
+    /**
+     * Recount every user's row from challenge_completions on startup, not only missing ones.
+     */
+    private boolean rebuildOnStartup = false;
+
+    public int getBackfillChunkSize() {
+        return backfillChunkSize;
+    }
+
+    public void setBackfillChunkSize(int backfillChunkSize) {
+        this.backfillChunkSize = backfillChunkSize;
+    }
+
+    public boolean isBackfillOnStartup() {
+        return backfillOnStartup;
+    }
+
+    public void setBackfillOnStartup(boolean backfillOnStartup) {
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    public boolean isRebuildOnStartup() {
+        return rebuildOnStartup;
+    }
+
+    public void setRebuildOnStartup(boolean rebuildOnStartup) {
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+}
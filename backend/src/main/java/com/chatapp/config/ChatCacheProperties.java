@@ -0,0 +1,49 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory recent message cache configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.chat.cache")
+public class ChatCacheProperties {
+    
+    private boolean enabled = true;
+    private int messagesPerRoom = 100;
+    private int maxRooms = 10000;
+    private long maxBytes = 64L * 1024 * 1024;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public int getMessagesPerRoom() {
+        return messagesPerRoom;
+    }
+    
+    public void setMessagesPerRoom(int messagesPerRoom) {
+        this.messagesPerRoom = messagesPerRoom;
+    }
+    
+    public int getMaxRooms() {
+        return maxRooms;
+    }
+    
+    public void setMaxRooms(int maxRooms) {
+        this.maxRooms = maxRooms;
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,40 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ephemeral room event (join/leave/typing) configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.chat.events")
+public class ChatEventProperties {
+
+    private double ratePerSecond = 5;
+    private int burst = 10;
+    private long typingWindowMs = 3000;
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public long getTypingWindowMs() {
+        return typingWindowMs;
+    }
+
+    public void setTypingWindowMs(long typingWindowMs) {
+        this.typingWindowMs = typingWindowMs;
+    }
+}
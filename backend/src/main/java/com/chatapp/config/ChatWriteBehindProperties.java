@@ -0,0 +1,76 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind chat message persistence configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.chat.write-behind")
+public class ChatWriteBehindProperties {
+    
+    private boolean enabled = true;
+    private int queueCapacity = 10000;
+    private int batchSize = 100;
+    private long flushIntervalMs = 50;
+    private long offerTimeoutMs = 20;
+    private int maxRetries = 3;
+    private String spillDirectory = "data/chat-spill";
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+    
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+    
+    public long getOfferTimeoutMs() {
+        return offerTimeoutMs;
+    }
+    
+    public void setOfferTimeoutMs(long offerTimeoutMs) {
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+    
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+    
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+    
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+    
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+}
@@ -0,0 +1,39 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compact binary STOMP frame configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.websocket.compact")
+public class CompactFrameProperties {
+
+    /**
+     * Whether subscriptions may ask for the compact encoding. Enabling it also
+     * preserves publish order per session, which the interning tables rely on.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum interned rooms and senders per session. Further values are sent inline.
+     */
+    private int maxInternedEntries = 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxInternedEntries() {
+        return maxInternedEntries;
+    }
+
+    public void setMaxInternedEntries(int maxInternedEntries) {
+        this.maxInternedEntries = maxInternedEntries;
+    }
+}
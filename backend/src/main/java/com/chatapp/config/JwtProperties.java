@@ -12,6 +12,7 @@ public class JwtProperties {
     
     private String secret;
     private Long expiration;
+    private boolean claimsOnly;
     
     public String getSecret() {
         return secret;
@@ -28,4 +29,12 @@ public class JwtProperties {
     public void setExpiration(Long expiration) {
         this.expiration = expiration;
     }
+    
+    public boolean isClaimsOnly() {
+        return claimsOnly;
+    }
+    
+    public void setClaimsOnly(boolean claimsOnly) {
+        this.claimsOnly = claimsOnly;
+    }
 }
@@ -0,0 +1,26 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory challenge leaderboard configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.challenges.leaderboard")
+public class LeaderboardProperties {
+
+    /**
+     * Interval between full rebuilds from the database. Picks up progress written
+     * by other nodes or outside the application.
+     */
+    private long rebuildIntervalMs = 300000;
+
+    public long getRebuildIntervalMs() {
+        return rebuildIntervalMs;
+    }
+
+    public void setRebuildIntervalMs(long rebuildIntervalMs) {
+        this.rebuildIntervalMs = rebuildIntervalMs;
+    }
+}
@@ -0,0 +1,121 @@
+package com.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate limits for chat messages sent over STOMP to /app/chat.sendMessage.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.websocket.rate-limit")
+public class MessageRateLimitProperties {
+
+    /**
+     * Whether chat messages are rate limited at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Limit for each STOMP session.
+     */
+    private Limit session = new Limit(5, 10);
+
+    /**
+     * Limit for each user across all of their sessions.
+     */
+    private Limit user = new Limit(10, 20);
+
+    /**
+     * Limit for each room across all senders.
+     */
+    private Limit room = new Limit(50, 100);
+
+    /**
+     * User and room buckets not used for this long are dropped. Should be longer than
+     * the time a bucket takes to refill, so a dropped bucket would have been full anyway.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Limit getSession() {
+        return session;
+    }
+
+    public void setSession(Limit session) {
+        this.session = session;
+    }
+
+    public Limit getUser() {
+        return user;
+    }
+
+    public void setUser(Limit user) {
+        this.user = user;
+    }
+
+    public Limit getRoom() {
+        return room;
+    }
+
+    public void setRoom(Limit room) {
+        this.room = room;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static class Limit {
+
+        /**
+         * Sustained messages per second. Zero or less disables this limit.
+         */
+        private double ratePerSecond;
+
+        /**
+         * Messages that may be sent at once before the rate applies.
+         */
+        private int burst;
+
+        public Limit() {
+        }
+
+        public Limit(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public boolean isEnabled() {
+            return ratePerSecond > 0 && burst > 0;
+        }
+    }
+}
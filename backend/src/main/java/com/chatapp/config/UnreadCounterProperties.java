@@ -0,0 +1,31 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chat room unread counter configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.chat.unread")
+public class UnreadCounterProperties {
+
+    private long persistIntervalMs = 5000;
+    private long idleTimeoutMs = 1800000;
+
+    public long getPersistIntervalMs() {
+        return persistIntervalMs;
+    }
+
+    public void setPersistIntervalMs(long persistIntervalMs) {
+        this.persistIntervalMs = persistIntervalMs;
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+}
@@ -0,0 +1,147 @@
+package com.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * STOMP message broker configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.websocket.broker")
+public class WebSocketBrokerProperties {
+
+    /**
+     * SIMPLE: in-process broker (single node).
+     * RELAY: relay /topic to an external STOMP broker.
+     * CLUSTER: in-process broker on each node, broadcasts fanned out over a shared bus.
+     */
+    public enum Mode {
+        SIMPLE, RELAY, CLUSTER
+    }
+
+    public enum Bus {
+        REDIS, IN_MEMORY
+    }
+
+    private Mode mode = Mode.SIMPLE;
+    /**
+     * STOMP heart-beat interval offered by the in-process broker (simple/cluster), in both directions.
+     * Must stay below half of app.presence.heartbeat-timeout-ms so idle subscribers are not expired.
+     */
+    private long heartbeatIntervalMs = 10000;
+    private final Relay relay = new Relay();
+    private final Cluster cluster = new Cluster();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public long getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    public Relay getRelay() {
+        return relay;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public static class Relay {
+
+        private String host = "localhost";
+        private int port = 61613;
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+        private String virtualHost;
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getClientLogin() {
+            return clientLogin;
+        }
+
+        public void setClientLogin(String clientLogin) {
+            this.clientLogin = clientLogin;
+        }
+
+        public String getClientPasscode() {
+            return clientPasscode;
+        }
+
+        public void setClientPasscode(String clientPasscode) {
+            this.clientPasscode = clientPasscode;
+        }
+
+        public String getSystemLogin() {
+            return systemLogin;
+        }
+
+        public void setSystemLogin(String systemLogin) {
+            this.systemLogin = systemLogin;
+        }
+
+        public String getSystemPasscode() {
+            return systemPasscode;
+        }
+
+        public void setSystemPasscode(String systemPasscode) {
+            this.systemPasscode = systemPasscode;
+        }
+
+        public String getVirtualHost() {
+            return virtualHost;
+        }
+
+        public void setVirtualHost(String virtualHost) {
+            this.virtualHost = virtualHost;
+        }
+    }
+
+    public static class Cluster {
+
+        private Bus bus = Bus.REDIS;
+        private String channelPrefix = "chat:";
+
+        public Bus getBus() {
+            return bus;
+        }
+
+        public void setBus(Bus bus) {
+            this.bus = bus;
+        }
+
+        public String getChannelPrefix() {
+            return channelPrefix;
+        }
+
+        public void setChannelPrefix(String channelPrefix) {
+            this.channelPrefix = channelPrefix;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * WebSocket channel executor and transport limit configuration properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.websocket.transport")
+public class WebSocketTransportProperties {
+
+    /**
+     * What to do with a session whose send buffer overflows.
+     * DROP: discard the oldest buffered messages and keep the session.
+     * DISCONNECT: close the session so the client reconnects and resyncs.
+     * Either way a session stuck in a single send longer than send-time-limit is closed.
+     */
+    public enum SlowConsumerPolicy {
+        DROP, DISCONNECT
+    }
+
+    private final Inbound inbound = new Inbound();
+    private final ChannelExecutor outbound = new ChannelExecutor();
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+    private DataSize sendBufferSizeLimit = DataSize.ofKilobytes(512);
+    private DataSize messageSizeLimit = DataSize.ofKilobytes(64);
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+    public Inbound getInbound() {
+        return inbound;
+    }
+
+    public ChannelExecutor getOutbound() {
+        return outbound;
+    }
+
+    public Duration getSendTimeLimit() {
+        return sendTimeLimit;
+    }
+
+    public void setSendTimeLimit(Duration sendTimeLimit) {
+        this.sendTimeLimit = sendTimeLimit;
+    }
+
+    public DataSize getSendBufferSizeLimit() {
+        return sendBufferSizeLimit;
+    }
+
+    public void setSendBufferSizeLimit(DataSize sendBufferSizeLimit) {
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+    }
+
+    public DataSize getMessageSizeLimit() {
+        return messageSizeLimit;
+    }
+
+    public void setMessageSizeLimit(DataSize messageSizeLimit) {
+        this.messageSizeLimit = messageSizeLimit;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public static class ChannelExecutor {
+
+        private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private int maxPoolSize = Integer.MAX_VALUE;
+        private int queueCapacity = Integer.MAX_VALUE;
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+        public int getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(int corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    public static class Inbound extends ChannelExecutor {
+
+        /**
+         * null: follow spring.threads.virtual.enabled (ignored below Java 21).
+         * true/false: set explicitly; true fails at startup below Java 21.
+         */
+        private Boolean virtualThreads;
+
+        public Boolean getVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(Boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+    }
+}
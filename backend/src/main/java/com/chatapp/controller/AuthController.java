@@ -29,6 +29,7 @@ import com.chatapp.dto.SignupRequest;
 import com.chatapp.model.User;
 import com.chatapp.repository.UserRepository;
 import com.chatapp.security.JwtUtils;
+import com.chatapp.security.TokenVersionStore;
 import com.chatapp.security.UserPrincipal;
 
 import jakarta.validation.Valid;
@@ -52,6 +53,9 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
     
+    @Autowired
+    TokenVersionStore tokenVersionStore;
+    
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
         try {
@@ -156,6 +160,25 @@ public class AuthController {
         }
     }
     
+    /**
+     * Revoke every token issued to the current user (sign out on all devices).
+     */
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal userPrincipal)) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "認証が必要です");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        
+        tokenVersionStore.revokeAll(userPrincipal.getId());
+        logger.info("Revoked all tokens for user: {}", userPrincipal.getUsername());
+        
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "すべての端末からログアウトしました");
+        return ResponseEntity.ok(response);
+    }
+    
     // フロントエンドとの互換性のためのエイリアス
     @PostMapping("/signup")
     public ResponseEntity<?> signupUser(@Valid @RequestBody SignupRequest signUpRequest) {
@@ -1,21 +1,25 @@
 package com.chatapp.controller;
 
 import com.chatapp.dto.ApiResponse;
+import com.chatapp.dto.LeaderboardDtos.RankingEntry;
+import com.chatapp.dto.LeaderboardDtos.WindowRankingEntry;
 import com.chatapp.model.ChallengeCompletion;
 import com.chatapp.model.DailyChallenge;
 import com.chatapp.model.User;
 import com.chatapp.model.UserBadge;
+import com.chatapp.model.UserChallengeStats;
 import com.chatapp.model.UserProgress;
 import com.chatapp.repository.UserRepository;
 import com.chatapp.service.BadgeService;
 import com.chatapp.service.ChallengeService;
+import com.chatapp.service.LeaderboardService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -181,10 +185,10 @@ public class ChallengeController {
      * GET /api/challenges/ranking
      */
     @GetMapping("/ranking")
-    public ResponseEntity<ApiResponse<List<UserProgress>>> getRanking(
+    public ResponseEntity<ApiResponse<List<RankingEntry>>> getRanking(
             @RequestParam(defaultValue = "10") int limit) {
         try {
-            List<UserProgress> ranking = challengeService.getTopRanking(limit);
+            List<RankingEntry> ranking = challengeService.getTopRanking(limit);
             
             return ResponseEntity.ok(ApiResponse.success(ranking));
         } catch (Exception e) {
@@ -193,6 +197,67 @@ public class ChallengeController {
         }
     }
     
+    /**
+     * 自分の順位を取得（まだ進捗がない場合は data が null）
+     * GET /api/challenges/ranking/me
+     */
+    @GetMapping("/ranking/me")
+    public ResponseEntity<ApiResponse<RankingEntry>> getMyRanking(Authentication authentication) {
+        try {
+            String username = authentication.getName();
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("ユーザーが見つかりません"));
+            
+            return ResponseEntity.ok(ApiResponse.success(challengeService.getUserRanking(user.getId())));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("順位の取得に失敗しました: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 期間別ランキングを取得（day: 今日 / week: 直近7日 / month: 直近30日）
+     * GET /api/challenges/ranking/{window}
+     */
+    @GetMapping("/ranking/{window}")
+    public ResponseEntity<ApiResponse<List<WindowRankingEntry>>> getWindowRanking(
+            @PathVariable String window, @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<WindowRankingEntry> ranking = challengeService.getTopRanking(parseWindow(window), limit);
+            
+            return ResponseEntity.ok(ApiResponse.success(ranking));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("無効なランキング期間です: " + window));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("ランキングの取得に失敗しました: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 期間別の自分の順位を取得（期間内に達成がない場合は data が null）
+     * GET /api/challenges/ranking/{window}/me
+     */
+    @GetMapping("/ranking/{window}/me")
+    public ResponseEntity<ApiResponse<WindowRankingEntry>> getMyWindowRanking(
+            @PathVariable String window, Authentication authentication) {
+        try {
+            LeaderboardService.Window rankingWindow = parseWindow(window);
+            String username = authentication.getName();
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("ユーザーが見つかりません"));
+            
+            return ResponseEntity.ok(ApiResponse.success(challengeService.getUserRanking(rankingWindow, user.getId())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("無効なランキング期間です: " + window));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("順位の取得に失敗しました: " + e.getMessage()));
+        }
+    }
+    
     /**
      * 統計情報を取得
      * GET /api/challenges/stats
@@ -206,13 +271,12 @@ public class ChallengeController {
             
             UserProgress progress = challengeService.getUserProgress(user.getId());
             
-            // 今週の達成数
-            LocalDateTime startOfWeek = LocalDateTime.now().minusDays(7);
-            long weekCount = challengeService.countCompletionsBetween(user.getId(), startOfWeek, LocalDateTime.now());
+            // 総達成数・タイプ別達成数（user_challenge_stats から取得）
+            UserChallengeStats challengeStats = challengeService.getChallengeStats(user.getId());
             
-            // 今月の達成数
-            LocalDateTime startOfMonth = LocalDateTime.now().minusDays(30);
-            long monthCount = challengeService.countCompletionsBetween(user.getId(), startOfMonth, LocalDateTime.now());
+            // 直近7日・30日の達成数（期間別ランキングの集計から取得）
+            long weekCount = challengeService.countCompletions(LeaderboardService.Window.WEEK, user.getId());
+            long monthCount = challengeService.countCompletions(LeaderboardService.Window.MONTH, user.getId());
             
             Map<String, Object> stats = new HashMap<>();
             stats.put("totalPoints", progress.getTotalPoints());
@@ -221,6 +285,8 @@ public class ChallengeController {
             stats.put("longestStreak", progress.getLongestStreak());
             stats.put("weekCount", weekCount);
             stats.put("monthCount", monthCount);
+            stats.put("totalCompletions", challengeStats.getTotalCompletions());
+            stats.put("completionsByType", challengeStats.getCountsByType());
             stats.put("flowerEmoji", progress.getFlowerEmoji());
             
             return ResponseEntity.ok(ApiResponse.success(stats));
@@ -289,4 +355,8 @@ public class ChallengeController {
                     .body(ApiResponse.error("バッジの既読化に失敗しました: " + e.getMessage()));
         }
     }
+    
+    private static LeaderboardService.Window parseWindow(String window) {
+        return LeaderboardService.Window.valueOf(window.toUpperCase(Locale.ROOT));
+    }
 }
@@ -1,6 +1,6 @@
 package com.chatapp.controller;
 
-import java.util.List;
+import java.security.Principal;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,47 +8,52 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import com.chatapp.dto.ChatMessageDto;
-import com.chatapp.model.User;
-import com.chatapp.repository.UserRepository;
+import com.chatapp.dto.ChatMessagePageDto;
+import com.chatapp.dto.RoomEventDto;
+import com.chatapp.security.StompPrincipal;
 import com.chatapp.service.AnonymousNameService;
 import com.chatapp.service.ChatService;
+import com.chatapp.websocket.ChatBroadcaster;
+import com.chatapp.websocket.RoomEventRelay;
 
 @Controller
 @RequestMapping("/chat")
 public class ChatController {
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private ChatBroadcaster chatBroadcaster;
     
     @Autowired
     private ChatService chatService;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private AnonymousNameService anonymousNameService;
     
+    @Autowired
+    private RoomEventRelay roomEventRelay;
+    
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(@Payload ChatMessageDto chatMessage) {
+    public void sendMessage(@Payload ChatMessageDto chatMessage, Principal principal) {
+        // 送信者はペイロードではなく、CONNECT時に認証したセッションのユーザーを使う
+        StompPrincipal sender = (StompPrincipal) principal;
+        chatMessage.setSenderUsername(sender.getName());
+        
         // メッセージをデータベースに保存
-        ChatMessageDto savedMessage = chatService.saveMessage(chatMessage);
+        ChatMessageDto savedMessage = chatService.saveMessage(chatMessage, sender);
         
         // グループチャットの場合は匿名名を適用
         if (chatMessage.getRoomId().startsWith("group-")) {
             try {
                 String groupIdStr = chatMessage.getRoomId().substring(6);
                 Long groupId = Long.valueOf(groupIdStr);
-                User sender = userRepository.findByUsername(chatMessage.getSenderUsername())
-                        .orElseThrow(() -> new RuntimeException("User not found"));
                 
                 // 匿名名を取得（全員が同じ匿名名を見る2パラメータバージョン）
                 String anonymousName = anonymousNameService.getAnonymousName(
@@ -57,7 +62,6 @@ public class ChatController {
                 );
                 
                 savedMessage.setSenderDisplayName(anonymousName);
-                System.out.println("✅ Applied anonymous name: " + anonymousName + " for user: " + sender.getUsername() + " (ID: " + sender.getId() + ") in group: " + groupId);
             } catch (NumberFormatException e) {
                 System.err.println("❌ Invalid group ID format: " + e.getMessage());
             } catch (RuntimeException e) {
@@ -68,64 +72,76 @@ public class ChatController {
         }
         
         // 指定されたルームの全ユーザーにメッセージを送信
-        messagingTemplate.convertAndSend("/topic/" + chatMessage.getRoomId(), savedMessage);
+        chatBroadcaster.broadcast("/topic/" + chatMessage.getRoomId(), savedMessage);
     }
     
     @MessageMapping("/chat.addUser")
-    public void addUser(@Payload ChatMessageDto chatMessage, SimpMessageHeaderAccessor headerAccessor) {
+    public void addUser(@Payload ChatMessageDto chatMessage, SimpMessageHeaderAccessor headerAccessor,
+                        Principal principal) {
+        StompPrincipal sender = (StompPrincipal) principal;
+        
         // WebSocketセッションにユーザー名を追加
         Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
-        if (sessionAttributes == null) {
-            return;
+        if (sessionAttributes != null) {
+            sessionAttributes.put("username", sender.getName());
         }
-        sessionAttributes.put("username", chatMessage.getSenderUsername());
 
-        // JOIN メッセージを送信
-        chatMessage.setMessageType("JOIN");
-        ChatMessageDto savedMessage = chatService.saveMessage(chatMessage);
-        
-        messagingTemplate.convertAndSend("/topic/" + chatMessage.getRoomId(), savedMessage);
+        // JOIN は保存せず、一時イベントとして送る
+        roomEventRelay.publish(headerAccessor.getSessionId(), sender, RoomEventDto.Type.JOIN, chatMessage.getRoomId());
+    }
+    
+    @MessageMapping("/chat.event")
+    public void roomEvent(@Payload RoomEventDto event, SimpMessageHeaderAccessor headerAccessor, Principal principal) {
+        roomEventRelay.publish(headerAccessor.getSessionId(), (StompPrincipal) principal, event.getType(), event.getRoomId());
     }
     
     // REST API endpoints for retrieving messages
     
     @GetMapping("/messages/{roomId}")
     @org.springframework.web.bind.annotation.ResponseBody
-    public ResponseEntity<List<ChatMessageDto>> getMessagesByRoomId(
+    public ResponseEntity<ChatMessagePageDto> getMessagesByRoomId(
             @PathVariable String roomId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit,
             Authentication authentication) {
         String currentUsername = authentication.getName();
-        List<ChatMessageDto> messages = chatService.getMessagesByRoomId(roomId, currentUsername);
-        return ResponseEntity.ok(messages);
+        ChatMessagePageDto page = chatService.getMessagesByRoomId(roomId, currentUsername, before, limit);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/friends/{friendshipId}/messages")
     @org.springframework.web.bind.annotation.ResponseBody
-    public ResponseEntity<List<ChatMessageDto>> getFriendMessages(
+    public ResponseEntity<ChatMessagePageDto> getFriendMessages(
             @PathVariable Long friendshipId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit,
             Authentication authentication) {
         String currentUsername = authentication.getName();
-        List<ChatMessageDto> messages = chatService.getFriendMessages(friendshipId, currentUsername);
-        return ResponseEntity.ok(messages);
+        ChatMessagePageDto page = chatService.getFriendMessages(friendshipId, currentUsername, before, limit);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/groups/{groupId}/messages")
     @org.springframework.web.bind.annotation.ResponseBody
-    public ResponseEntity<List<ChatMessageDto>> getGroupMessages(
+    public ResponseEntity<ChatMessagePageDto> getGroupMessages(
             @PathVariable Long groupId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit,
             Authentication authentication) {
         String currentUsername = authentication.getName();
-        List<ChatMessageDto> messages = chatService.getGroupMessages(groupId, currentUsername);
-        return ResponseEntity.ok(messages);
+        ChatMessagePageDto page = chatService.getGroupMessages(groupId, currentUsername, before, limit);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/topics/{topicId}/messages")
     @org.springframework.web.bind.annotation.ResponseBody
-    public ResponseEntity<List<ChatMessageDto>> getTopicMessages(
+    public ResponseEntity<ChatMessagePageDto> getTopicMessages(
             @PathVariable Long topicId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit,
             Authentication authentication) {
         String currentUsername = authentication.getName();
-        List<ChatMessageDto> messages = chatService.getTopicMessages(topicId, currentUsername);
-        return ResponseEntity.ok(messages);
+        ChatMessagePageDto page = chatService.getTopicMessages(topicId, currentUsername, before, limit);
+        return ResponseEntity.ok(page);
     }
 }
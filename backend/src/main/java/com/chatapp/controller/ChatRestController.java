@@ -1,17 +1,28 @@
 package com.chatapp.controller;
 
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.dto.ChatMessagePageDto;
+import com.chatapp.dto.PresenceDtos.RoomPresence;
+import com.chatapp.dto.UnreadDtos.MarkReadRequest;
+import com.chatapp.dto.UnreadDtos.RoomUnread;
 import com.chatapp.security.UserPrincipal;
 import com.chatapp.service.ChatService;
+import com.chatapp.service.UnreadCounterService;
+import com.chatapp.websocket.PresenceRegistry;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -19,34 +30,87 @@ import com.chatapp.service.ChatService;
 public class ChatRestController {
 
     private final ChatService chatService;
+    private final PresenceRegistry presenceRegistry;
+    private final UnreadCounterService unreadCounterService;
 
-    public ChatRestController(final ChatService chatService) {
+    public ChatRestController(final ChatService chatService, final PresenceRegistry presenceRegistry,
+                              final UnreadCounterService unreadCounterService) {
         this.chatService = chatService;
+        this.presenceRegistry = presenceRegistry;
+        this.unreadCounterService = unreadCounterService;
     }
 
     @GetMapping("/messages/{roomId}")
-    public List<ChatMessageDto> getMessages(@PathVariable final String roomId) {
-        return chatService.getRecentMessages(roomId);
+    public ChatMessagePageDto getMessages(
+            @PathVariable final String roomId,
+            @RequestParam(required = false) final Long before,
+            @RequestParam(defaultValue = "50") final int limit) {
+        return chatService.getRecentMessages(roomId, before, limit);
     }
 
     @GetMapping("/groups/{groupId}/messages")
-    public List<ChatMessageDto> getGroupMessages(
+    public ChatMessagePageDto getGroupMessages(
             @PathVariable final Long groupId,
+            @RequestParam(required = false) final Long before,
+            @RequestParam(defaultValue = "50") final int limit,
             final Authentication authentication) {
         final Long userId = resolveUserId(authentication);
-        return chatService.getGroupMessages(groupId, userId);
+        return chatService.getGroupMessages(groupId, userId, before, limit);
     }
 
     @GetMapping("/topics/{topicId}/messages")
-    public List<ChatMessageDto> getTopicMessages(
-            @PathVariable final Long topicId) {
-        return chatService.getTopicMessages(topicId);
+    public ChatMessagePageDto getTopicMessages(
+            @PathVariable final Long topicId,
+            @RequestParam(required = false) final Long before,
+            @RequestParam(defaultValue = "50") final int limit) {
+        return chatService.getTopicMessages(topicId, before, limit);
     }
 
     @GetMapping("/friends/{friendshipId}/messages")
-    public List<ChatMessageDto> getFriendMessages(
-            @PathVariable final Long friendshipId) {
-        return chatService.getFriendMessages(friendshipId);
+    public ChatMessagePageDto getFriendMessages(
+            @PathVariable final Long friendshipId,
+            @RequestParam(required = false) final Long before,
+            @RequestParam(defaultValue = "50") final int limit) {
+        return chatService.getFriendMessages(friendshipId, before, limit);
+    }
+
+    @GetMapping("/rooms/{roomId}/presence")
+    public RoomPresence getRoomPresence(@PathVariable final String roomId) {
+        final List<Long> userIds = presenceRegistry.onlineUserIds(roomId);
+        return new RoomPresence(roomId, userIds.size(), userIds);
+    }
+
+    @PostMapping("/sync")
+    public ResponseEntity<Map<String, ChatMessagePageDto>> syncRooms(
+            @RequestBody final Map<String, Long> lastSeenIds,
+            @RequestParam(defaultValue = "50") final int limit,
+            final Authentication authentication) {
+        final Long userId = resolveUserId(authentication);
+        try {
+            return ResponseEntity.ok(chatService.syncRooms(userId, lastSeenIds, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/unread")
+    public List<RoomUnread> getUnreadCounts(final Authentication authentication) {
+        return unreadCounterService.getUnreadCounts(resolveUserId(authentication));
+    }
+
+    @PostMapping("/rooms/{roomId}/read")
+    public ResponseEntity<RoomUnread> markRead(
+            @PathVariable final String roomId,
+            @RequestBody final MarkReadRequest request,
+            final Authentication authentication) {
+        final Long userId = resolveUserId(authentication);
+        try {
+            return ResponseEntity.ok(unreadCounterService.markRead(userId, roomId, request.getMessageId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
     }
 
     private Long resolveUserId(final Authentication authentication) {
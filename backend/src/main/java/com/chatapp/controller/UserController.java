@@ -3,6 +3,7 @@ package com.chatapp.controller;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -24,6 +25,8 @@ import com.chatapp.security.UserPrincipal;
 @CrossOrigin(origins = "*")
 public class UserController {
 
+    private static final int MAX_SEARCH_LIMIT = 50;
+
     private final UserRepository userRepository;
 
     public UserController(final UserRepository userRepository) {
@@ -42,27 +45,34 @@ public class UserController {
     }
 
     /**
-     * Search users by username (for friend requests).
-     * Returns users whose username contains the search query.
+     * Search users by username prefix (for friend requests).
+     * Exact matches come first, then longer usernames in alphabetical order.
+     * Pass the returned nextCursor as {@code after} to get the following page.
      */
     @GetMapping("/search")
-    public ResponseEntity<List<UserDto>> searchUsers(
+    public ResponseEntity<UserSearchPage> searchUsers(
             @RequestParam final String query,
+            @RequestParam(required = false) final String after,
+            @RequestParam(defaultValue = "20") final int limit,
             final Authentication authentication) {
         final Long currentUserId = resolveUserId(authentication);
-        
-        // Search users by username containing the query (case-insensitive)
-        final List<User> users = userRepository.findAll().stream()
-                .filter(user -> !user.getId().equals(currentUserId)) // Exclude current user
-                .filter(user -> user.getUsername().toLowerCase().contains(query.toLowerCase()))
-                .limit(20) // Limit results
-                .collect(Collectors.toList());
-        
-        final List<UserDto> userDtos = users.stream()
-                .map(this::toDto)
+        final String prefix = query.trim();
+        if (prefix.isEmpty()) {
+            return ResponseEntity.ok(new UserSearchPage(List.of(), null, false));
+        }
+        final int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+
+        // Served by the username index; only the columns of the DTO are read
+        final List<UserRepository.UserSummaryProjection> rows = userRepository.searchByUsernamePrefix(
+                escapeLike(prefix) + "%", after != null ? after : "", currentUserId,
+                PageRequest.of(0, pageSize + 1));
+        final boolean hasMore = rows.size() > pageSize;
+        final List<UserDto> users = rows.stream()
+                .limit(pageSize)
+                .map(row -> new UserDto(row.getId(), row.getUsername(), row.getDisplayName(), row.getEmail()))
                 .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(userDtos);
+        final String nextCursor = hasMore ? users.get(users.size() - 1).getUsername() : null;
+        return ResponseEntity.ok(new UserSearchPage(users, nextCursor, hasMore));
     }
 
     /**
@@ -94,6 +104,10 @@ public class UserController {
         throw new IllegalStateException("Unsupported principal: " + principal);
     }
 
+    private static String escapeLike(final String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
     private UserDto toDto(final User user) {
         return new UserDto(
                 user.getId(),
@@ -136,4 +150,31 @@ public class UserController {
             return email;
         }
     }
+
+    /**
+     * One page of user search results.
+     */
+    public static class UserSearchPage {
+        private final List<UserDto> users;
+        private final String nextCursor;
+        private final boolean hasMore;
+
+        public UserSearchPage(final List<UserDto> users, final String nextCursor, final boolean hasMore) {
+            this.users = users;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<UserDto> getUsers() {
+            return users;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+    }
 }
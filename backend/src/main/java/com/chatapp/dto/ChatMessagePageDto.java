@@ -0,0 +1,47 @@
+package com.chatapp.dto;
+
+import java.util.List;
+
+/**
+ * チャット履歴の1ページ分
+ * messages は古い→新しい順、nextCursor はさらに古いページを取得するための before パラメータ
+ */
+public class ChatMessagePageDto {
+    private List<ChatMessageDto> messages;
+    private Long nextCursor;
+    private boolean hasMore;
+
+    // コンストラクタ
+    public ChatMessagePageDto() {}
+
+    public ChatMessagePageDto(List<ChatMessageDto> messages, Long nextCursor, boolean hasMore) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<ChatMessageDto> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessageDto> messages) {
+        this.messages = messages;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
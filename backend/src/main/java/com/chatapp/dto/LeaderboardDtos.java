@@ -0,0 +1,166 @@
+package com.chatapp.dto;
+
+/**
+ * チャレンジのランキング関連のDTO
+ */
+public final class LeaderboardDtos {
+
+    private LeaderboardDtos() {
+    }
+
+    /**
+     * ランキングの1行。同じ花レベル・ポイントのユーザーは同じ順位になる
+     */
+    public static class RankingEntry {
+        private int rank;
+        private Long userId;
+        private String username;
+        private String displayName;
+        private int totalPoints;
+        private int flowerLevel;
+        private String flowerEmoji;
+
+        public RankingEntry() {
+        }
+
+        public RankingEntry(int rank, Long userId, String username, String displayName,
+                            int totalPoints, int flowerLevel, String flowerEmoji) {
+            this.rank = rank;
+            this.userId = userId;
+            this.username = username;
+            this.displayName = displayName;
+            this.totalPoints = totalPoints;
+            this.flowerLevel = flowerLevel;
+            this.flowerEmoji = flowerEmoji;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public void setRank(int rank) {
+            this.rank = rank;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public void setDisplayName(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public int getTotalPoints() {
+            return totalPoints;
+        }
+
+        public void setTotalPoints(int totalPoints) {
+            this.totalPoints = totalPoints;
+        }
+
+        public int getFlowerLevel() {
+            return flowerLevel;
+        }
+
+        public void setFlowerLevel(int flowerLevel) {
+            this.flowerLevel = flowerLevel;
+        }
+
+        public String getFlowerEmoji() {
+            return flowerEmoji;
+        }
+
+        public void setFlowerEmoji(String flowerEmoji) {
+            this.flowerEmoji = flowerEmoji;
+        }
+    }
+
+    /**
+     * 期間別ランキングの1行。同じポイント・達成数のユーザーは同じ順位になる
+     */
+    public static class WindowRankingEntry {
+        private int rank;
+        private Long userId;
+        private String username;
+        private String displayName;
+        private int points;
+        private int completions;
+
+        public WindowRankingEntry() {
+        }
+
+        public WindowRankingEntry(int rank, Long userId, String username, String displayName,
+                                  int points, int completions) {
+            this.rank = rank;
+            this.userId = userId;
+            this.username = username;
+            this.displayName = displayName;
+            this.points = points;
+            this.completions = completions;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public void setRank(int rank) {
+            this.rank = rank;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public void setDisplayName(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public void setPoints(int points) {
+            this.points = points;
+        }
+
+        public int getCompletions() {
+            return completions;
+        }
+
+        public void setCompletions(int completions) {
+            this.completions = completions;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.chatapp.dto;
+
+import java.util.List;
+
+/**
+ * オンライン状態（プレゼンス）関連のDTO
+ */
+public final class PresenceDtos {
+
+    private PresenceDtos() {
+    }
+
+    /**
+     * ルームのオンライン状態の差分。/topic/presence.{roomId} に送られる
+     * 集約期間内に入って出た（またはその逆の）ユーザーは含まれない
+     */
+    public static class PresenceDelta {
+        private String roomId;
+        private List<Long> joined;
+        private List<Long> left;
+        private int onlineCount;
+
+        public PresenceDelta() {
+        }
+
+        public PresenceDelta(String roomId, List<Long> joined, List<Long> left, int onlineCount) {
+            this.roomId = roomId;
+            this.joined = joined;
+            this.left = left;
+            this.onlineCount = onlineCount;
+        }
+
+        public String getRoomId() {
+            return roomId;
+        }
+
+        public void setRoomId(String roomId) {
+            this.roomId = roomId;
+        }
+
+        public List<Long> getJoined() {
+            return joined;
+        }
+
+        public void setJoined(List<Long> joined) {
+            this.joined = joined;
+        }
+
+        public List<Long> getLeft() {
+            return left;
+        }
+
+        public void setLeft(List<Long> left) {
+            this.left = left;
+        }
+
+        public int getOnlineCount() {
+            return onlineCount;
+        }
+
+        public void setOnlineCount(int onlineCount) {
+            this.onlineCount = onlineCount;
+        }
+    }
+
+    /**
+     * ルームに現在オンラインのユーザー
+     */
+    public static class RoomPresence {
+        private String roomId;
+        private int onlineCount;
+        private List<Long> userIds;
+
+        public RoomPresence() {
+        }
+
+        public RoomPresence(String roomId, int onlineCount, List<Long> userIds) {
+            this.roomId = roomId;
+            this.onlineCount = onlineCount;
+            this.userIds = userIds;
+        }
+
+        public String getRoomId() {
+            return roomId;
+        }
+
+        public void setRoomId(String roomId) {
+            this.roomId = roomId;
+        }
+
+        public int getOnlineCount() {
+            return onlineCount;
+        }
+
+        public void setOnlineCount(int onlineCount) {
+            this.onlineCount = onlineCount;
+        }
+
+        public List<Long> getUserIds() {
+            return userIds;
+        }
+
+        public void setUserIds(List<Long> userIds) {
+            this.userIds = userIds;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.chatapp.dto;
+
+/**
+ * 送信制限で破棄されたことの通知。送ったセッションの /user/queue/errors にだけ送られる
+ */
+public class RateLimitedDto {
+
+    public enum Scope {
+        SESSION, USER, ROOM
+    }
+
+    private final String error = "RATE_LIMITED";
+    private Scope scope;
+    private String destination;
+    private String roomId;
+    private long retryAfterMs;
+
+    // コンストラクタ
+    public RateLimitedDto() {}
+
+    public RateLimitedDto(Scope scope, String destination, String roomId, long retryAfterMs) {
+        this.scope = scope;
+        this.destination = destination;
+        this.roomId = roomId;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    // Getters and Setters
+    public String getError() {
+        return error;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public void setScope(Scope scope) {
+        this.scope = scope;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    public void setRetryAfterMs(long retryAfterMs) {
+        this.retryAfterMs = retryAfterMs;
+    }
+}
@@ -0,0 +1,66 @@
+package com.chatapp.dto;
+
+/**
+ * ルームの一時イベント（入室・退室・入力中）。/topic/events.{roomId} に送られ、保存はされない
+ */
+public class RoomEventDto {
+
+    public enum Type {
+        JOIN, LEAVE, TYPING, STOPPED_TYPING
+    }
+
+    private Type type;
+    private String roomId;
+    private Long userId;
+    private String displayName;
+    private long sentAt;
+
+    // コンストラクタ
+    public RoomEventDto() {}
+
+    public RoomEventDto(Type type, String roomId) {
+        this.type = type;
+        this.roomId = roomId;
+    }
+
+    // Getters and Setters
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(long sentAt) {
+        this.sentAt = sentAt;
+    }
+}
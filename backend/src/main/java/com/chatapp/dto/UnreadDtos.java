@@ -0,0 +1,61 @@
+package com.chatapp.dto;
+
+/**
+ * 未読数・既読位置関連のDTO
+ */
+public final class UnreadDtos {
+
+    private UnreadDtos() {
+    }
+
+    public static class MarkReadRequest {
+        private Long messageId;
+
+        public Long getMessageId() {
+            return messageId;
+        }
+
+        public void setMessageId(Long messageId) {
+            this.messageId = messageId;
+        }
+    }
+
+    public static class RoomUnread {
+        private String roomId;
+        private int unreadCount;
+        private Long lastReadMessageId;
+
+        public RoomUnread() {
+        }
+
+        public RoomUnread(String roomId, int unreadCount, Long lastReadMessageId) {
+            this.roomId = roomId;
+            this.unreadCount = unreadCount;
+            this.lastReadMessageId = lastReadMessageId;
+        }
+
+        public String getRoomId() {
+            return roomId;
+        }
+
+        public void setRoomId(String roomId) {
+            this.roomId = roomId;
+        }
+
+        public int getUnreadCount() {
+            return unreadCount;
+        }
+
+        public void setUnreadCount(int unreadCount) {
+            this.unreadCount = unreadCount;
+        }
+
+        public Long getLastReadMessageId() {
+            return lastReadMessageId;
+        }
+
+        public void setLastReadMessageId(Long lastReadMessageId) {
+            this.lastReadMessageId = lastReadMessageId;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
@@ -20,7 +21,8 @@ import jakarta.persistence.Table;
  * ユーザーがチャレンジを達成した履歴を記録
  */
 @Entity
-@Table(name = "challenge_completions")
+@Table(name = "challenge_completions",
+       indexes = @Index(name = "idx_completed_at_user", columnList = "completed_at, user_id, points_earned"))
 public class ChallengeCompletion {
     
     @Id
@@ -5,11 +5,18 @@ import jakarta.validation.constraints.NotBlank;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages",
+       indexes = {
+           @Index(name = "idx_room_created_id", columnList = "room_id, created_at, id"),
+           @Index(name = "idx_room_id", columnList = "room_id, id")
+       })
 public class ChatMessage {
     
+    // IDENTITY だとINSERTするまでIDが決まらずJDBCバッチも効かないため、シーケンス（MySQLではテーブル）で採番する
+    // allocationSize 分をまとめて確保するので、採番のためのDBアクセスは50件に1回
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_message_seq")
+    @SequenceGenerator(name = "chat_message_seq", sequenceName = "chat_message_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank
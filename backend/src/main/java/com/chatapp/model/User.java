@@ -3,12 +3,14 @@ package com.chatapp.model;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import com.chatapp.security.UserChangeListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -21,6 +23,7 @@ import jakarta.validation.constraints.Size;
 
 @Entity
 @Table(name = "`users`")
+@EntityListeners(UserChangeListener.class)
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class User {
     
@@ -0,0 +1,113 @@
+package com.chatapp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * ユーザーごとのチャレンジ達成数（総数とタイプ別）
+ * challenge_completions の集計結果を保持し、達成のたびに同じトランザクションで加算する
+ */
+@Entity
+@Table(name = "user_challenge_stats")
+public class UserChallengeStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "total_completions", nullable = false)
+    private long totalCompletions;
+
+    @Column(name = "gratitude_count", nullable = false)
+    private long gratitudeCount;
+
+    @Column(name = "kindness_count", nullable = false)
+    private long kindnessCount;
+
+    @Column(name = "self_care_count", nullable = false)
+    private long selfCareCount;
+
+    @Column(name = "creativity_count", nullable = false)
+    private long creativityCount;
+
+    @Column(name = "connection_count", nullable = false)
+    private long connectionCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public UserChallengeStats() {}
+
+    public UserChallengeStats(Long userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * 1回の達成を加算
+     */
+    public void increment(DailyChallenge.ChallengeType challengeType) {
+        add(challengeType, 1);
+    }
+
+    /**
+     * 達成記録から集計したタイプ別の件数で置き換える
+     */
+    public void replaceCounts(Map<DailyChallenge.ChallengeType, Long> countsByType) {
+        totalCompletions = 0;
+        gratitudeCount = 0;
+        kindnessCount = 0;
+        selfCareCount = 0;
+        creativityCount = 0;
+        connectionCount = 0;
+        countsByType.forEach(this::add);
+    }
+
+    private void add(DailyChallenge.ChallengeType challengeType, long count) {
+        totalCompletions += count;
+        switch (challengeType) {
+            case GRATITUDE -> gratitudeCount += count;
+            case KINDNESS -> kindnessCount += count;
+            case SELF_CARE -> selfCareCount += count;
+            case CREATIVITY -> creativityCount += count;
+            case CONNECTION -> connectionCount += count;
+        }
+    }
+
+    public long getCount(DailyChallenge.ChallengeType challengeType) {
+        return switch (challengeType) {
+            case GRATITUDE -> gratitudeCount;
+            case KINDNESS -> kindnessCount;
+            case SELF_CARE -> selfCareCount;
+            case CREATIVITY -> creativityCount;
+            case CONNECTION -> connectionCount;
+        };
+    }
+
+    public Map<DailyChallenge.ChallengeType, Long> getCountsByType() {
+        Map<DailyChallenge.ChallengeType, Long> counts = new EnumMap<>(DailyChallenge.ChallengeType.class);
+        for (DailyChallenge.ChallengeType challengeType : DailyChallenge.ChallengeType.values()) {
+            counts.put(challengeType, getCount(challengeType));
+        }
+        return counts;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getTotalCompletions() {
+        return totalCompletions;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -101,6 +101,13 @@ public class UserProgress {
      * 花の絵文字を取得
      */
     public String getFlowerEmoji() {
+        return flowerEmoji(flowerLevel);
+    }
+    
+    /**
+     * 花レベルに対応する絵文字
+     */
+    public static String flowerEmoji(int flowerLevel) {
         return switch (flowerLevel) {
             case 1 -> "🌱"; // 芽
             case 2 -> "🌿"; // 若葉
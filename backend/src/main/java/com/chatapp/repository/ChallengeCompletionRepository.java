@@ -3,12 +3,15 @@ package com.chatapp.repository;
 import com.chatapp.model.ChallengeCompletion;
 import com.chatapp.model.DailyChallenge;
 import com.chatapp.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -49,6 +52,15 @@ public interface ChallengeCompletionRepository extends JpaRepository<ChallengeCo
     @Query("SELECT COUNT(cc) FROM ChallengeCompletion cc WHERE cc.user.id = :userId AND cc.completedAt BETWEEN :start AND :end")
     Long countCompletionsBetween(@Param("userId") Long userId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
+    /**
+     * since 以降の達成記録を、ユーザー・日付ごとのポイント合計と件数に集計する（期間別ランキングの構築用）
+     */
+    @Query("SELECT cc.user.id AS userId, CAST(cc.completedAt AS LocalDate) AS completedOn, " +
+            "SUM(cc.pointsEarned) AS points, COUNT(cc) AS completions " +
+            "FROM ChallengeCompletion cc WHERE cc.completedAt >= :since " +
+            "GROUP BY cc.user.id, CAST(cc.completedAt AS LocalDate)")
+    List<DailyActivityProjection> sumDailyActivitySince(@Param("since") LocalDateTime since);
+    
     /**
      * 最近の達成記録を取得（全ユーザー）
      */
@@ -64,4 +76,47 @@ public interface ChallengeCompletionRepository extends JpaRepository<ChallengeCo
      */
     @Query("SELECT COUNT(cc) FROM ChallengeCompletion cc WHERE cc.user = :user AND cc.challenge.challengeType = :challengeType")
     long countByChallengeType(@Param("user") User user, @Param("challengeType") DailyChallenge.ChallengeType challengeType);
+    
+    /**
+     * ユーザーのカテゴリ別達成数を1回の集計で取得（達成のないカテゴリは含まない）
+     */
+    @Query("SELECT cc.challenge.challengeType AS challengeType, COUNT(cc) AS completions " +
+            "FROM ChallengeCompletion cc WHERE cc.user.id = :userId GROUP BY cc.challenge.challengeType")
+    List<TypeCountProjection> countByUserGroupByChallengeType(@Param("userId") Long userId);
+    
+    /**
+     * 複数ユーザーのカテゴリ別達成数を1回の集計で取得（集計テーブルのバックフィル用）
+     */
+    @Query("SELECT cc.user.id AS userId, cc.challenge.challengeType AS challengeType, COUNT(cc) AS completions " +
+            "FROM ChallengeCompletion cc WHERE cc.user.id IN :userIds GROUP BY cc.user.id, cc.challenge.challengeType")
+    List<UserTypeCountProjection> countByUsersGroupByChallengeType(@Param("userIds") Collection<Long> userIds);
+    
+    /**
+     * afterUserId より後で達成記録のあるユーザーID（id順）
+     */
+    @Query("SELECT DISTINCT cc.user.id FROM ChallengeCompletion cc WHERE cc.user.id > :afterUserId ORDER BY cc.user.id")
+    List<Long> findUserIdsWithCompletionsAfter(@Param("afterUserId") long afterUserId, Pageable pageable);
+    
+    /**
+     * afterUserId より後で、達成記録はあるが集計テーブルに行がないユーザーID（id順）
+     */
+    @Query("SELECT DISTINCT cc.user.id FROM ChallengeCompletion cc WHERE cc.user.id > :afterUserId " +
+            "AND NOT EXISTS (SELECT 1 FROM UserChallengeStats s WHERE s.userId = cc.user.id) ORDER BY cc.user.id")
+    List<Long> findUserIdsWithoutStatsAfter(@Param("afterUserId") long afterUserId, Pageable pageable);
+
+    interface UserTypeCountProjection extends TypeCountProjection {
+        Long getUserId();
+    }
+
+    interface TypeCountProjection {
+        DailyChallenge.ChallengeType getChallengeType();
+        Long getCompletions();
+    }
+
+    interface DailyActivityProjection {
+        Long getUserId();
+        LocalDate getCompletedOn();
+        Long getPoints();
+        Long getCompletions();
+    }
 }
@@ -1,22 +1,106 @@
 package com.chatapp.repository;
 
 import com.chatapp.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
-    
+
     List<ChatMessage> findByRoomIdOrderByCreatedAtDesc(String roomId);
-    
-    @Query("SELECT cm FROM ChatMessage cm WHERE cm.roomId = :roomId AND cm.createdAt >= :since ORDER BY cm.createdAt ASC")
-    List<ChatMessage> findRecentMessagesByRoom(@Param("roomId") String roomId, @Param("since") LocalDateTime since);
-    
-    @Query("SELECT cm FROM ChatMessage cm WHERE cm.roomId = :roomId ORDER BY cm.createdAt DESC")
-    List<ChatMessage> findTop50ByRoomIdOrderByCreatedAtDesc(@Param("roomId") String roomId);
-}
\ No newline at end of file
+
+    /**
+     * カーソル (createdAt, id) より新しいメッセージを新しい順に取得（件数はPageableで制限）
+     * 再接続時の差分同期用。複数ノードではIDが時刻順に並ばないため、IDだけでは比べない。
+     * (room_id, created_at, id) インデックスで解決される
+     */
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.sender "
+            + "WHERE cm.roomId = :roomId "
+            + "AND (cm.createdAt > :createdAt OR (cm.createdAt = :createdAt AND cm.id > :id)) "
+            + "ORDER BY cm.createdAt DESC, cm.id DESC")
+    List<ChatMessage> findNewerInRoom(@Param("roomId") String roomId,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    /**
+     * ルームの最新メッセージを新しい順に取得（件数はPageableで制限）
+     * (room_id, created_at, id) インデックスで解決される
+     */
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.sender "
+            + "WHERE cm.roomId = :roomId "
+            + "ORDER BY cm.createdAt DESC, cm.id DESC")
+    List<ChatMessage> findLatestByRoom(@Param("roomId") String roomId, Pageable pageable);
+
+    /**
+     * カーソル (createdAt, id) より古いメッセージを新しい順に取得（キーセットページング）
+     */
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.sender "
+            + "WHERE cm.roomId = :roomId "
+            + "AND (cm.createdAt < :createdAt OR (cm.createdAt = :createdAt AND cm.id < :id)) "
+            + "ORDER BY cm.createdAt DESC, cm.id DESC")
+    List<ChatMessage> findByRoomBefore(@Param("roomId") String roomId,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+
+    /**
+     * カーソルとして渡されたメッセージの作成日時を取得（同じルームのもののみ）
+     */
+    @Query("SELECT cm.createdAt FROM ChatMessage cm WHERE cm.id = :id AND cm.roomId = :roomId")
+    Optional<LocalDateTime> findCreatedAtByIdAndRoomId(@Param("id") Long id, @Param("roomId") String roomId);
+
+    /**
+     * 既読位置より新しい、他人のメッセージの件数と最大IDをルームごとに数える（既読位置のあるルーム）
+     * 結果は [roomId, count, maxId]。既読位置のメッセージとの (createdAt, id) で比べ、
+     * そのメッセージがまだDBにない場合だけIDで比べる。(room_id, created_at, id) インデックスで解決される
+     */
+    @Query("SELECT c.roomId, COUNT(cm), MAX(cm.id) FROM RoomReadCursor c "
+            + "JOIN ChatMessage cm ON cm.roomId = c.roomId "
+            + "LEFT JOIN ChatMessage r ON r.id = c.lastReadMessageId "
+            + "WHERE c.user.id = :userId AND c.roomId IN :roomIds AND cm.sender.id <> :userId "
+            + "AND (cm.createdAt > r.createdAt OR (cm.createdAt = r.createdAt AND cm.id > r.id) "
+            + "OR (r.id IS NULL AND cm.id > c.lastReadMessageId)) "
+            + "GROUP BY c.roomId")
+    List<Object[]> countUnreadAfterCursors(@Param("userId") Long userId, @Param("roomIds") Collection<String> roomIds);
+
+    /**
+     * 他人のメッセージの件数と最大IDをルームごとに数える（まだ既読位置のないルーム）
+     * 結果は [roomId, count, maxId]
+     */
+    @Query("SELECT cm.roomId, COUNT(cm), MAX(cm.id) FROM ChatMessage cm "
+            + "WHERE cm.roomId IN :roomIds AND cm.sender.id <> :userId "
+            + "GROUP BY cm.roomId")
+    List<Object[]> countFromOthers(@Param("userId") Long userId, @Param("roomIds") Collection<String> roomIds);
+
+    /**
+     * 指定IDより新しい、他人のメッセージの件数（1ルーム分）
+     */
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm "
+            + "WHERE cm.roomId = :roomId AND cm.id > :afterId AND cm.sender.id <> :userId")
+    long countFromOthersAfter(@Param("roomId") String roomId, @Param("afterId") Long afterId,
+                              @Param("userId") Long userId);
+
+    /**
+     * カーソル (createdAt, id) より新しい、他人のメッセージの件数（1ルーム分）
+     */
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm "
+            + "WHERE cm.roomId = :roomId AND cm.sender.id <> :userId "
+            + "AND (cm.createdAt > :createdAt OR (cm.createdAt = :createdAt AND cm.id > :id))")
+    long countFromOthersNewerThan(@Param("roomId") String roomId, @Param("createdAt") LocalDateTime createdAt,
+                                  @Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * 指定したIDのうち、すでに保存されているもの
+     */
+    @Query("SELECT cm.id FROM ChatMessage cm WHERE cm.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+}
@@ -28,6 +28,10 @@ public interface FriendRepository extends JpaRepository<Friend, Long> {
             + "(f.requester = :user OR f.addressee = :user) AND f.status = 'ACCEPTED'")
     List<Friend> findAcceptedFriends(@Param("user") User user);
 
+    @Query("SELECT f.id FROM Friend f WHERE "
+            + "(f.requester.id = :userId OR f.addressee.id = :userId) AND f.status = 'ACCEPTED'")
+    List<Long> findAcceptedFriendshipIds(@Param("userId") Long userId);
+
     @Query("SELECT COUNT(f) FROM Friend f WHERE f.addressee = :user AND f.status = 'PENDING'")
     Long countPendingRequests(@Param("user") User user);
 
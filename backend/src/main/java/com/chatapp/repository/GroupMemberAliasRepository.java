@@ -1,5 +1,6 @@
 package com.chatapp.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,4 +32,11 @@ public interface GroupMemberAliasRepository extends JpaRepository<GroupMemberAli
      */
     @Query("SELECT a FROM GroupMemberAlias a WHERE a.group.id = :groupId")
     List<GroupMemberAlias> findByGroupId(@Param("groupId") Long groupId);
+    
+    /**
+     * グループ内の指定ユーザーたちの匿名名マッピングをまとめて取得
+     */
+    @Query("SELECT a FROM GroupMemberAlias a WHERE a.group.id = :groupId AND a.targetUser.id IN :targetUserIds")
+    List<GroupMemberAlias> findByGroupIdAndTargetUserIds(@Param("groupId") Long groupId,
+                                                         @Param("targetUserIds") Collection<Long> targetUserIds);
 }
@@ -32,6 +32,24 @@ public interface GroupMemberRepository extends JpaRepository<GroupMember, Long>
      */
     List<GroupMember> findByGroup(Group group);
 
+    /**
+     * Find the user ids of all members of a group without loading the members.
+     *
+     * @param groupId the group id
+     * @return member user ids
+     */
+    @Query("SELECT gm.user.id FROM GroupMember gm WHERE gm.group.id = :groupId")
+    List<Long> findUserIdsByGroupId(@Param("groupId") Long groupId);
+
+    /**
+     * Find the ids of all groups a user is a member of without loading the groups.
+     *
+     * @param userId the user id
+     * @return group ids
+     */
+    @Query("SELECT gm.group.id FROM GroupMember gm WHERE gm.user.id = :userId")
+    List<Long> findGroupIdsByUserId(@Param("userId") Long userId);
+
     /**
      * Find all groups a user is a member of.
      *
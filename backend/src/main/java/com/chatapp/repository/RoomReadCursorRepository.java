@@ -0,0 +1,21 @@
+package com.chatapp.repository;
+
+import com.chatapp.model.RoomReadCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RoomReadCursorRepository extends JpaRepository<RoomReadCursor, Long> {
+
+    @Query("SELECT c FROM RoomReadCursor c WHERE c.user.id = :userId")
+    List<RoomReadCursor> findByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT c FROM RoomReadCursor c WHERE c.user.id = :userId AND c.roomId IN :roomIds")
+    List<RoomReadCursor> findByUserIdAndRoomIdIn(@Param("userId") Long userId,
+                                                 @Param("roomIds") Collection<String> roomIds);
+}
@@ -4,9 +4,11 @@ import com.chatapp.model.User;
 import com.chatapp.model.UserBadge;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * ユーザーバッジリポジトリ
@@ -21,5 +23,8 @@ public interface UserBadgeRepository extends JpaRepository<UserBadge, Long> {
     
     boolean existsByUserAndBadge_BadgeType(User user, String badgeType);
     
+    @Query("SELECT ub.badge.badgeType FROM UserBadge ub WHERE ub.user.id = :userId")
+    Set<String> findBadgeTypesByUserId(@Param("userId") Long userId);
+    
     long countByUser(User user);
 }
@@ -0,0 +1,56 @@
+package com.chatapp.repository;
+
+import com.chatapp.model.DailyChallenge;
+import com.chatapp.model.UserChallengeStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ユーザー別チャレンジ達成数リポジトリ
+ */
+@Repository
+public interface UserChallengeStatsRepository extends JpaRepository<UserChallengeStats, Long> {
+
+    /**
+     * 加算のために行ロックを取って読む（同じユーザーの達成・バックフィルと直列化する）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserChallengeStats s WHERE s.userId = :userId")
+    Optional<UserChallengeStats> findByUserIdForUpdate(@Param("userId") Long userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserChallengeStats s WHERE s.userId IN :userIds")
+    List<UserChallengeStats> findByUserIdInForUpdate(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 行がなければ作る。同じユーザーの行を別のトランザクションが先に作っていれば何もしない（主キー違反にしない）
+     * 作った場合は 1、既に行があった場合は 0
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_challenge_stats (user_id, total_completions, gratitude_count, "
+            + "kindness_count, self_care_count, creativity_count, connection_count, updated_at) "
+            + "VALUES (:userId, :total, :gratitude, :kindness, :selfCare, :creativity, :connection, CURRENT_TIMESTAMP)",
+            nativeQuery = true)
+    int insertIgnore(@Param("userId") Long userId, @Param("total") long total,
+                     @Param("gratitude") long gratitude, @Param("kindness") long kindness,
+                     @Param("selfCare") long selfCare, @Param("creativity") long creativity,
+                     @Param("connection") long connection);
+
+    default boolean insertIfAbsent(UserChallengeStats stats) {
+        return insertIgnore(stats.getUserId(), stats.getTotalCompletions(),
+                stats.getCount(DailyChallenge.ChallengeType.GRATITUDE),
+                stats.getCount(DailyChallenge.ChallengeType.KINDNESS),
+                stats.getCount(DailyChallenge.ChallengeType.SELF_CARE),
+                stats.getCount(DailyChallenge.ChallengeType.CREATIVITY),
+                stats.getCount(DailyChallenge.ChallengeType.CONNECTION)) > 0;
+    }
+}
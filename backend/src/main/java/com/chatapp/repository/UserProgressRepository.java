@@ -36,13 +36,23 @@ public interface UserProgressRepository extends JpaRepository<UserProgress, Long
     List<UserProgress> findAllByOrderByFlowerLevelDescTotalPointsDesc();
     
     /**
-     * トップN人のユーザー進捗を取得
+     * ランキングの構築用に、全ユーザーの花レベル・ポイントと表示名だけを読む（エンティティは作らない）
      */
-    @Query("SELECT up FROM UserProgress up ORDER BY up.flowerLevel DESC, up.totalPoints DESC")
-    List<UserProgress> findTopUsers();
+    @Query("SELECT u.id AS userId, u.username AS username, u.displayName AS displayName, " +
+            "up.totalPoints AS totalPoints, up.flowerLevel AS flowerLevel " +
+            "FROM UserProgress up JOIN up.user u")
+    List<RankingProjection> findAllForRanking();
     
     /**
      * 連続達成日数が指定以上のユーザーを取得
      */
     List<UserProgress> findByCurrentStreakGreaterThanEqual(Integer minStreak);
+
+    interface RankingProjection {
+        Long getUserId();
+        String getUsername();
+        String getDisplayName();
+        Integer getTotalPoints();
+        Integer getFlowerLevel();
+    }
 }
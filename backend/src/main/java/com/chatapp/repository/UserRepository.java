@@ -1,9 +1,13 @@
 package com.chatapp.repository;
 
 import com.chatapp.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +20,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByUsername(String username);
     
     Boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * ユーザー名の前方一致検索。idx_username の範囲スキャンで、ユーザー名順に after より後ろを返す
+     * 大文字小文字の区別は列の照合順序（utf8mb4_unicode_ci）に従う。prefix の % と _ は ! でエスケープしておくこと
+     */
+    @Query("SELECT u.id AS id, u.username AS username, u.displayName AS displayName, u.email AS email " +
+            "FROM User u WHERE u.username LIKE :prefix ESCAPE '!' AND u.username > :after AND u.id <> :excludeId " +
+            "ORDER BY u.username")
+    List<UserSummaryProjection> searchByUsernamePrefix(@Param("prefix") String prefix,
+                                                       @Param("after") String after,
+                                                       @Param("excludeId") Long excludeId,
+                                                       Pageable pageable);
+
+    interface UserSummaryProjection {
+        Long getId();
+        String getUsername();
+        String getDisplayName();
+        String getEmail();
+    }
+}
@@ -1,28 +1,89 @@
 package com.chatapp.scheduler;
 
-import com.chatapp.model.GroupMemberAlias;
-import com.chatapp.repository.GroupMemberAliasRepository;
+import com.chatapp.config.AnonymousNameRotationProperties;
 import com.chatapp.service.AnonymousNameService;
+import com.chatapp.service.AnonymousNameService.RotationChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.List;
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 匿名名の自動ローテーションスケジューラー
  * 毎日朝7時に前日以前の匿名名を更新
+ *
+ * テーブル全体を読み込まず、id順のキーセットでチャンクごとにバッチUPDATEする。
+ * 対象は「最終ローテーション日が今日より前」の行なので、途中でノードが落ちても
+ * 再実行すれば未処理の行だけが対象になる（起動時に7時を過ぎていれば追いかけ実行する）。
  */
 @Component
 public class AnonymousNameScheduler {
 
-    @Autowired
-    private GroupMemberAliasRepository aliasRepository;
+    private static final LocalTime ROTATION_TIME = LocalTime.of(7, 0);
 
     @Autowired
     private AnonymousNameService anonymousNameService;
 
+    @Autowired
+    private AnonymousNameRotationProperties properties;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // 実行中のチャンクカーソル（進捗確認用）
+    private final AtomicLong cursor = new AtomicLong();
+
+    private Counter rotated;
+    private Counter chunks;
+    private Timer duration;
+
+    @PostConstruct
+    void initMetrics() {
+        rotated = Counter.builder("anonymous-names.rotation.rotated")
+                .description("Aliases rotated by the daily bulk job")
+                .register(meterRegistry);
+        chunks = Counter.builder("anonymous-names.rotation.chunks")
+                .description("Keyset chunks processed by the daily bulk job")
+                .register(meterRegistry);
+        duration = Timer.builder("anonymous-names.rotation.duration")
+                .description("Time taken by a full rotation run")
+                .register(meterRegistry);
+        Gauge.builder("anonymous-names.rotation.cursor", cursor, AtomicLong::get)
+                .description("Last alias id processed by the running job")
+                .register(meterRegistry);
+        Gauge.builder("anonymous-names.rotation.running", running, flag -> flag.get() ? 1 : 0)
+                .description("Whether a rotation run is in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 起動時にその日のローテーション時刻を過ぎていれば、前回の中断分を追いかけ実行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup() {
+        if (properties.isCatchUpOnStartup() && !anonymousNameService.isDerivedMode()
+                && !LocalTime.now().isBefore(ROTATION_TIME)) {
+            taskScheduler.schedule(this::rotateAnonymousNames, Instant.now());
+        }
+    }
+
     /**
      * 毎日朝7時に実行
      * cron式: 秒 分 時 日 月 曜日
@@ -30,23 +91,38 @@ public class AnonymousNameScheduler {
      */
     @Scheduled(cron = "0 0 7 * * *")
     public void rotateAnonymousNames() {
+        if (anonymousNameService.isDerivedMode()) {
+            // 導出モードでは名前は日付から計算されるため、ローテーションするデータがない
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            System.out.println("匿名名ローテーションは実行中のためスキップ");
+            return;
+        }
+        try {
+            duration.record(this::rotateAll);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void rotateAll() {
         System.out.println("===== 匿名名ローテーション開始 =====");
-        
+
         LocalDate today = LocalDate.now();
-        
-        // 最終ローテーション日が今日より前のすべてのエイリアスを取得
-        List<GroupMemberAlias> aliasesToRotate = aliasRepository.findAll().stream()
-                .filter(alias -> alias.getLastRotationDate() == null || 
-                                 alias.getLastRotationDate().isBefore(today))
-                .toList();
-        
-        System.out.println("ローテーション対象: " + aliasesToRotate.size() + " 件");
-        
-        // 各エイリアスをローテーション
-        for (GroupMemberAlias alias : aliasesToRotate) {
-            anonymousNameService.rotateAnonymousName(alias);
+        int chunkSize = Math.max(1, properties.getChunkSize());
+        long total = 0;
+        cursor.set(0);
+
+        RotationChunk chunk = anonymousNameService.rotateStaleAliases(today, 0, chunkSize);
+        while (chunk.lastId() != null) {
+            total += chunk.rotated();
+            rotated.increment(chunk.rotated());
+            chunks.increment();
+            cursor.set(chunk.lastId());
+            chunk = anonymousNameService.rotateStaleAliases(today, chunk.lastId(), chunkSize);
         }
-        
-        System.out.println("===== 匿名名ローテーション完了 =====");
+
+        System.out.println("===== 匿名名ローテーション完了: " + total + " 件 =====");
     }
 }
@@ -0,0 +1,80 @@
+package com.chatapp.scheduler;
+
+import com.chatapp.config.ChallengeStatsProperties;
+import com.chatapp.service.ChallengeStatsService;
+import com.chatapp.service.ChallengeStatsService.BackfillChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * user_challenge_stats を challenge_completions から作るバックフィルジョブ
+ *
+ * 起動時に、達成記録はあるが集計行がないユーザーの行を作る（rebuild-on-startup なら全ユーザーを数え直す）。
+ * ユーザーID順のキーセットでチャンクごとにコミットするため、途中でノードが落ちても再起動で残りを処理する。
+ */
+@Component
+public class ChallengeStatsBackfillJob {
+
+    private final ChallengeStatsService challengeStatsService;
+    private final ChallengeStatsProperties properties;
+    private final TaskScheduler taskScheduler;
+    private final Counter backfilled;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ChallengeStatsBackfillJob(ChallengeStatsService challengeStatsService,
+                                     ChallengeStatsProperties properties,
+                                     TaskScheduler taskScheduler,
+                                     MeterRegistry meterRegistry) {
+        this.challengeStatsService = challengeStatsService;
+        this.properties = properties;
+        this.taskScheduler = taskScheduler;
+        this.backfilled = Counter.builder("challenges.stats.backfilled")
+                .description("User challenge statistics rows recounted from the completions log")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (properties.isRebuildOnStartup()) {
+            taskScheduler.schedule(() -> backfill(false), Instant.now());
+        } else if (properties.isBackfillOnStartup()) {
+            taskScheduler.schedule(() -> backfill(true), Instant.now());
+        }
+    }
+
+    /**
+     * onlyMissing が true なら行がないユーザーだけ、false なら達成記録のある全ユーザーを数え直す
+     *
+     * @return 数え直したユーザー数（実行中だった場合は 0）
+     */
+    public long backfill(boolean onlyMissing) {
+        if (!running.compareAndSet(false, true)) {
+            System.out.println("チャレンジ統計のバックフィルは実行中のためスキップ");
+            return 0;
+        }
+        try {
+            int chunkSize = Math.max(1, properties.getBackfillChunkSize());
+            long total = 0;
+            BackfillChunk chunk = challengeStatsService.backfillChunk(0, chunkSize, onlyMissing);
+            while (chunk.lastUserId() != null) {
+                total += chunk.updated();
+                backfilled.increment(chunk.updated());
+                chunk = challengeStatsService.backfillChunk(chunk.lastUserId(), chunkSize, onlyMissing);
+            }
+            if (total > 0) {
+                System.out.println("チャレンジ統計のバックフィル完了: " + total + " 人");
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+}
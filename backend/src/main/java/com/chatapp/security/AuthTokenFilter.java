@@ -12,6 +12,7 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -26,6 +27,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
     
+    @Autowired
+    private AuthenticatedPrincipalCache principalCache;
+    
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain)
@@ -39,21 +43,23 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             if (jwt != null) {
                 logger.debug("🔐 JWT found for request: " + requestURI + " | Token length: " + jwt.length());
 
-                if (jwtUtils.validateJwtToken(jwt)) {
-                    String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                    logger.debug("✅ JWT valid for user: " + username + " | URI: " + requestURI);
-                    
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                    request.setAttribute("jwtAuthenticatedUser", username);
-                } else {
-                    logger.warn("❌ JWT validation failed for URI: " + requestURI);
-                    request.setAttribute("jwtError", "JWT validation failed");
+                // 署名検証とクレームの取り出しは1回のパースで行う（失敗時は JwtException）
+                Claims claims = jwtUtils.parseClaims(jwt);
+                jwtUtils.checkNotRevoked(claims);
+                String username = claims.getSubject();
+                logger.debug("✅ JWT valid for user: " + username + " | URI: " + requestURI);
+                
+                UserDetails userDetails = jwtUtils.isClaimsOnly() ? jwtUtils.getPrincipalFromClaims(claims) : null;
+                if (userDetails == null) {
+                    userDetails = principalCache.get(jwt, claims.getExpiration(),
+                            () -> userDetailsService.loadUserByUsername(username));
                 }
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities());
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+                request.setAttribute("jwtAuthenticatedUser", username);
             } else {
                 logger.debug("⚠️ No JWT token found in request to: " + requestURI);
                 request.setAttribute("jwtError", "No JWT token found. Authorization header: " + headerAuth);
@@ -0,0 +1,127 @@
+package com.chatapp.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.chatapp.config.PrincipalCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * 検証済みJWTから復元したユーザー情報のキャッシュ
+ * キーはトークンのSHA-256（トークン自体は保持しない）。エントリの寿命は設定TTLとトークンの有効期限の短い方。
+ *
+ * ユーザーが更新・削除されたら {@link #invalidateUser(Long)} で世代番号を進め、
+ * それより前に読み込んだエントリを無効にする（読み込み中の更新も取りこぼさない）。
+ */
+@Component
+public class AuthenticatedPrincipalCache {
+
+    private final PrincipalCacheProperties properties;
+    private final Cache<String, CachedPrincipal> principals;
+    // userId -> 最後に変更されたときの世代番号
+    private final Cache<Long, Long> userGenerations;
+    private final AtomicLong generation = new AtomicLong();
+
+    public AuthenticatedPrincipalCache(PrincipalCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(Expiry.<String, CachedPrincipal>creating((key, value) -> value.timeToLive()))
+                .recordStats()
+                .build();
+        // エントリの最大寿命より長く保持すれば、無効化したエントリが復活することはない
+        this.userGenerations = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl().multipliedBy(2))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "authPrincipals");
+    }
+
+    /**
+     * キャッシュ済みのユーザー情報を返す。ない場合や無効化済みの場合は loader で読み込んでキャッシュする
+     */
+    public UserDetails get(String token, Date tokenExpiration, Supplier<UserDetails> loader) {
+        String key = hash(token);
+        CachedPrincipal cached = principals.getIfPresent(key);
+        if (cached != null && isCurrent(cached)) {
+            return cached.principal();
+        }
+
+        long loadedAt = generation.get();
+        UserDetails principal = loader.get();
+        Long userId = principal instanceof UserPrincipal userPrincipal ? userPrincipal.getId() : null;
+        Instant expiresAt = tokenExpiration != null ? tokenExpiration.toInstant() : null;
+        principals.put(key, new CachedPrincipal(principal, userId, loadedAt, expiresAt, properties.getTtl()));
+        return principal;
+    }
+
+    /**
+     * ユーザーの変更を反映する。トランザクション中であればコミット後にもう一度無効化する
+     */
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        bumpGeneration(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpGeneration(userId);
+                }
+            });
+        }
+    }
+
+    private void bumpGeneration(Long userId) {
+        userGenerations.put(userId, generation.incrementAndGet());
+    }
+
+    private boolean isCurrent(CachedPrincipal cached) {
+        if (cached.userId() == null) {
+            return true;
+        }
+        Long changedAt = userGenerations.getIfPresent(cached.userId());
+        return changedAt == null || changedAt <= cached.loadedAt();
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CachedPrincipal(UserDetails principal, Long userId, long loadedAt,
+                                   Instant expiresAt, Duration maxTtl) {
+
+        Duration timeToLive() {
+            if (expiresAt == null) {
+                return maxTtl;
+            }
+            Duration untilExpiry = Duration.between(Instant.now(), expiresAt);
+            if (untilExpiry.isNegative()) {
+                return Duration.ZERO;
+            }
+            return untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry : maxTtl;
+        }
+    }
+}
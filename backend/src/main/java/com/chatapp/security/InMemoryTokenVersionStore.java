@@ -0,0 +1,26 @@
+package com.chatapp.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * ノード内メモリに世代番号を保持する {@link TokenVersionStore}
+ * 再起動すると失効情報は失われる（トークンの有効期限までは再び有効になる）
+ */
+@Component
+public class InMemoryTokenVersionStore implements TokenVersionStore {
+
+    private final ConcurrentMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    @Override
+    public long currentVersion(Long userId) {
+        return versions.getOrDefault(userId, 0L);
+    }
+
+    @Override
+    public long revokeAll(Long userId) {
+        return versions.merge(userId, 1L, Long::sum);
+    }
+}
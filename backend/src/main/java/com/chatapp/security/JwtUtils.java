@@ -1,18 +1,27 @@
 package com.chatapp.security;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 
 @Component
 public class JwtUtils {
@@ -23,28 +32,94 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private int jwtExpirationMs;
     
+    @Value("${jwt.claims-only:false}")
+    private boolean claimsOnly;
+    
+    @Autowired
+    private TokenVersionStore tokenVersionStore;
+    
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_AUTHORITIES = "roles";
+    private static final String CLAIM_VERSION = "ver";
+    
+    // 鍵とパーサーは起動時に一度だけ作成する（どちらもスレッドセーフ）
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+    
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        return signingKey;
+    }
+    
+    /**
+     * 署名と有効期限を検証してクレームを返す（1リクエストにつき1回だけ呼ぶ）
+     * 検証に失敗した場合は JwtException をそのまま投げる
+     */
+    public Claims parseClaims(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
     }
     
     public String generateJwtToken(Authentication authentication) {
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
         
+        List<String> authorities = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+        
         return Jwts.builder()
                 .setSubject((userPrincipal.getUsername()))
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_AUTHORITIES, authorities)
+                .claim(CLAIM_VERSION, tokenVersionStore.currentVersion(userPrincipal.getId()))
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
                 .signWith(getSigningKey())
                 .compact();
     }
     
+    /**
+     * jwt.claims-only が有効な場合、ユーザー検索をせずクレームだけで認証する
+     */
+    public boolean isClaimsOnly() {
+        return claimsOnly;
+    }
+    
+    /**
+     * 失効済み（ver が現在の世代より古い）トークンなら JwtException を投げる
+     * ver を持たない旧形式のトークンはそのまま通す
+     */
+    public void checkNotRevoked(Claims claims) {
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        Long version = claims.get(CLAIM_VERSION, Long.class);
+        if (userId != null && version != null && version < tokenVersionStore.currentVersion(userId)) {
+            throw new JwtException("JWT has been revoked");
+        }
+    }
+    
+    /**
+     * クレームから UserPrincipal を組み立てる（DBアクセスなし）
+     * ユーザーIDを含まない旧形式のトークンの場合は null
+     */
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        if (userId == null) {
+            return null;
+        }
+        Collection<?> roles = claims.get(CLAIM_AUTHORITIES, Collection.class);
+        List<GrantedAuthority> authorities = roles == null ? List.of()
+                : roles.stream().<GrantedAuthority>map(role -> new SimpleGrantedAuthority(role.toString())).toList();
+        return new UserPrincipal(userId, claims.getSubject(), null, null, authorities);
+    }
+    
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
     
     public boolean validateJwtToken(String authToken) {
@@ -52,10 +127,7 @@ public class JwtUtils {
             System.out.println("🔍 Validating JWT | Length: " + authToken.length() + " | First 30 chars: " + authToken.substring(0, Math.min(30, authToken.length())));
             System.out.println("🔑 JWT Secret length: " + jwtSecret.length() + " | First 10 chars: " + jwtSecret.substring(0, Math.min(10, jwtSecret.length())));
             
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
+            jwtParser.parseClaimsJws(authToken);
             
             System.out.println("✅ JWT validation successful");
             return true;
@@ -0,0 +1,33 @@
+package com.chatapp.security;
+
+import java.security.Principal;
+
+/**
+ * STOMPセッションに紐付ける認証済みユーザー
+ * CONNECT時に一度だけ解決し、以降のフレームではDBを引かずにこの情報を使う
+ */
+public class StompPrincipal implements Principal {
+
+    private final Long id;
+    private final String username;
+    private final String displayName;
+
+    public StompPrincipal(Long id, String username, String displayName) {
+        this.id = id;
+        this.username = username;
+        this.displayName = displayName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
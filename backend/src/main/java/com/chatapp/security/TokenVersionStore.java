@@ -0,0 +1,22 @@
+package com.chatapp.security;
+
+/**
+ * ユーザーごとのトークン世代番号の保存先
+ * トークンには発行時の世代番号（ver クレーム）が入り、現在の世代より古いトークンは失効扱いになる。
+ * 既定はメモリ上の {@link InMemoryTokenVersionStore}。複数ノードで失効を共有する場合は
+ * 共有ストアを使う実装を @Primary で登録する
+ */
+public interface TokenVersionStore {
+
+    /**
+     * 現在の世代番号（一度も失効させていないユーザーは 0）
+     */
+    long currentVersion(Long userId);
+
+    /**
+     * 世代番号を進め、それまでに発行したトークンをすべて失効させる
+     *
+     * @return 新しい世代番号
+     */
+    long revokeAll(Long userId);
+}
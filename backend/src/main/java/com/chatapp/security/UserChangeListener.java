@@ -0,0 +1,38 @@
+package com.chatapp.security;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.chatapp.model.User;
+import com.chatapp.service.LeaderboardService;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * ユーザーの更新・削除時に認証キャッシュを無効化し、ランキングの表示名を更新するエンティティリスナー
+ */
+@Component
+public class UserChangeListener {
+
+    private final AuthenticatedPrincipalCache principalCache;
+    private final LeaderboardService leaderboardService;
+
+    public UserChangeListener(@Lazy AuthenticatedPrincipalCache principalCache,
+                              @Lazy LeaderboardService leaderboardService) {
+        this.principalCache = principalCache;
+        this.leaderboardService = leaderboardService;
+    }
+
+    @PostUpdate
+    public void onUserChanged(User user) {
+        principalCache.invalidateUser(user.getId());
+        leaderboardService.onUserChanged(user);
+    }
+
+    @PostRemove
+    public void onUserRemoved(User user) {
+        principalCache.invalidateUser(user.getId());
+        leaderboardService.onUserRemoved(user.getId());
+    }
+}
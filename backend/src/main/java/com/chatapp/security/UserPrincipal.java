@@ -14,12 +14,19 @@ public class UserPrincipal implements UserDetails {
     private final String username;
     private final String email;
     private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
     
     public UserPrincipal(Long id, String username, String email, String password) {
+        this(id, username, email, password, Collections.emptyList());
+    }
+    
+    public UserPrincipal(Long id, String username, String email, String password,
+                         Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
         this.username = username;
         this.email = email;
         this.password = password;
+        this.authorities = authorities;
     }
     
     public static UserPrincipal create(User user) {
@@ -51,7 +58,7 @@ public class UserPrincipal implements UserDetails {
     
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Collections.emptyList();
+        return authorities;
     }
     
     @Override
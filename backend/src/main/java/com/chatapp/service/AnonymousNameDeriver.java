@@ -0,0 +1,56 @@
+package com.chatapp.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.LocalDate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.stereotype.Component;
+
+import com.chatapp.config.AnonymousNameProperties;
+
+/**
+ * 匿名名の決定的な導出
+ * HMAC-SHA256(secret, groupId, userId, 日付) の先頭64bitを返す。
+ * 秘密鍵を知らなければ名前から利用者を逆算できず、日付が変われば結果も変わる
+ */
+@Component
+public class AnonymousNameDeriver {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final AnonymousNameProperties properties;
+
+    // Mac はスレッドセーフではないためスレッドごとに保持する
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::newMac);
+
+    public AnonymousNameDeriver(AnonymousNameProperties properties) {
+        this.properties = properties;
+        if (properties.getMode() == AnonymousNameProperties.Mode.DERIVED
+                && (properties.getSecret() == null || properties.getSecret().isBlank())) {
+            throw new IllegalStateException("app.anonymous-names.secret must be set when mode is DERIVED");
+        }
+    }
+
+    public long hash(Long groupId, Long userId, LocalDate date) {
+        ByteBuffer input = ByteBuffer.allocate(Long.BYTES * 3)
+                .putLong(groupId)
+                .putLong(userId)
+                .putLong(date.toEpochDay());
+        byte[] digest = mac.get().doFinal(input.array());
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(new SecretKeySpec(properties.getSecret().getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize " + ALGORITHM, e);
+        }
+    }
+}
@@ -1,21 +1,45 @@
 package com.chatapp.service;
 
 import java.security.SecureRandom;
+import java.sql.Statement;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.chatapp.config.AnonymousNameCacheProperties;
+import com.chatapp.config.AnonymousNameProperties;
+import com.chatapp.config.WebSocketBrokerProperties;
 import com.chatapp.model.Group;
 import com.chatapp.model.GroupMemberAlias;
 import com.chatapp.model.User;
 import com.chatapp.repository.GroupMemberAliasRepository;
+import com.chatapp.repository.GroupMemberRepository;
 import com.chatapp.repository.GroupRepository;
 import com.chatapp.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class AnonymousNameService {
@@ -29,6 +53,30 @@ public class AnonymousNameService {
     @Autowired
     private GroupRepository groupRepository;
     
+    @Autowired
+    private GroupMemberRepository groupMemberRepository;
+    
+    @Autowired
+    private AnonymousNameProperties properties;
+    
+    @Autowired
+    private AnonymousNameDeriver deriver;
+    
+    @Autowired
+    private AnonymousNameCacheProperties cacheProperties;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private WebSocketBrokerProperties brokerProperties;
+    
     // 花の名前リスト（読み仮名付き）
     private static final String[] FLOWER_NAMES = {
         "桜(さくら)", "梅(うめ)", "桃(もも)", "藤(ふじ)", "菖蒲(しょうぶ)", "紫陽花(あじさい)", "百合(ゆり)", "朝顔(あさがお)",
@@ -41,14 +89,62 @@ public class AnonymousNameService {
         "蒲公英(たんぽぽ)", "れんげ", "菜の花(なのはな)", "福寿草(ふくじゅそう)"
     };
     
+    private static final String SELECT_STALE_ALIAS_IDS_SQL =
+            "SELECT id FROM group_member_aliases WHERE id > ? AND last_rotation_date < ? ORDER BY id LIMIT ?";
+    
+    // 日次ジョブ・遅延ローテーション（他のノードを含む）で先に更新された行は上書きしない
+    private static final String ROTATE_ALIAS_SQL =
+            "UPDATE group_member_aliases SET anonymous_name = ?, last_rotation_date = ?, updated_at = ? "
+            + "WHERE id = ? AND (last_rotation_date IS NULL OR last_rotation_date < ?)";
+    
+    // ローテーション後の値を読み直す。ロック読み取りにして、他のトランザクションがコミットした最新の値を読む
+    private static final String SELECT_ALIAS_FOR_UPDATE_SQL =
+            "SELECT anonymous_name, last_rotation_date FROM group_member_aliases WHERE id = ? FOR UPDATE";
+    
     private final SecureRandom random = new SecureRandom();
     
+    // (groupId, targetUserId) -> 匿名名。エントリは名前が切り替わる日付の境界で失効する
+    private Cache<AliasKey, CachedAlias> aliasCache;
+    // 他のノードのリセット・ローテーションはこのノードのキャッシュに届かないため、simple モード以外ではキャッシュを使わない
+    private boolean singleNode;
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    void initCache() {
+        singleNode = brokerProperties.getMode() == WebSocketBrokerProperties.Mode.SIMPLE;
+        aliasCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfter(Expiry.<AliasKey, CachedAlias>writing((key, value) -> value.timeToLive()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, aliasCache, "anonymousNames");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
     /**
      * グループ内で対象ユーザーの匿名名を取得（viewerIdなし版）
      * 全員が同じ匿名名を見るため、viewerIdは不要
+     * キャッシュにあればDBには問い合わせない
      */
-    @Transactional
     public String getAnonymousName(Long targetUserId, Long groupId) {
+        if (isDerivedMode()) {
+            return properties.isAvoidCollisions()
+                    ? getAnonymousNames(groupId, List.of(targetUserId)).get(targetUserId)
+                    : deriveName(groupId, targetUserId, LocalDate.now());
+        }
+        if (!singleNode) {
+            return transactionTemplate.execute(status -> loadAnonymousName(targetUserId, groupId)).name();
+        }
+        return aliasCache.get(new AliasKey(groupId, targetUserId),
+                key -> transactionTemplate.execute(status -> loadAnonymousName(targetUserId, groupId)))
+                .name();
+    }
+    
+    /**
+     * DBから匿名名を取得し、存在しなければ作成、期限切れならローテーションする
+     * キャッシュのローダーから呼ばれるため、ここではキャッシュを操作しない
+     */
+    private CachedAlias loadAnonymousName(Long targetUserId, Long groupId) {
         System.out.println("🌸 getAnonymousName called - targetUserId: " + targetUserId + ", groupId: " + groupId);
         
         User targetUser = userRepository.findById(targetUserId)
@@ -67,13 +163,13 @@ public class AnonymousNameService {
                 });
         
         // ローテーションが必要かチェック
+        CachedAlias result = CachedAlias.of(alias);
         if (needsRotation(alias)) {
             System.out.println("🌸 Rotation needed for alias ID: " + alias.getId());
-            rotateAnonymousName(alias);
+            result = rotate(alias);
         }
         
-        String result = alias.getAnonymousName();
-        System.out.println("🌸 Returning anonymous name: " + result);
+        System.out.println("🌸 Returning anonymous name: " + result.name());
         return result;
     }
     
@@ -83,7 +179,6 @@ public class AnonymousNameService {
      * ローテーション日時をチェックして、期限切れの場合は更新
      * 全員が同じ匿名名を見る
      */
-    @Transactional
     public String getAnonymousName(Long viewerId, Long targetUserId, Long groupId) {
         System.out.println("🌸 getAnonymousName called - viewerId: " + viewerId + ", targetUserId: " + targetUserId + ", groupId: " + groupId);
         
@@ -103,15 +198,22 @@ public class AnonymousNameService {
      */
     @Transactional
     public Map<Long, String> getAnonymousNameMap(Long viewerId, Long groupId) {
+        if (isDerivedMode()) {
+            Map<Long, String> nameMap = getAnonymousNames(groupId, groupMemberRepository.findUserIdsByGroupId(groupId));
+            nameMap.put(viewerId, "あなた");
+            return nameMap;
+        }
+        
         List<GroupMemberAlias> aliases = aliasRepository.findByGroupId(groupId);
         Map<Long, String> nameMap = new HashMap<>();
         
         for (GroupMemberAlias alias : aliases) {
             // ローテーションが必要かチェック
+            String name = alias.getAnonymousName();
             if (needsRotation(alias)) {
-                rotateAnonymousName(alias);
+                name = rotateAnonymousName(alias);
             }
-            nameMap.put(alias.getTargetUser().getId(), alias.getAnonymousName());
+            nameMap.put(alias.getTargetUser().getId(), name);
         }
         
         // 自分自身
@@ -120,15 +222,132 @@ public class AnonymousNameService {
         return nameMap;
     }
     
+    /**
+     * グループ内の複数ユーザーの匿名名をまとめて取得
+     * キャッシュにないユーザーの分だけ1クエリで取得し、未作成のユーザー分はまとめて作成する
+     * 履歴表示のように同じグループの送信者を何人も解決する場合に使う
+     */
+    public Map<Long, String> getAnonymousNames(Long groupId, Collection<Long> targetUserIds) {
+        Map<Long, String> nameMap = new HashMap<>();
+        if (targetUserIds.isEmpty()) {
+            return nameMap;
+        }
+        
+        if (isDerivedMode() && !properties.isAvoidCollisions()) {
+            LocalDate today = LocalDate.now();
+            for (Long targetUserId : targetUserIds) {
+                nameMap.put(targetUserId, deriveName(groupId, targetUserId, today));
+            }
+            return nameMap;
+        }
+        
+        List<AliasKey> keys = new ArrayList<>(targetUserIds.size());
+        for (Long targetUserId : targetUserIds) {
+            keys.add(new AliasKey(groupId, targetUserId));
+        }
+        if (!singleNode) {
+            Set<AliasKey> missing = new LinkedHashSet<>(keys);
+            Map<AliasKey, CachedAlias> loaded = isDerivedMode()
+                    ? assignGroupNames(groupId, missing)
+                    : transactionTemplate.execute(status -> loadAnonymousNames(groupId, missing));
+            keys.forEach(key -> nameMap.put(key.targetUserId(), loaded.get(key).name()));
+            return nameMap;
+        }
+        Map<AliasKey, CachedAlias> cached = isDerivedMode()
+                ? aliasCache.getAll(keys, missing -> assignGroupNames(groupId, missing))
+                : aliasCache.getAll(keys,
+                        missing -> transactionTemplate.execute(status -> loadAnonymousNames(groupId, missing)));
+        cached.forEach((key, alias) -> nameMap.put(key.targetUserId(), alias.name()));
+        return nameMap;
+    }
+    
+    private Map<AliasKey, CachedAlias> loadAnonymousNames(Long groupId, Set<? extends AliasKey> keys) {
+        List<Long> targetUserIds = keys.stream().map(AliasKey::targetUserId).toList();
+        Map<AliasKey, CachedAlias> loaded = new HashMap<>();
+        
+        for (GroupMemberAlias alias : aliasRepository.findByGroupIdAndTargetUserIds(groupId, targetUserIds)) {
+            loaded.put(new AliasKey(groupId, alias.getTargetUser().getId()),
+                    needsRotation(alias) ? rotate(alias) : CachedAlias.of(alias));
+        }
+        
+        List<GroupMemberAlias> newAliases = new ArrayList<>();
+        for (Long targetUserId : targetUserIds) {
+            if (!loaded.containsKey(new AliasKey(groupId, targetUserId))) {
+                newAliases.add(new GroupMemberAlias(
+                        userRepository.getReferenceById(targetUserId),
+                        groupRepository.getReferenceById(groupId),
+                        generateAnonymousName()));
+            }
+        }
+        if (!newAliases.isEmpty()) {
+            aliasRepository.saveAll(newAliases);
+            for (GroupMemberAlias alias : newAliases) {
+                loaded.put(new AliasKey(groupId, alias.getTargetUser().getId()), CachedAlias.of(alias));
+            }
+        }
+        
+        return loaded;
+    }
+    
+    public boolean isDerivedMode() {
+        return properties.getMode() == AnonymousNameProperties.Mode.DERIVED;
+    }
+    
+    /**
+     * (groupId, userId, 日付) から匿名名を導出（DBアクセスなし）
+     */
+    private String deriveName(Long groupId, Long targetUserId, LocalDate date) {
+        return FLOWER_NAMES[Math.floorMod(deriver.hash(groupId, targetUserId, date), FLOWER_NAMES.length)];
+    }
+    
+    /**
+     * グループ内で名前が重複しないように導出名を割り当てる
+     * ハッシュ値の順にユーザーを並べ、導出した名前が使用済みなら次の名前を使う。
+     * 割り当てはメンバー構成に依存するため、グループ全員分をまとめてキャッシュする
+     * （メンバー数が名前の数を超える場合は重複を許す）
+     */
+    private Map<AliasKey, CachedAlias> assignGroupNames(Long groupId, Set<? extends AliasKey> requested) {
+        LocalDate today = LocalDate.now();
+        Set<Long> userIds = new LinkedHashSet<>(groupMemberRepository.findUserIdsByGroupId(groupId));
+        requested.forEach(key -> userIds.add(key.targetUserId()));
+        
+        Map<Long, Long> hashes = new HashMap<>();
+        for (Long userId : userIds) {
+            hashes.put(userId, deriver.hash(groupId, userId, today));
+        }
+        List<Long> ordered = new ArrayList<>(userIds);
+        ordered.sort(Comparator.comparing((Long userId) -> hashes.get(userId)).thenComparing(userId -> userId));
+        
+        boolean[] taken = new boolean[FLOWER_NAMES.length];
+        int used = 0;
+        Map<AliasKey, CachedAlias> assigned = new HashMap<>();
+        for (Long userId : ordered) {
+            int index = Math.floorMod(hashes.get(userId), FLOWER_NAMES.length);
+            if (used < FLOWER_NAMES.length) {
+                while (taken[index]) {
+                    index = (index + 1) % FLOWER_NAMES.length;
+                }
+                taken[index] = true;
+                used++;
+            }
+            assigned.put(new AliasKey(groupId, userId), new CachedAlias(FLOWER_NAMES[index], today));
+        }
+        return assigned;
+    }
+    
     /**
      * ランダムな花の名前を生成
      */
     private String generateAnonymousName() {
-        String flowerName = FLOWER_NAMES[random.nextInt(FLOWER_NAMES.length)];
+        String flowerName = randomFlowerName();
         System.out.println("🌸 Generated flower name: " + flowerName);
         return flowerName;
     }
     
+    private String randomFlowerName() {
+        return FLOWER_NAMES[random.nextInt(FLOWER_NAMES.length)];
+    }
+    
     /**
      * 匿名名のローテーションが必要かチェック
      * 最終ローテーション日が今日より前の場合、ローテーションが必要
@@ -142,14 +361,62 @@ public class AnonymousNameService {
     }
     
     /**
-     * 匿名名をローテーション(更新)
+     * 匿名名をローテーション(更新)し、ローテーション後の匿名名を返す
+     * 今日すでにローテーション済みの行は更新しない
+     */
+    @Transactional
+    public String rotateAnonymousName(GroupMemberAlias alias) {
+        CachedAlias rotated = rotate(alias);
+        AliasKey key = new AliasKey(alias.getGroup().getId(), alias.getTargetUser().getId());
+        evictAfterCommit(() -> aliasCache.invalidate(key));
+        return rotated.name();
+    }
+    
+    /**
+     * 最終ローテーション日が today より前の匿名名を、id が afterId より大きいものから最大 limit 件ローテーション
+     * 1チャンク = 1トランザクション、UPDATEはJDBCバッチでまとめて送る
+     * 対象の行はキャッシュ上では日付の境界で失効済みのため、キャッシュの破棄は不要
      */
     @Transactional
-    public void rotateAnonymousName(GroupMemberAlias alias) {
-        String newName = generateAnonymousName();
-        alias.setAnonymousName(newName);
-        alias.setLastRotationDate(LocalDate.now());
-        aliasRepository.save(alias);
+    public RotationChunk rotateStaleAliases(LocalDate today, long afterId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList(SELECT_STALE_ALIAS_IDS_SQL, Long.class, afterId, today, limit);
+        if (ids.isEmpty()) {
+            return new RotationChunk(0, null);
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> batchArgs = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            batchArgs.add(new Object[] { randomFlowerName(), today, now, id, today });
+        }
+        int rotated = 0;
+        for (int count : jdbcTemplate.batchUpdate(ROTATE_ALIAS_SQL, batchArgs)) {
+            // rewriteBatchedStatements 有効時は件数が返らない（SUCCESS_NO_INFO）
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                rotated++;
+            }
+        }
+        return new RotationChunk(rotated, ids.get(ids.size() - 1));
+    }
+    
+    /**
+     * バルクローテーション1チャンクの結果
+     * lastId は次のチャンクのカーソル。対象が残っていない場合は null
+     */
+    public record RotationChunk(int rotated, Long lastId) {}
+    
+    /**
+     * 最終ローテーション日が今日より前の場合だけ名前を更新し、DB上の現在の値を返す
+     * 他のスレッド・ノードや日次ジョブが先にローテーションしていれば、その名前をそのまま使う
+     * （渡されたエンティティは変更しない）
+     */
+    private CachedAlias rotate(GroupMemberAlias alias) {
+        LocalDate today = LocalDate.now();
+        jdbcTemplate.update(ROTATE_ALIAS_SQL, generateAnonymousName(), today, LocalDateTime.now(), alias.getId(), today);
+        return jdbcTemplate.queryForObject(SELECT_ALIAS_FOR_UPDATE_SQL, (rs, rowNum) -> {
+            LocalDate rotationDate = rs.getObject("last_rotation_date", LocalDate.class);
+            return new CachedAlias(rs.getString("anonymous_name"), rotationDate != null ? rotationDate : today);
+        }, alias.getId());
     }
     
     /**
@@ -157,9 +424,47 @@ public class AnonymousNameService {
      */
     @Transactional
     public void resetGroupAliases(Long groupId) {
+        if (isDerivedMode()) {
+            throw new IllegalStateException("Derived anonymous names cannot be reset; they change with the date");
+        }
         Group group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
         List<GroupMemberAlias> aliases = aliasRepository.findByGroup(group);
         aliasRepository.deleteAll(aliases);
+        evictAfterCommit(() -> aliasCache.asMap().keySet().removeIf(key -> key.groupId().equals(groupId)));
+    }
+    
+    /**
+     * キャッシュを即座に破棄し、トランザクション中であればコミット後にもう一度破棄する
+     * （コミット前に他のスレッドが古い値を読み込んでキャッシュし直すのを防ぐ）
+     */
+    private void evictAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+    
+    private record AliasKey(Long groupId, Long targetUserId) {}
+    
+    private record CachedAlias(String name, LocalDate rotationDate) {
+        
+        static CachedAlias of(GroupMemberAlias alias) {
+            LocalDate rotationDate = alias.getLastRotationDate() != null ? alias.getLastRotationDate() : LocalDate.now();
+            return new CachedAlias(alias.getAnonymousName(), rotationDate);
+        }
+        
+        /**
+         * ローテーション日の翌日0時（needsRotation が true になる時刻）まで有効
+         */
+        Duration timeToLive() {
+            Duration ttl = Duration.between(LocalDateTime.now(), rotationDate.plusDays(1).atStartOfDay());
+            return ttl.isNegative() ? Duration.ZERO : ttl;
+        }
     }
 }
@@ -2,32 +2,60 @@ package com.chatapp.service;
 
 import com.chatapp.model.*;
 import com.chatapp.repository.*;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * バッジ管理サービス
+ *
+ * 獲得条件は RULES に宣言し、しきい値はバッジのカタログ（badges.requirement_value）から読む。
  */
 @Service
 public class BadgeService {
     
+    static final List<BadgeRule> RULES = List.of(
+            BadgeRule.of("FIRST_STEP", Metric.TOTAL_COMPLETIONS),
+            BadgeRule.of("STREAK_3", Metric.CURRENT_STREAK),
+            BadgeRule.of("STREAK_7", Metric.CURRENT_STREAK),
+            BadgeRule.of("TOTAL_10", Metric.TOTAL_COMPLETIONS),
+            BadgeRule.of("TOTAL_30", Metric.TOTAL_COMPLETIONS),
+            BadgeRule.of("TOTAL_50", Metric.TOTAL_COMPLETIONS),
+            new BadgeRule("GRATITUDE_10", Metric.TYPE_COMPLETIONS, DailyChallenge.ChallengeType.GRATITUDE),
+            new BadgeRule("KINDNESS_10", Metric.TYPE_COMPLETIONS, DailyChallenge.ChallengeType.KINDNESS),
+            new BadgeRule("SELF_CARE_10", Metric.TYPE_COMPLETIONS, DailyChallenge.ChallengeType.SELF_CARE),
+            new BadgeRule("CREATIVITY_10", Metric.TYPE_COMPLETIONS, DailyChallenge.ChallengeType.CREATIVITY),
+            new BadgeRule("CONNECTION_10", Metric.TYPE_COMPLETIONS, DailyChallenge.ChallengeType.CONNECTION),
+            BadgeRule.of("LEVEL_3", Metric.FLOWER_LEVEL),
+            BadgeRule.of("LEVEL_5", Metric.FLOWER_LEVEL),
+            BadgeRule.of("LEVEL_7", Metric.FLOWER_LEVEL),
+            BadgeRule.of("LEVEL_10", Metric.FLOWER_LEVEL)
+    );
+    
     private final BadgeRepository badgeRepository;
     private final UserBadgeRepository userBadgeRepository;
     private final UserProgressRepository userProgressRepository;
-    private final ChallengeCompletionRepository challengeCompletionRepository;
+    private final ChallengeStatsService challengeStatsService;
+    
+    // badge_type → バッジ（起動時に読み込み、付与のたびにDBから引かない）
+    private volatile Map<String, Badge> catalogue;
     
     public BadgeService(
             BadgeRepository badgeRepository,
             UserBadgeRepository userBadgeRepository,
             UserProgressRepository userProgressRepository,
-            ChallengeCompletionRepository challengeCompletionRepository) {
+            ChallengeStatsService challengeStatsService) {
         this.badgeRepository = badgeRepository;
         this.userBadgeRepository = userBadgeRepository;
         this.userProgressRepository = userProgressRepository;
-        this.challengeCompletionRepository = challengeCompletionRepository;
+        this.challengeStatsService = challengeStatsService;
     }
     
     /**
@@ -61,112 +89,103 @@ public class BadgeService {
      */
     @Transactional
     public List<UserBadge> checkAndAwardBadges(User user) {
-        List<UserBadge> newlyEarnedBadges = new ArrayList<>();
-        
-        // ユーザー進捗を取得
         UserProgress progress = userProgressRepository.findByUser(user).orElse(null);
         if (progress == null) {
-            return newlyEarnedBadges;
-        }
-        
-        // 総達成数を取得
-        long totalCompletions = challengeCompletionRepository.countByUser(user);
-        
-        // 各バッジ条件をチェック
-        
-        // 初めての一歩（1回達成）
-        if (totalCompletions >= 1) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "FIRST_STEP"));
-        }
-        
-        // ストリーク系
-        if (progress.getCurrentStreak() >= 3) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "STREAK_3"));
-        }
-        if (progress.getCurrentStreak() >= 7) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "STREAK_7"));
+            return new ArrayList<>();
         }
-        
-        // 総達成数
-        if (totalCompletions >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "TOTAL_10"));
-        }
-        if (totalCompletions >= 30) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "TOTAL_30"));
-        }
-        if (totalCompletions >= 50) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "TOTAL_50"));
-        }
-        
-        // カテゴリ別達成数
-        long gratitudeCount = challengeCompletionRepository.countByChallengeType(user, DailyChallenge.ChallengeType.GRATITUDE);
-        if (gratitudeCount >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "GRATITUDE_10"));
-        }
-        
-        long kindnessCount = challengeCompletionRepository.countByChallengeType(user, DailyChallenge.ChallengeType.KINDNESS);
-        if (kindnessCount >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "KINDNESS_10"));
+        return checkAndAwardBadges(user, progress);
+    }
+    
+    /**
+     * バッジ獲得条件をチェックして、新しいバッジを付与（進捗は呼び出し側で取得済みのものを使う）
+     *
+     * 獲得済みのバッジは1回のクエリでまとめて読み、未獲得のルールだけを評価する。
+     * 達成数が必要なルールが残っているときだけ、user_challenge_stats の行を読む（達成直後は同じトランザクションで更新済み）。
+     */
+    @Transactional
+    public List<UserBadge> checkAndAwardBadges(User user, UserProgress progress) {
+        List<UserBadge> newlyEarnedBadges = new ArrayList<>();
+        Map<String, Badge> catalogue = catalogue();
+        Set<String> owned = userBadgeRepository.findBadgeTypesByUserId(user.getId());
+        
+        List<BadgeRule> pending = new ArrayList<>();
+        boolean needsCounts = false;
+        for (BadgeRule rule : RULES) {
+            if (!owned.contains(rule.badgeType()) && catalogue.containsKey(rule.badgeType())) {
+                pending.add(rule);
+                needsCounts |= rule.metric().isCompletionCount();
+            }
+        }
+        if (pending.isEmpty()) {
+            return newlyEarnedBadges;
         }
         
-        long selfCareCount = challengeCompletionRepository.countByChallengeType(user, DailyChallenge.ChallengeType.SELF_CARE);
-        if (selfCareCount >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "SELF_CARE_10"));
+        UserChallengeStats stats = needsCounts ? challengeStatsService.getStats(user.getId()) : null;
+        for (BadgeRule rule : pending) {
+            Badge badge = catalogue.get(rule.badgeType());
+            if (rule.value(progress, stats) >= badge.getRequirementValue()) {
+                UserBadge userBadge = new UserBadge();
+                userBadge.setUser(user);
+                userBadge.setBadge(badge);
+                userBadge.setIsNew(true);
+                newlyEarnedBadges.add(userBadgeRepository.save(userBadge));
+            }
         }
         
-        long creativityCount = challengeCompletionRepository.countByChallengeType(user, DailyChallenge.ChallengeType.CREATIVITY);
-        if (creativityCount >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "CREATIVITY_10"));
+        return newlyEarnedBadges;
+    }
+    
+    /**
+     * バッジのカタログ（badge_type → バッジ）を読み直す。起動時の初期データ投入後に読み込む
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reloadCatalogue() {
+        Map<String, Badge> loaded = new HashMap<>();
+        for (Badge badge : badgeRepository.findAll()) {
+            loaded.put(badge.getBadgeType(), badge);
         }
-        
-        long connectionCount = challengeCompletionRepository.countByChallengeType(user, DailyChallenge.ChallengeType.CONNECTION);
-        if (connectionCount >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "CONNECTION_10"));
+        catalogue = Map.copyOf(loaded);
+    }
+    
+    private Map<String, Badge> catalogue() {
+        Map<String, Badge> current = catalogue;
+        if (current == null || current.isEmpty()) {
+            reloadCatalogue();
+            current = catalogue;
         }
+        return current;
+    }
+    
+    /**
+     * ルールが参照する値の種類
+     */
+    enum Metric {
+        TOTAL_COMPLETIONS, TYPE_COMPLETIONS, CURRENT_STREAK, FLOWER_LEVEL;
         
-        // 花レベル
-        if (progress.getFlowerLevel() >= 3) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "LEVEL_3"));
-        }
-        if (progress.getFlowerLevel() >= 5) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "LEVEL_5"));
-        }
-        if (progress.getFlowerLevel() >= 7) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "LEVEL_7"));
-        }
-        if (progress.getFlowerLevel() >= 10) {
-            newlyEarnedBadges.addAll(awardBadgeIfNotExists(user, "LEVEL_10"));
+        boolean isCompletionCount() {
+            return this == TOTAL_COMPLETIONS || this == TYPE_COMPLETIONS;
         }
-        
-        return newlyEarnedBadges;
     }
     
     /**
-     * バッジがまだ獲得されていなければ付与
+     * バッジの獲得条件。値がカタログの requirementValue 以上になったら獲得
      */
-    private List<UserBadge> awardBadgeIfNotExists(User user, String badgeType) {
-        List<UserBadge> result = new ArrayList<>();
+    record BadgeRule(String badgeType, Metric metric, DailyChallenge.ChallengeType challengeType) {
         
-        // 既に獲得済みかチェック
-        if (userBadgeRepository.existsByUserAndBadge_BadgeType(user, badgeType)) {
-            return result;
+        static BadgeRule of(String badgeType, Metric metric) {
+            return new BadgeRule(badgeType, metric, null);
         }
         
-        // バッジを取得
-        Badge badge = badgeRepository.findByBadgeType(badgeType).orElse(null);
-        if (badge == null) {
-            return result;
+        /**
+         * ルールが参照する値。達成数のルールでは stats が必要
+         */
+        long value(UserProgress progress, UserChallengeStats stats) {
+            return switch (metric) {
+                case TOTAL_COMPLETIONS -> stats.getTotalCompletions();
+                case TYPE_COMPLETIONS -> stats.getCount(challengeType);
+                case CURRENT_STREAK -> progress.getCurrentStreak();
+                case FLOWER_LEVEL -> progress.getFlowerLevel();
+            };
         }
-        
-        // ユーザーバッジを作成
-        UserBadge userBadge = new UserBadge();
-        userBadge.setUser(user);
-        userBadge.setBadge(badge);
-        userBadge.setIsNew(true);
-        
-        UserBadge saved = userBadgeRepository.save(userBadge);
-        result.add(saved);
-        
-        return result;
     }
 }
@@ -1,5 +1,7 @@
 package com.chatapp.service;
 
+import com.chatapp.dto.LeaderboardDtos.RankingEntry;
+import com.chatapp.dto.LeaderboardDtos.WindowRankingEntry;
 import com.chatapp.model.*;
 import com.chatapp.repository.*;
 import org.springframework.stereotype.Service;
@@ -20,6 +22,8 @@ public class ChallengeService {
     private final ChallengeCompletionRepository challengeCompletionRepository;
     private final UserRepository userRepository;
     private final BadgeService badgeService;
+    private final LeaderboardService leaderboardService;
+    private final ChallengeStatsService challengeStatsService;
     private final Random random = new Random();
     private static final int DAILY_COMPLETION_LIMIT = 3;
     
@@ -28,12 +32,16 @@ public class ChallengeService {
             UserProgressRepository userProgressRepository,
             ChallengeCompletionRepository challengeCompletionRepository,
             UserRepository userRepository,
-            BadgeService badgeService) {
+            BadgeService badgeService,
+            LeaderboardService leaderboardService,
+            ChallengeStatsService challengeStatsService) {
         this.dailyChallengeRepository = dailyChallengeRepository;
         this.userProgressRepository = userProgressRepository;
         this.challengeCompletionRepository = challengeCompletionRepository;
         this.userRepository = userRepository;
         this.badgeService = badgeService;
+        this.leaderboardService = leaderboardService;
+        this.challengeStatsService = challengeStatsService;
     }
     
     /**
@@ -145,8 +153,14 @@ public class ChallengeService {
         
         ChallengeCompletion savedCompletion = challengeCompletionRepository.save(completion);
         
+        // ユーザー別の達成数を加算（バッジ判定はここを読む）
+        challengeStatsService.recordCompletion(userId, challenge.getChallengeType());
+        
+        // ランキング（通算・期間別）にはコミット後に反映
+        leaderboardService.onChallengeCompleted(user, progress, savedCompletion);
+        
         // バッジ獲得条件をチェック
-        List<UserBadge> newBadges = badgeService.checkAndAwardBadges(user);
+        List<UserBadge> newBadges = badgeService.checkAndAwardBadges(user, progress);
         
         // 結果をMapで返す
         Map<String, Object> result = new HashMap<>();
@@ -199,16 +213,45 @@ public class ChallengeService {
     }
     
     /**
-     * ランキングを取得（上位10人）
+     * ランキングを取得（上位 limit 人、最大 LeaderboardService.MAX_RANKING_LIMIT 人）
+     */
+    public List<RankingEntry> getTopRanking(int limit) {
+        return leaderboardService.getTop(limit);
+    }
+    
+    /**
+     * ユーザーの順位を取得（進捗がない場合は null）
+     */
+    public RankingEntry getUserRanking(Long userId) {
+        return leaderboardService.getRank(userId);
+    }
+    
+    /**
+     * 期間別ランキングを取得（上位 limit 人、最大 LeaderboardService.MAX_RANKING_LIMIT 人）
      */
-    public List<UserProgress> getTopRanking(int limit) {
-        return userProgressRepository.findTopUsers();
+    public List<WindowRankingEntry> getTopRanking(LeaderboardService.Window window, int limit) {
+        return leaderboardService.getTop(window, limit);
     }
     
     /**
-     * 特定期間内のチャレンジ達成数をカウント
+     * 期間別のユーザーの順位を取得（期間内に達成がない場合は null）
      */
-    public long countCompletionsBetween(Long userId, LocalDateTime startDate, LocalDateTime endDate) {
-        return challengeCompletionRepository.countCompletionsBetween(userId, startDate, endDate);
+    public WindowRankingEntry getUserRanking(LeaderboardService.Window window, Long userId) {
+        return leaderboardService.getRank(window, userId);
     }
+    
+    /**
+     * ユーザーの達成数（総数とタイプ別）を取得
+     */
+    public UserChallengeStats getChallengeStats(Long userId) {
+        return challengeStatsService.getStats(userId);
+    }
+    
+    /**
+     * 期間内（今日を含む直近 window.days 日）のチャレンジ達成数
+     */
+    public long countCompletions(LeaderboardService.Window window, Long userId) {
+        return leaderboardService.countCompletions(window, userId);
+    }
+
 }
@@ -0,0 +1,150 @@
+package com.chatapp.service;
+
+import com.chatapp.model.DailyChallenge;
+import com.chatapp.model.UserChallengeStats;
+import com.chatapp.repository.ChallengeCompletionRepository;
+import com.chatapp.repository.UserChallengeStatsRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ユーザーごとのチャレンジ達成数（user_challenge_stats）を管理するサービス
+ *
+ * 達成のたびに同じトランザクションで行ロックを取って加算する。行がないユーザー（導入前の達成記録しかないなど）は
+ * その場で challenge_completions から集計して作る。既存データはバックフィルでまとめて作り直せる。
+ *
+ * 行は INSERT IGNORE で作るため、同じユーザーの最初の達成が同時に来ても主キー違反でロールバックしない。
+ * 後から来た方は先に作られた行をロックして加算する。
+ *
+ * 数え直し（rebuild・バックフィル）は行ロックを取ってから READ COMMITTED で数える。
+ * REPEATABLE READ ではロック前の最初の読み取りでスナップショットが決まり、ロック待ちの間にコミットされた達成を
+ * 数えないまま加算済みの値を上書きしてしまうため。
+ */
+@Service
+public class ChallengeStatsService {
+
+    private final UserChallengeStatsRepository userChallengeStatsRepository;
+    private final ChallengeCompletionRepository challengeCompletionRepository;
+
+    public ChallengeStatsService(UserChallengeStatsRepository userChallengeStatsRepository,
+                                 ChallengeCompletionRepository challengeCompletionRepository) {
+        this.userChallengeStatsRepository = userChallengeStatsRepository;
+        this.challengeCompletionRepository = challengeCompletionRepository;
+    }
+
+    /**
+     * 達成を加算する。達成記録を保存した後、同じトランザクションで呼ぶこと
+     */
+    @Transactional
+    public UserChallengeStats recordCompletion(Long userId, DailyChallenge.ChallengeType challengeType) {
+        UserChallengeStats stats = userChallengeStatsRepository.findByUserIdForUpdate(userId).orElse(null);
+        if (stats == null) {
+            // 保存済みの今回の達成も集計に含まれる
+            UserChallengeStats counted = countFromCompletions(userId);
+            if (userChallengeStatsRepository.insertIfAbsent(counted)) {
+                return userChallengeStatsRepository.findByUserIdForUpdate(userId).orElseThrow();
+            }
+            // 同時に最初の達成をした別のトランザクションが先に行を作った（その集計に今回の達成は含まれない）
+            stats = userChallengeStatsRepository.findByUserIdForUpdate(userId).orElseThrow();
+        }
+        stats.increment(challengeType);
+        return stats;
+    }
+
+    /**
+     * ユーザーの達成数。行がなければ達成記録から作る
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public UserChallengeStats getStats(Long userId) {
+        return userChallengeStatsRepository.findById(userId).orElseGet(() -> rebuild(userId));
+    }
+
+    /**
+     * 1ユーザー分を達成記録から数え直す（達成がなく行もなければ保存せずに0件の集計を返す）
+     * 行ロックを取ってから数えるため、ロック待ちの間にコミットされた達成も集計に含まれる
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public UserChallengeStats rebuild(Long userId) {
+        UserChallengeStats stats = userChallengeStatsRepository.findByUserIdForUpdate(userId).orElse(null);
+        UserChallengeStats counted = countFromCompletions(userId);
+        if (stats != null) {
+            stats.replaceCounts(counted.getCountsByType());
+            return stats;
+        }
+        if (counted.getTotalCompletions() == 0) {
+            // 達成のないユーザーの行は作らない
+            return counted;
+        }
+        userChallengeStatsRepository.insertIfAbsent(counted);
+        return userChallengeStatsRepository.findByUserIdForUpdate(userId).orElseThrow();
+    }
+
+    /**
+     * 達成記録から数えた集計（保存はしない）
+     */
+    private UserChallengeStats countFromCompletions(Long userId) {
+        Map<DailyChallenge.ChallengeType, Long> counts = new EnumMap<>(DailyChallenge.ChallengeType.class);
+        for (ChallengeCompletionRepository.TypeCountProjection row
+                : challengeCompletionRepository.countByUserGroupByChallengeType(userId)) {
+            counts.put(row.getChallengeType(), row.getCompletions());
+        }
+        UserChallengeStats stats = new UserChallengeStats(userId);
+        stats.replaceCounts(counts);
+        return stats;
+    }
+
+    /**
+     * バックフィル1チャンク分。afterUserId より後で達成記録のあるユーザーを limit 人まで数え直す
+     * onlyMissing が true の場合は行がないユーザーだけが対象
+     *
+     * 既存の行をロックしてから数える。ロックを取る前にコミットされた達成は集計に含まれ、
+     * 処理中に来た同じユーザーの達成はロック待ちになり、このチャンクのコミット後に加算される。
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public BackfillChunk backfillChunk(long afterUserId, int limit, boolean onlyMissing) {
+        PageRequest page = PageRequest.of(0, limit);
+        List<Long> userIds = onlyMissing
+                ? challengeCompletionRepository.findUserIdsWithoutStatsAfter(afterUserId, page)
+                : challengeCompletionRepository.findUserIdsWithCompletionsAfter(afterUserId, page);
+        if (userIds.isEmpty()) {
+            return new BackfillChunk(0, null);
+        }
+
+        Map<Long, UserChallengeStats> statsByUser = new HashMap<>();
+        for (UserChallengeStats stats : userChallengeStatsRepository.findByUserIdInForUpdate(userIds)) {
+            statsByUser.put(stats.getUserId(), stats);
+        }
+        Map<Long, Map<DailyChallenge.ChallengeType, Long>> countsByUser = new HashMap<>();
+        for (ChallengeCompletionRepository.UserTypeCountProjection row
+                : challengeCompletionRepository.countByUsersGroupByChallengeType(userIds)) {
+            countsByUser.computeIfAbsent(row.getUserId(), id -> new EnumMap<>(DailyChallenge.ChallengeType.class))
+                    .put(row.getChallengeType(), row.getCompletions());
+        }
+        for (Long userId : userIds) {
+            Map<DailyChallenge.ChallengeType, Long> counts = countsByUser.getOrDefault(userId, Map.of());
+            UserChallengeStats stats = statsByUser.get(userId);
+            if (stats != null) {
+                stats.replaceCounts(counts);
+                continue;
+            }
+            // 処理中に最初の達成で行が作られた場合は、そちらが達成記録から数えているので何もしない
+            stats = new UserChallengeStats(userId);
+            stats.replaceCounts(counts);
+            userChallengeStatsRepository.insertIfAbsent(stats);
+        }
+        return new BackfillChunk(userIds.size(), userIds.get(userIds.size() - 1));
+    }
+
+    /**
+     * バックフィル1チャンクの結果
+     * lastUserId は次のチャンクのカーソル。対象が残っていない場合は null
+     */
+    public record BackfillChunk(int updated, Long lastUserId) {}
+}
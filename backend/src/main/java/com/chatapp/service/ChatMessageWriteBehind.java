@@ -0,0 +1,602 @@
+package com.chatapp.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.chatapp.config.ChatWriteBehindProperties;
+import com.chatapp.model.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * チャットメッセージの非同期書き込み（write-behind）
+ * IDを先に採番してすぐにブロードキャストできるようにし、INSERTはバックグラウンドで
+ * JDBCバッチとしてまとめて実行する。
+ * キューが溢れた場合・DBに書けない場合・シャットダウン時に書き切れない場合はスピルファイルに退避し、
+ * 次回起動時またはアイドル時に再投入する。再投入されるまでのスピル済みメッセージはメモリにも索引を持ち、
+ * 書き込み待ちとして履歴・カーソルの解決に含める。
+ * スピルファイルにも書けなかったメッセージはメモリに残し、アイドル時に書き込みからやり直す
+ * （DBかスピルファイルに書けるまで flush の完了には数えない）。
+ * 採番したIDが別のメッセージに使われていた場合は振り直さず、conflicts.jsonl に退避してエラーを出す
+ * （クライアントは既に採番したIDを受け取っているため）。
+ */
+@Component
+public class ChatMessageWriteBehind implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageWriteBehind.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (id, content, sender_id, room_id, created_at, message_type) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String STORED_ROW_SQL =
+            "SELECT sender_id, room_id, content, message_type FROM chat_messages WHERE id = ?";
+    private static final String SPILL_FILE = "spill.jsonl";
+    private static final String REPLAY_SUFFIX = ".replay";
+    private static final String CONFLICT_FILE = "conflicts.jsonl";
+
+    private final ChatWriteBehindProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final SessionFactoryImplementor sessionFactory;
+    // hibernate.jdbc.time_zone（未設定なら null）。JPAで保存した行と created_at の基準を揃える
+    private final TimeZone jdbcTimeZone;
+    private final ObjectMapper objectMapper;
+
+    private final BlockingQueue<PendingMessage> queue;
+    private volatile List<PendingMessage> inFlight = List.of();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicBoolean spillPending = new AtomicBoolean();
+    private final Object spillLock = new Object();
+    // DBにもスピルファイルにも書けなかったメッセージ（spillLock で保護）
+    private final List<PendingMessage> retained = new ArrayList<>();
+    // スピルファイルに書いたがまだ再投入していないメッセージ（spillLock で保護）
+    private final Map<Long, PendingMessage> spilled = new LinkedHashMap<>();
+
+    private final Counter persistedCounter;
+    private final Counter batchCounter;
+    private final Counter spilledCounter;
+    private final Counter failureCounter;
+    private final Counter conflictCounter;
+
+    private volatile BeforeExecutionGenerator idGenerator;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * 永続化待ちのメッセージ（スピルファイルにもこの形で書き出す）
+     */
+    public record PendingMessage(Long id,
+                                 String content,
+                                 Long senderId,
+                                 String senderUsername,
+                                 String senderDisplayName,
+                                 String roomId,
+                                 String messageType,
+                                 LocalDateTime createdAt) {
+
+        static PendingMessage of(ChatMessage message) {
+            return new PendingMessage(
+                    message.getId(),
+                    message.getContent(),
+                    message.getSender().getId(),
+                    message.getSender().getUsername(),
+                    message.getSender().getDisplayName(),
+                    message.getRoomId(),
+                    message.getMessageType().name(),
+                    message.getCreatedAt());
+        }
+    }
+
+    public ChatMessageWriteBehind(ChatWriteBehindProperties properties,
+                                  JdbcTemplate jdbcTemplate,
+                                  EntityManagerFactory entityManagerFactory,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.jdbcTimeZone = sessionFactory.getSessionFactoryOptions().getJdbcTimeZone();
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+
+        this.persistedCounter = Counter.builder("chat.write-behind.persisted")
+                .description("Chat messages inserted by the write-behind stage")
+                .register(meterRegistry);
+        this.batchCounter = Counter.builder("chat.write-behind.batches")
+                .description("JDBC batches executed by the write-behind stage")
+                .register(meterRegistry);
+        this.spilledCounter = Counter.builder("chat.write-behind.spilled")
+                .description("Chat messages written to the spill file")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("chat.write-behind.failures")
+                .description("Failed batch insert attempts")
+                .register(meterRegistry);
+        this.conflictCounter = Counter.builder("chat.write-behind.conflicts")
+                .description("Chat messages whose id was already used by a different row")
+                .register(meterRegistry);
+        Gauge.builder("chat.write-behind.queue.size", queue, BlockingQueue::size)
+                .description("Chat messages waiting to be persisted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * write-behind が有効かつライターが動作中か（false の場合は呼び出し側で同期保存する）
+     */
+    public boolean isActive() {
+        return properties.isEnabled() && running;
+    }
+
+    /**
+     * ChatMessage のID生成器（シーケンス）からIDを採番する
+     * リポジトリ経由の保存と同じ生成器を使うため、IDが衝突することはない
+     */
+    public Long nextId() {
+        BeforeExecutionGenerator generator = idGenerator;
+        if (generator == null) {
+            generator = (BeforeExecutionGenerator) sessionFactory.getMappingMetamodel()
+                    .getEntityDescriptor(ChatMessage.class)
+                    .getGenerator();
+            idGenerator = generator;
+        }
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return (Long) generator.generate((SharedSessionContractImplementor) session, null, null, EventType.INSERT);
+        }
+    }
+
+    /**
+     * 採番済みのメッセージを永続化キューに積む
+     * キューが埋まっている場合は offerTimeoutMs だけ待ち（バックプレッシャー）、それでも空かなければスピルする
+     * ライターが止まっている場合は直接スピルする
+     */
+    public void submit(ChatMessage message) {
+        PendingMessage pending = PendingMessage.of(message);
+        submitted.incrementAndGet();
+        if (!running) {
+            spill(List.of(pending));
+            return;
+        }
+        try {
+            if (queue.offer(pending, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    // stop() がキューを空にした後に積んだ可能性があるので、残っていればここでスピルする
+                    spillQueued();
+                }
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("Write-behind queue is full ({} messages), spilling message {}", queue.size(), pending.id());
+        spill(List.of(pending));
+    }
+
+    /**
+     * 指定ルームでまだDBに書かれていないメッセージ（キュー内・実行中のバッチ・再投入待ちのスピル）
+     */
+    public List<PendingMessage> pendingFor(String roomId) {
+        List<PendingMessage> result = new ArrayList<>();
+        for (PendingMessage pending : inFlight) {
+            if (pending.roomId().equals(roomId)) {
+                result.add(pending);
+            }
+        }
+        for (PendingMessage pending : queue) {
+            if (pending.roomId().equals(roomId)) {
+                result.add(pending);
+            }
+        }
+        synchronized (spillLock) {
+            for (PendingMessage pending : retained) {
+                if (pending.roomId().equals(roomId)) {
+                    result.add(pending);
+                }
+            }
+            for (PendingMessage pending : spilled.values()) {
+                if (pending.roomId().equals(roomId)) {
+                    result.add(pending);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 呼び出し時点までに受け付けたメッセージが書き込まれる（またはスピルされる）まで待つ
+     */
+    public boolean flush(Duration timeout) {
+        long target = submitted.get();
+        if (!running) {
+            drainAndPersist();
+            return completed.get() >= target;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (completed.get() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        verifySequenceAhead();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        spillPending.set(loadSpilled());
+        running = true;
+        writer = new Thread(this::runWriter, "chat-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(Duration.ofSeconds(30).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // ライターが書き切れなかった分はスピルして次回起動時に再投入する
+        spillQueued();
+        synchronized (spillLock) {
+            if (!retained.isEmpty()) {
+                logger.error("Write-behind stopped with {} chat messages that could not be persisted or spilled",
+                        retained.size());
+            }
+        }
+        logger.info("Write-behind stopped (persisted: {}, spilled: {})",
+                (long) persistedCounter.count(), (long) spilledCounter.count());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runWriter() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            PendingMessage first;
+            try {
+                first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                if (running) {
+                    retryRetained();
+                }
+                if (running && spillPending.get()) {
+                    replaySpill();
+                }
+                continue;
+            }
+            List<PendingMessage> batch = new ArrayList<>(batchSize);
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            inFlight = batch;
+            try {
+                persistWithRetry(batch);
+            } finally {
+                inFlight = List.of();
+            }
+        }
+    }
+
+    private void spillQueued() {
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+    }
+
+    private void drainAndPersist() {
+        List<PendingMessage> batch = new ArrayList<>();
+        while (queue.drainTo(batch, Math.max(1, properties.getBatchSize())) > 0) {
+            persistWithRetry(batch);
+            batch = new ArrayList<>();
+        }
+        retryRetained();
+    }
+
+    private void retryRetained() {
+        List<PendingMessage> batch;
+        synchronized (spillLock) {
+            if (retained.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(retained);
+            retained.clear();
+        }
+        persistWithRetry(batch);
+    }
+
+    private void persistWithRetry(List<PendingMessage> batch) {
+        int attempts = Math.max(1, properties.getMaxRetries());
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                insert(batch);
+                completed.addAndGet(batch.size());
+                return;
+            } catch (DataAccessException e) {
+                failureCounter.increment();
+                logger.warn("Write-behind batch insert failed (attempt {}/{}): {}", attempt, attempts, e.getMessage());
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        spill(batch);
+    }
+
+    /**
+     * シーケンスが既存の最大IDより後ろを指していなければ起動を止める
+     * ddl-auto で chat_message_seq が作られると 1 から採番され、既存のメッセージとIDが衝突する
+     */
+    private void verifySequenceAhead() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM chat_messages", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        long next = nextId();
+        if (next <= maxId) {
+            throw new IllegalStateException("chat_message_seq (" + next + ") is not ahead of MAX(chat_messages.id) ("
+                    + maxId + "). Apply db/migration/V6__Chat_Message_Sequence.sql before starting "
+                    + "(see docs/DEPLOYMENT.md)");
+        }
+    }
+
+    /**
+     * バッチINSERT。IDが重複した場合は1件ずつ入れ直す
+     * 同じ内容の行が既にあれば書き込み済み（スピルの再投入など）として飛ばし、
+     * 別のメッセージがそのIDを使っている場合は conflicts.jsonl に退避する（IDは振り直さない）
+     */
+    private void insert(List<PendingMessage> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pending) -> {
+                ps.setLong(1, pending.id());
+                ps.setString(2, pending.content());
+                ps.setLong(3, pending.senderId());
+                ps.setString(4, pending.roomId());
+                setCreatedAt(ps, 5, pending.createdAt());
+                ps.setString(6, pending.messageType());
+            });
+            batchCounter.increment();
+            persistedCounter.increment(batch.size());
+        } catch (DuplicateKeyException e) {
+            List<PendingMessage> conflicts = new ArrayList<>();
+            for (PendingMessage pending : batch) {
+                try {
+                    insertOne(pending);
+                } catch (DuplicateKeyException duplicate) {
+                    if (isStored(pending)) {
+                        logger.debug("Chat message {} already persisted, skipping", pending.id());
+                    } else {
+                        conflicts.add(pending);
+                    }
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                quarantine(conflicts);
+            }
+        }
+    }
+
+    private void insertOne(PendingMessage pending) {
+        jdbcTemplate.update(INSERT_SQL, ps -> {
+            ps.setLong(1, pending.id());
+            ps.setString(2, pending.content());
+            ps.setLong(3, pending.senderId());
+            ps.setString(4, pending.roomId());
+            setCreatedAt(ps, 5, pending.createdAt());
+            ps.setString(6, pending.messageType());
+        });
+        persistedCounter.increment();
+    }
+
+    private void setCreatedAt(PreparedStatement ps, int index, LocalDateTime createdAt) throws SQLException {
+        if (jdbcTimeZone != null) {
+            ps.setTimestamp(index, Timestamp.valueOf(createdAt), Calendar.getInstance(jdbcTimeZone));
+        } else {
+            ps.setTimestamp(index, Timestamp.valueOf(createdAt));
+        }
+    }
+
+    /**
+     * 同じIDで同じ送信者・ルーム・内容・種別の行が保存済みか
+     */
+    private boolean isStored(PendingMessage pending) {
+        Boolean stored = jdbcTemplate.query(STORED_ROW_SQL, rs -> rs.next()
+                && rs.getLong("sender_id") == pending.senderId()
+                && pending.roomId().equals(rs.getString("room_id"))
+                && pending.content().equals(rs.getString("content"))
+                && pending.messageType().equals(rs.getString("message_type")), pending.id());
+        return Boolean.TRUE.equals(stored);
+    }
+
+    private void spill(List<PendingMessage> messages) {
+        synchronized (spillLock) {
+            Path directory = Paths.get(properties.getSpillDirectory());
+            try {
+                Files.createDirectories(directory);
+                try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(SPILL_FILE), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC)) {
+                    for (PendingMessage message : messages) {
+                        out.write(objectMapper.writeValueAsString(message));
+                        out.newLine();
+                    }
+                }
+                messages.forEach(message -> spilled.put(message.id(), message));
+                spilledCounter.increment(messages.size());
+                spillPending.set(true);
+                completed.addAndGet(messages.size());
+            } catch (IOException e) {
+                logger.error("Failed to spill {} chat messages to {}, keeping them in memory",
+                        messages.size(), directory, e);
+                retained.addAll(messages);
+            }
+        }
+    }
+
+    /**
+     * スピルファイルをDBへ再投入する。失敗した場合はファイルを残して次のアイドル時に再試行する
+     */
+    private void replaySpill() {
+        Path directory = Paths.get(properties.getSpillDirectory());
+        synchronized (spillLock) {
+            Path spillFile = directory.resolve(SPILL_FILE);
+            if (Files.exists(spillFile)) {
+                try {
+                    Files.move(spillFile, directory.resolve("spill-" + System.currentTimeMillis() + REPLAY_SUFFIX));
+                } catch (IOException e) {
+                    logger.error("Failed to rotate spill file {}", spillFile, e);
+                    return;
+                }
+            }
+            spillPending.set(false);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + REPLAY_SUFFIX)) {
+            for (Path file : files) {
+                List<PendingMessage> messages = new ArrayList<>();
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        messages.add(objectMapper.readValue(line, PendingMessage.class));
+                    }
+                }
+                int batchSize = Math.max(1, properties.getBatchSize());
+                for (int from = 0; from < messages.size(); from += batchSize) {
+                    insert(messages.subList(from, Math.min(messages.size(), from + batchSize)));
+                }
+                Files.delete(file);
+                synchronized (spillLock) {
+                    messages.forEach(message -> spilled.remove(message.id()));
+                }
+                logger.info("Replayed {} spilled chat messages from {}", messages.size(), file.getFileName());
+            }
+        } catch (IOException | DataAccessException e) {
+            logger.warn("Spill replay failed, will retry later: {}", e.getMessage());
+            spillPending.set(true);
+        }
+    }
+
+    /**
+     * 別のメッセージがIDを使っていたメッセージを conflicts.jsonl に退避する
+     * 採番済みのIDは既にクライアントに配信されているため、振り直さずに運用者の確認を待つ
+     */
+    private void quarantine(List<PendingMessage> conflicts) {
+        conflictCounter.increment(conflicts.size());
+        synchronized (spillLock) {
+            Path conflictFile = Paths.get(properties.getSpillDirectory()).resolve(CONFLICT_FILE);
+            for (PendingMessage pending : conflicts) {
+                logger.error("Chat message id {} is already used by a different message; moved message from sender {} "
+                        + "in room {} to {}. Check that chat_message_seq is ahead of MAX(id)",
+                        pending.id(), pending.senderId(), pending.roomId(), conflictFile);
+            }
+            try {
+                Files.createDirectories(conflictFile.getParent());
+                try (BufferedWriter out = Files.newBufferedWriter(conflictFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC)) {
+                    for (PendingMessage pending : conflicts) {
+                        out.write(objectMapper.writeValueAsString(pending));
+                        out.newLine();
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to write conflicting chat messages to {}: {}", conflictFile, conflicts, e);
+            }
+        }
+    }
+
+    /**
+     * 前回までのスピルファイルを読み込んで索引に載せる。再投入待ちのファイルがあれば true
+     */
+    private boolean loadSpilled() {
+        Path directory = Paths.get(properties.getSpillDirectory());
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        List<Path> files = new ArrayList<>();
+        if (Files.exists(directory.resolve(SPILL_FILE))) {
+            files.add(directory.resolve(SPILL_FILE));
+        }
+        try (DirectoryStream<Path> replays = Files.newDirectoryStream(directory, "*" + REPLAY_SUFFIX)) {
+            replays.forEach(files::add);
+        } catch (IOException e) {
+            logger.warn("Failed to list spill files in {}: {}", directory, e.getMessage());
+        }
+        synchronized (spillLock) {
+            for (Path file : files) {
+                try {
+                    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                        if (!line.isBlank()) {
+                            PendingMessage message = objectMapper.readValue(line, PendingMessage.class);
+                            spilled.put(message.id(), message);
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.warn("Failed to index spill file {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return !files.isEmpty();
+    }
+}
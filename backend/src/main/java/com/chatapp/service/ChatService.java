@@ -1,19 +1,33 @@
 package com.chatapp.service;
 
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.dto.ChatMessagePageDto;
 import com.chatapp.model.ChatMessage;
 import com.chatapp.model.Friend;
 import com.chatapp.model.User;
 import com.chatapp.repository.ChatMessageRepository;
 import com.chatapp.repository.FriendRepository;
+import com.chatapp.repository.GroupMemberRepository;
 import com.chatapp.repository.UserRepository;
+import com.chatapp.security.StompPrincipal;
 
 @Service
 public class ChatService {
@@ -27,18 +41,49 @@ public class ChatService {
     @Autowired
     private FriendRepository friendRepository;
     
+    @Autowired
+    private GroupMemberRepository groupMemberRepository;
+    
     @Autowired
     private GroupService groupService;
     
     @Autowired
     private AnonymousNameService anonymousNameService;
     
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+    
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+    
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+    
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SYNC_ROOMS = 100;
+    
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
     public ChatMessageDto saveMessage(ChatMessageDto messageDto) {
         User sender = userRepository.findByUsername(messageDto.getSenderUsername())
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        
+        return saveMessage(messageDto, sender);
+    }
+    
+    /**
+     * STOMPセッションの認証済みユーザーを送信者としてメッセージを保存（ユーザー検索なし）
+     * 送信者はIDだけを外部キーとして使う未管理の User で表す
+     */
+    public ChatMessageDto saveMessage(ChatMessageDto messageDto, StompPrincipal principal) {
+        User sender = new User();
+        sender.setId(principal.getId());
+        sender.setUsername(principal.getName());
+        sender.setDisplayName(principal.getDisplayName());
+        return saveMessage(messageDto, sender);
+    }
+    
+    private ChatMessageDto saveMessage(ChatMessageDto messageDto, User sender) {
         ChatMessage chatMessage = new ChatMessage(
                 messageDto.getContent(),
                 sender,
@@ -46,21 +91,41 @@ public class ChatService {
                 ChatMessage.MessageType.valueOf(messageDto.getMessageType().toUpperCase())
         );
         
-        ChatMessage savedMessage = chatMessageRepository.save(chatMessage);
-        return convertToDto(savedMessage);
+        ChatMessageDto savedDto;
+        if (writeBehind.isActive()) {
+            // IDだけ先に採番し、INSERTはバックグラウンドでまとめて行う
+            chatMessage.setId(writeBehind.nextId());
+            writeBehind.submit(chatMessage);
+            savedDto = convertToDto(chatMessage);
+        } else {
+            savedDto = convertToDto(chatMessageRepository.save(chatMessage));
+        }
+        recentMessageCache.append(savedDto);
+        if (chatMessage.getMessageType() == ChatMessage.MessageType.CHAT) {
+            unreadCounterService.onMessageSaved(savedDto.getRoomId(), savedDto.getId(), sender.getId());
+        }
+        return savedDto;
     }
     
-    public List<ChatMessageDto> getRecentMessages(String roomId) {
-        // 最新50件を取得し、時系列順（古い→新しい）で返す
-        List<ChatMessage> messages = chatMessageRepository.findTop50ByRoomIdOrderByCreatedAtDesc(roomId);
-        // リストを逆順にして古い順に変更
-        messages = messages.stream()
-                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
-                .collect(Collectors.toList());
+    /**
+     * ルームの履歴を1ページ取得する（キーセットページング）
+     * beforeId が null の場合は最新ページ、指定時はそのメッセージより古いページを返す
+     */
+    public ChatMessagePageDto getRecentMessages(String roomId, Long beforeId, int limit) {
+        int pageSize = normalizePageSize(limit);
         
-        return messages.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        // まずはメモリ上のバッファから返す
+        ChatMessagePageDto cached = recentMessageCache.getPage(roomId, beforeId, pageSize);
+        if (cached != null) {
+            return cached;
+        }
+        if (beforeId == null && recentMessageCache.supports(roomId)) {
+            return recentMessageCache.load(roomId, pageSize,
+                    count -> fetchPage(roomId, null, count).stream().map(this::convertToDto).toList());
+        }
+        
+        List<ChatMessage> messages = fetchPage(roomId, beforeId, pageSize);
+        return toPage(messages, pageSize, this::convertToDto);
     }
     
     /**
@@ -68,81 +133,84 @@ public class ChatService {
      * Validates access based on room type.
      */
     @SuppressWarnings("UnnecessaryTemporaryOnConversionFromString")
-    public List<ChatMessageDto> getMessagesByRoomId(String roomId, String currentUsername) {
+    public ChatMessagePageDto getMessagesByRoomId(String roomId, String currentUsername, Long beforeId, int limit) {
         User currentUser = userRepository.findByUsername(currentUsername)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Parse room type and validate access
         if (roomId.startsWith("group-")) {
             long groupId = Long.parseLong(roomId.substring(6));
-            return getGroupMessages(groupId, currentUser.getId());
+            return getGroupMessages(groupId, currentUser.getId(), beforeId, limit);
         } else if (roomId.startsWith("friend-")) {
             long friendshipId = Long.parseLong(roomId.substring(7));
-            return getFriendMessages(friendshipId);
+            return getFriendMessages(friendshipId, beforeId, limit);
         } else if (roomId.startsWith("topic-")) {
             long topicId = Long.parseLong(roomId.substring(6));
-            return getTopicMessages(topicId);
+            return getTopicMessages(topicId, beforeId, limit);
         } else {
             throw new IllegalArgumentException("Invalid room ID format: " + roomId);
         }
     }
     
     /**
-     * Get recent messages for a group.
+     * Get a page of messages for a group.
      * Room ID format: "group-{groupId}"
      * Checks if user has access to the group.
      */
-    public List<ChatMessageDto> getGroupMessages(Long groupId, String currentUsername) {
+    public ChatMessagePageDto getGroupMessages(Long groupId, String currentUsername, Long beforeId, int limit) {
         User currentUser = userRepository.findByUsername(currentUsername)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return getGroupMessages(groupId, currentUser.getId());
+        return getGroupMessages(groupId, currentUser.getId(), beforeId, limit);
     }
     
     /**
-     * Get recent messages for a group.
+     * Get a page of messages for a group.
      * Room ID format: "group-{groupId}"
      * Checks if user has access to the group.
      */
-    public List<ChatMessageDto> getGroupMessages(Long groupId, Long userId) {
+    public ChatMessagePageDto getGroupMessages(Long groupId, Long userId, Long beforeId, int limit) {
         // Check if user has access to this group (is a member)
         if (!groupService.canAccessGroup(groupId, userId)) {
             throw new IllegalStateException("You do not have access to this group");
         }
         
         // メッセージを取得
-        List<ChatMessage> messages = chatMessageRepository.findTop50ByRoomIdOrderByCreatedAtDesc("group-" + groupId);
-        messages = messages.stream()
-                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
-                .collect(Collectors.toList());
+        int pageSize = normalizePageSize(limit);
+        List<ChatMessage> messages = fetchPage("group-" + groupId, beforeId, pageSize);
         
-        // 匿名名を適用してDTOに変換
-        return messages.stream()
-                .map(message -> convertToGroupDto(message, userId, groupId))
-                .collect(Collectors.toList());
+        // ページ内の送信者の匿名名を1回でまとめて解決してからDTOに変換
+        Set<Long> senderIds = new HashSet<>();
+        for (ChatMessage message : messages) {
+            if (!userId.equals(message.getSender().getId())) {
+                senderIds.add(message.getSender().getId());
+            }
+        }
+        Map<Long, String> anonymousNames = anonymousNameService.getAnonymousNames(groupId, senderIds);
+        return toPage(messages, pageSize, message -> convertToGroupDto(message, userId, anonymousNames));
     }
     
     /**
-     * Get recent messages for a topic.
+     * Get a page of messages for a topic.
      * Room ID format: "topic-{topicId}"
      */
-    public List<ChatMessageDto> getTopicMessages(Long topicId, String currentUsername) {
+    public ChatMessagePageDto getTopicMessages(Long topicId, String currentUsername, Long beforeId, int limit) {
         // Topics are public, so no access check needed
-        return getTopicMessages(topicId);
+        return getTopicMessages(topicId, beforeId, limit);
     }
     
     /**
-     * Get recent messages for a topic.
+     * Get a page of messages for a topic.
      * Room ID format: "topic-{topicId}"
      */
-    public List<ChatMessageDto> getTopicMessages(Long topicId) {
-        return getRecentMessages("topic-" + topicId);
+    public ChatMessagePageDto getTopicMessages(Long topicId, Long beforeId, int limit) {
+        return getRecentMessages("topic-" + topicId, beforeId, limit);
     }
     
     /**
-     * Get recent messages for a friend chat.
+     * Get a page of messages for a friend chat.
      * Room ID format: "friend-{friendshipId}"
      */
-    public List<ChatMessageDto> getFriendMessages(Long friendshipId, String currentUsername) {
+    public ChatMessagePageDto getFriendMessages(Long friendshipId, String currentUsername, Long beforeId, int limit) {
         // フレンドシップの検証: currentUserがこのフレンドシップの一部であることを確認
         Friend friend = friendRepository.findById(friendshipId)
             .orElseThrow(() -> new RuntimeException("Friend relationship not found"));
@@ -155,15 +223,198 @@ public class ChatService {
             throw new RuntimeException("User is not part of this friendship");
         }
         
-        return getFriendMessages(friendshipId);
+        return getFriendMessages(friendshipId, beforeId, limit);
     }
     
     /**
-     * Get recent messages for a friend chat.
+     * Get a page of messages for a friend chat.
      * Room ID format: "friend-{friendshipId}"
      */
-    public List<ChatMessageDto> getFriendMessages(Long friendshipId) {
-        return getRecentMessages("friend-" + friendshipId);
+    public ChatMessagePageDto getFriendMessages(Long friendshipId, Long beforeId, int limit) {
+        return getRecentMessages("friend-" + friendshipId, beforeId, limit);
+    }
+    
+    /**
+     * 複数ルームの差分同期（再接続時用）
+     * lastSeenIds は roomId -> クライアントが最後に受け取ったメッセージID（未取得なら null または 0）。
+     * ルームごとにそれより新しいメッセージを最大 limit 件（新しい方から）返す。
+     * hasMore が true の場合は間にまだメッセージがあり、nextCursor から通常の履歴APIで遡れる。
+     * アクセスできないルームと不正なルームIDは結果に含めない。
+     */
+    public Map<String, ChatMessagePageDto> syncRooms(Long userId, Map<String, Long> lastSeenIds, int limit) {
+        if (lastSeenIds == null || lastSeenIds.isEmpty()) {
+            return Map.of();
+        }
+        if (lastSeenIds.size() > MAX_SYNC_ROOMS) {
+            throw new IllegalArgumentException("Too many rooms: " + lastSeenIds.size() + " (max " + MAX_SYNC_ROOMS + ")");
+        }
+        int pageSize = normalizePageSize(limit);
+        
+        // アクセス権はルームごとではなく2クエリでまとめて確認する
+        Set<Long> groupIds = new HashSet<>(groupMemberRepository.findGroupIdsByUserId(userId));
+        Set<Long> friendshipIds = new HashSet<>(friendRepository.findAcceptedFriendshipIds(userId));
+        
+        Map<String, ChatMessagePageDto> result = new LinkedHashMap<>();
+        lastSeenIds.forEach((roomId, lastSeenId) -> {
+            long afterId = lastSeenId != null ? Math.max(0, lastSeenId) : 0;
+            Long groupId = roomNumber(roomId, "group-");
+            if (groupId != null) {
+                if (groupIds.contains(groupId)) {
+                    result.put(roomId, syncGroupRoom(groupId, userId, afterId, pageSize));
+                }
+                return;
+            }
+            Long friendshipId = roomNumber(roomId, "friend-");
+            if ((friendshipId != null && friendshipIds.contains(friendshipId)) || roomNumber(roomId, "topic-") != null) {
+                result.put(roomId, syncRoom(roomId, afterId, pageSize));
+            }
+        });
+        return result;
+    }
+    
+    private ChatMessagePageDto syncRoom(String roomId, long afterId, int pageSize) {
+        // 切断が短ければメモリ上のバッファだけで答えられる
+        ChatMessagePageDto cached = recentMessageCache.getNewer(roomId, afterId, pageSize);
+        if (cached != null) {
+            return cached;
+        }
+        return toPage(fetchNewer(roomId, afterId, pageSize), pageSize, this::convertToDto);
+    }
+    
+    private ChatMessagePageDto syncGroupRoom(Long groupId, Long userId, long afterId, int pageSize) {
+        List<ChatMessage> messages = fetchNewer("group-" + groupId, afterId, pageSize);
+        Set<Long> senderIds = new HashSet<>();
+        for (ChatMessage message : messages) {
+            if (!userId.equals(message.getSender().getId())) {
+                senderIds.add(message.getSender().getId());
+            }
+        }
+        Map<Long, String> anonymousNames = senderIds.isEmpty()
+                ? Map.of()
+                : anonymousNameService.getAnonymousNames(groupId, senderIds);
+        return toPage(messages, pageSize, message -> convertToGroupDto(message, userId, anonymousNames));
+    }
+    
+    /**
+     * "group-12" のようなルームIDの数値部分。形式が違う場合は null
+     */
+    static Long roomNumber(String roomId, String prefix) {
+        if (roomId == null || !roomId.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(roomId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 新しい順に pageSize + 1 件以上取得する（1件多く取ることで次ページの有無を判定）
+     * まだDBに書かれていないメッセージも合流させ、カーソルが書き込み待ちのメッセージでも受け付ける
+     */
+    private List<ChatMessage> fetchPage(String roomId, Long beforeId, int pageSize) {
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<ChatMessageWriteBehind.PendingMessage> pending = writeBehind.pendingFor(roomId);
+        if (beforeId == null) {
+            return withPending(chatMessageRepository.findLatestByRoom(roomId, pageable), pending, message -> true);
+        }
+        LocalDateTime cursorCreatedAt = cursorCreatedAt(roomId, beforeId, pending)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid cursor: " + beforeId));
+        return withPending(chatMessageRepository.findByRoomBefore(roomId, cursorCreatedAt, beforeId, pageable), pending,
+                message -> message.createdAt().isBefore(cursorCreatedAt)
+                        || (message.createdAt().isEqual(cursorCreatedAt) && message.id() < beforeId));
+    }
+    
+    /**
+     * afterId のメッセージより新しいメッセージを新しい順に pageSize + 1 件以上取得する（書き込み待ちのメッセージを含む）
+     * 複数ノードではIDが時刻順に並ばないため、IDの大小ではなく (createdAt, id) で比べる。
+     * afterId が見つからない場合は最新ページを返す
+     */
+    private List<ChatMessage> fetchNewer(String roomId, long afterId, int pageSize) {
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<ChatMessageWriteBehind.PendingMessage> pending = writeBehind.pendingFor(roomId);
+        Optional<LocalDateTime> cursor = afterId > 0 ? cursorCreatedAt(roomId, afterId, pending) : Optional.empty();
+        if (cursor.isEmpty()) {
+            return withPending(chatMessageRepository.findLatestByRoom(roomId, pageable), pending, message -> true);
+        }
+        LocalDateTime cursorCreatedAt = cursor.get();
+        return withPending(chatMessageRepository.findNewerInRoom(roomId, cursorCreatedAt, afterId, pageable), pending,
+                message -> message.createdAt().isAfter(cursorCreatedAt)
+                        || (message.createdAt().isEqual(cursorCreatedAt) && message.id() > afterId));
+    }
+    
+    /**
+     * カーソルとして渡されたメッセージの作成日時（DBになければ書き込み待ちのメッセージから探す）
+     */
+    private Optional<LocalDateTime> cursorCreatedAt(String roomId, Long messageId,
+                                                    List<ChatMessageWriteBehind.PendingMessage> pending) {
+        return chatMessageRepository.findCreatedAtByIdAndRoomId(messageId, roomId)
+                .or(() -> pending.stream()
+                        .filter(message -> message.id().equals(messageId))
+                        .map(ChatMessageWriteBehind.PendingMessage::createdAt)
+                        .findFirst());
+    }
+    
+    /**
+     * 新しい順の取得結果を古い→新しい順のページに変換
+     */
+    private <T> ChatMessagePageDto toPage(List<T> newestFirst, int pageSize,
+                                          Function<T, ChatMessageDto> mapper) {
+        boolean hasMore = newestFirst.size() > pageSize;
+        List<T> pageMessages = hasMore ? newestFirst.subList(0, pageSize) : newestFirst;
+        
+        List<ChatMessageDto> dtos = new ArrayList<>(pageMessages.size());
+        for (int i = pageMessages.size() - 1; i >= 0; i--) {
+            dtos.add(mapper.apply(pageMessages.get(i)));
+        }
+        
+        Long nextCursor = hasMore ? dtos.get(0).getId() : null;
+        return new ChatMessagePageDto(dtos, nextCursor, hasMore);
+    }
+    
+    /**
+     * まだDBに書かれていないメッセージ（条件に合うもの）を新しい順のリストに合流させる
+     * 書き込み待ちのメッセージはすべて含めるため、先頭から pageSize 件がそのまま正しいページになる
+     */
+    private List<ChatMessage> withPending(List<ChatMessage> newestFirst,
+                                          List<ChatMessageWriteBehind.PendingMessage> pending,
+                                          Predicate<ChatMessageWriteBehind.PendingMessage> include) {
+        if (pending.isEmpty()) {
+            return newestFirst;
+        }
+        Set<Long> persistedIds = new HashSet<>();
+        newestFirst.forEach(message -> persistedIds.add(message.getId()));
+        
+        List<ChatMessage> merged = new ArrayList<>(newestFirst);
+        for (ChatMessageWriteBehind.PendingMessage message : pending) {
+            if (include.test(message) && persistedIds.add(message.id())) {
+                merged.add(toEntity(message));
+            }
+        }
+        merged.sort(Comparator.comparing(ChatMessage::getCreatedAt)
+                .thenComparing(ChatMessage::getId)
+                .reversed());
+        return merged;
+    }
+    
+    private static ChatMessage toEntity(ChatMessageWriteBehind.PendingMessage pending) {
+        User sender = new User();
+        sender.setId(pending.senderId());
+        sender.setUsername(pending.senderUsername());
+        sender.setDisplayName(pending.senderDisplayName());
+        ChatMessage message = new ChatMessage(pending.content(), sender, pending.roomId(),
+                ChatMessage.MessageType.valueOf(pending.messageType()));
+        message.setId(pending.id());
+        message.setCreatedAt(pending.createdAt());
+        return message;
+    }
+    
+    private int normalizePageSize(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
     
     private ChatMessageDto convertToDto(ChatMessage message) {
@@ -180,33 +431,22 @@ public class ChatService {
     
     /**
      * グループメッセージを匿名名付きDTOに変換
+     * anonymousNames はページ単位でまとめて解決した送信者ID→匿名名のマップ
      */
-    private ChatMessageDto convertToGroupDto(ChatMessage message, Long viewerId, Long groupId) {
-        System.out.println("🔧 convertToGroupDto called - messageId: " + message.getId() + ", viewerId: " + viewerId + ", groupId: " + groupId);
-        
+    private ChatMessageDto convertToGroupDto(ChatMessage message, Long viewerId, Map<Long, String> anonymousNames) {
         ChatMessageDto dto = new ChatMessageDto();
         dto.setId(message.getId());
         dto.setContent(message.getContent());
         dto.setSenderUsername(message.getSender().getUsername());
         
-        // 匿名名を取得（全員が同じ匿名名を見る2パラメータバージョン）
         // viewerIdが送信者自身の場合は「あなた」を返す
         Long senderId = message.getSender().getId();
-        String anonymousName;
-        if (viewerId.equals(senderId)) {
-            anonymousName = "あなた";
-            System.out.println("  → Self message, using: あなた");
-        } else {
-            anonymousName = anonymousNameService.getAnonymousName(senderId, groupId);
-            System.out.println("  → Other's message, anonymous name: " + anonymousName + " for senderId: " + senderId);
-        }
+        String anonymousName = viewerId.equals(senderId) ? "あなた" : anonymousNames.get(senderId);
         dto.setSenderDisplayName(anonymousName);
         
         dto.setRoomId(message.getRoomId());
         dto.setMessageType(message.getMessageType().toString());
         dto.setTimestamp(message.getCreatedAt().format(formatter));
-        
-        System.out.println("  → DTO created with senderDisplayName: " + dto.getSenderDisplayName());
         return dto;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,596 @@
+package com.chatapp.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.chatapp.dto.LeaderboardDtos.RankingEntry;
+import com.chatapp.dto.LeaderboardDtos.WindowRankingEntry;
+import com.chatapp.model.ChallengeCompletion;
+import com.chatapp.model.User;
+import com.chatapp.model.UserProgress;
+import com.chatapp.repository.ChallengeCompletionRepository;
+import com.chatapp.repository.UserProgressRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * チャレンジのランキングをメモリ上の順序統計木で管理するサービス
+ *
+ * 並び順は花レベル（降順）→ ポイント（降順）→ ユーザーID。同じ花レベル・ポイントのユーザーは同じ順位。
+ * 起動時と rebuild-interval-ms ごとにDBから作り直し、その間はチャレンジ達成のコミット後に1ユーザー分だけ更新する。
+ * ポイントは増えるだけなので、順番が前後して届いた更新や作り直し中の更新は大きい方を残す。
+ *
+ * 期間別（今日・直近7日・直近30日）のランキングは、ユーザーごとの日別バケット（ポイント・達成数）の合計で並べる。
+ * 達成のたびに該当する日のバケットに加算し、日付が変わったときにバケットから期間別の木を作り直す。
+ * 作り直しでは直近31日分の達成記録を日別に集計して読み込む。
+ */
+@Service
+public class LeaderboardService {
+
+    public static final int MAX_RANKING_LIMIT = 100;
+
+    /**
+     * 期間別ランキングの期間（今日を含む暦日数）
+     */
+    public enum Window {
+        DAY(1), WEEK(7), MONTH(30);
+
+        private final int days;
+
+        Window(int days) {
+            this.days = days;
+        }
+
+        public int getDays() {
+            return days;
+        }
+    }
+
+    // 日別バケットの数（最も長い期間 + 日付が変わった直後の前日分）
+    private static final int BUCKET_DAYS = 32;
+
+    private final UserProgressRepository userProgressRepository;
+    private final ChallengeCompletionRepository challengeCompletionRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RankingTree<RankKey> tree = new RankingTree<>();
+    private final Map<Long, Member> members = new HashMap<>();
+    private final Map<Long, Activity> activities = new HashMap<>();
+    private final Map<Window, RankingTree<WindowKey>> windowTrees = new EnumMap<>(Window.class);
+    private final Map<Window, Map<Long, WindowKey>> windowKeys = new EnumMap<>(Window.class);
+    // 期間別の木を計算した日（epoch day）
+    private volatile long windowDay = LocalDate.now().toEpochDay();
+    // 作り直しの読み込み中に更新されたユーザー（読み込み結果に含まれていなくても残す）
+    private final Set<Long> updatedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+    private volatile boolean loaded;
+
+    public LeaderboardService(UserProgressRepository userProgressRepository,
+                              ChallengeCompletionRepository challengeCompletionRepository,
+                              MeterRegistry meterRegistry) {
+        this.userProgressRepository = userProgressRepository;
+        this.challengeCompletionRepository = challengeCompletionRepository;
+        for (Window window : Window.values()) {
+            windowTrees.put(window, new RankingTree<>());
+            windowKeys.put(window, new HashMap<>());
+        }
+        Gauge.builder("challenges.leaderboard.users", this, LeaderboardService::size)
+                .description("Users held in the in-memory challenge leaderboard")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 上位 limit 人（最大 MAX_RANKING_LIMIT 人）
+     */
+    public List<RankingEntry> getTop(int limit) {
+        ensureLoaded();
+        int size = Math.max(1, Math.min(limit, MAX_RANKING_LIMIT));
+        lock.readLock().lock();
+        try {
+            List<RankKey> keys = tree.range(0, size);
+            List<RankingEntry> entries = new ArrayList<>(keys.size());
+            int rank = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                RankKey key = keys.get(i);
+                if (i == 0 || !key.sameScore(keys.get(i - 1))) {
+                    rank = i + 1;
+                }
+                entries.add(members.get(key.userId()).toEntry(rank));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * ユーザーの順位。まだ進捗がない場合は null
+     */
+    public RankingEntry getRank(Long userId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Member member = members.get(userId);
+            if (member == null) {
+                return null;
+            }
+            return member.toEntry(tree.countBefore(member.key().firstWithSameScore()) + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 期間別の上位 limit 人（最大 MAX_RANKING_LIMIT 人）。期間内に達成がないユーザーは含まない
+     */
+    public List<WindowRankingEntry> getTop(Window window, int limit) {
+        ensureLoaded();
+        rollOverIfNeeded();
+        int size = Math.max(1, Math.min(limit, MAX_RANKING_LIMIT));
+        lock.readLock().lock();
+        try {
+            List<WindowKey> keys = windowTrees.get(window).range(0, size);
+            List<WindowRankingEntry> entries = new ArrayList<>(keys.size());
+            int rank = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                WindowKey key = keys.get(i);
+                if (i == 0 || !key.sameScore(keys.get(i - 1))) {
+                    rank = i + 1;
+                }
+                entries.add(toWindowEntry(key, rank));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 期間別のユーザーの順位。期間内に達成がない場合は null
+     */
+    public WindowRankingEntry getRank(Window window, Long userId) {
+        ensureLoaded();
+        rollOverIfNeeded();
+        lock.readLock().lock();
+        try {
+            WindowKey key = windowKeys.get(window).get(userId);
+            if (key == null) {
+                return null;
+            }
+            return toWindowEntry(key, windowTrees.get(window).countBefore(key.firstWithSameScore()) + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 期間内のチャレンジ達成数
+     */
+    public int countCompletions(Window window, Long userId) {
+        ensureLoaded();
+        rollOverIfNeeded();
+        lock.readLock().lock();
+        try {
+            WindowKey key = windowKeys.get(window).get(userId);
+            return key != null ? key.completions() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * チャレンジ達成による進捗の更新と期間別の集計をランキングに反映する（トランザクション中であればコミット後に反映）
+     */
+    public void onChallengeCompleted(User user, UserProgress progress, ChallengeCompletion completion) {
+        Member member = new Member(user.getId(), user.getUsername(), user.getDisplayName(),
+                progress.getTotalPoints(), progress.getFlowerLevel());
+        LocalDateTime completedAt = completion.getCompletedAt() != null ? completion.getCompletedAt() : LocalDateTime.now();
+        long day = completedAt.toLocalDate().toEpochDay();
+        int points = completion.getPointsEarned();
+        afterCommit(() -> {
+            apply(member);
+            addActivity(member.userId(), day, points);
+        });
+    }
+
+    /**
+     * ユーザー名・表示名の変更を反映する
+     */
+    public void onUserChanged(User user) {
+        lock.writeLock().lock();
+        try {
+            Member member = members.get(user.getId());
+            if (member != null) {
+                members.put(user.getId(), member.withNames(user.getUsername(), user.getDisplayName()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onUserRemoved(Long userId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Member removed = members.remove(userId);
+                if (removed != null) {
+                    tree.remove(removed.key());
+                }
+                activities.remove(userId);
+                for (Window window : Window.values()) {
+                    WindowKey key = windowKeys.get(window).remove(userId);
+                    if (key != null) {
+                        windowTrees.get(window).remove(key);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * DBから作り直す。読み込み中に反映された更新は、ポイントが大きい方を残す
+     * 読み込み結果になく、読み込み中に更新もされていないユーザー（他ノードで削除されたなど）は外す
+     * 日別バケットも同様に、読み込み中に更新されたユーザーは日ごとに大きい方を残す
+     */
+    @Scheduled(fixedDelayString = "${app.challenges.leaderboard.rebuild-interval-ms:300000}",
+            initialDelayString = "${app.challenges.leaderboard.rebuild-interval-ms:300000}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+            updatedDuringRebuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Member> snapshot = new HashMap<>();
+        Map<Long, Activity> activitySnapshot = new HashMap<>();
+        try {
+            for (UserProgressRepository.RankingProjection row : userProgressRepository.findAllForRanking()) {
+                snapshot.put(row.getUserId(), new Member(row.getUserId(), row.getUsername(), row.getDisplayName(),
+                        row.getTotalPoints(), row.getFlowerLevel()));
+            }
+            LocalDateTime since = LocalDate.now().minusDays(BUCKET_DAYS - 1).atStartOfDay();
+            for (ChallengeCompletionRepository.DailyActivityProjection row
+                    : challengeCompletionRepository.sumDailyActivitySince(since)) {
+                activitySnapshot.computeIfAbsent(row.getUserId(), id -> new Activity())
+                        .max(row.getCompletedOn().toEpochDay(), row.getPoints().intValue(), row.getCompletions().intValue());
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                updatedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Member current : members.values()) {
+                Member loadedMember = snapshot.get(current.userId());
+                if (loadedMember != null ? current.totalPoints() > loadedMember.totalPoints()
+                        : updatedDuringRebuild.contains(current.userId())) {
+                    snapshot.put(current.userId(), current);
+                }
+            }
+            for (Long userId : updatedDuringRebuild) {
+                Activity current = activities.get(userId);
+                if (current != null) {
+                    activitySnapshot.merge(userId, current, Activity::mergeMax);
+                }
+            }
+            rebuilding = false;
+            updatedDuringRebuild.clear();
+            tree.clear();
+            members.clear();
+            members.putAll(snapshot);
+            for (Member member : snapshot.values()) {
+                tree.insert(member.key());
+            }
+            activities.clear();
+            activities.putAll(activitySnapshot);
+            rebuildWindows(LocalDate.now().toEpochDay());
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return members.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * 日付が変わっていたら、期間から外れた日を除いて期間別の木を作り直す
+     */
+    private void rollOverIfNeeded() {
+        long today = LocalDate.now().toEpochDay();
+        if (windowDay == today) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (windowDay != today) {
+                rebuildWindows(today);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildWindows(long today) {
+        activities.values().removeIf(activity -> activity.isEmptySince(today - BUCKET_DAYS + 1));
+        for (Window window : Window.values()) {
+            RankingTree<WindowKey> windowTree = windowTrees.get(window);
+            Map<Long, WindowKey> keys = windowKeys.get(window);
+            windowTree.clear();
+            keys.clear();
+            for (Map.Entry<Long, Activity> entry : activities.entrySet()) {
+                WindowKey key = entry.getValue().keyFor(entry.getKey(), today, window);
+                if (key != null) {
+                    windowTree.insert(key);
+                    keys.put(entry.getKey(), key);
+                }
+            }
+        }
+        windowDay = today;
+    }
+
+    private void addActivity(Long userId, long day, int points) {
+        lock.writeLock().lock();
+        try {
+            long today = LocalDate.now().toEpochDay();
+            if (windowDay != today) {
+                rebuildWindows(today);
+            }
+            if (day <= today - BUCKET_DAYS) {
+                return;
+            }
+            Activity activity = activities.computeIfAbsent(userId, id -> new Activity());
+            activity.add(day, points, 1);
+            for (Window window : Window.values()) {
+                Map<Long, WindowKey> keys = windowKeys.get(window);
+                RankingTree<WindowKey> windowTree = windowTrees.get(window);
+                WindowKey current = keys.remove(userId);
+                if (current != null) {
+                    windowTree.remove(current);
+                }
+                WindowKey key = activity.keyFor(userId, today, window);
+                if (key != null) {
+                    windowTree.insert(key);
+                    keys.put(userId, key);
+                }
+            }
+            if (rebuilding) {
+                updatedDuringRebuild.add(userId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private WindowRankingEntry toWindowEntry(WindowKey key, int rank) {
+        Member member = members.get(key.userId());
+        return new WindowRankingEntry(rank, key.userId(),
+                member != null ? member.username() : null, member != null ? member.displayName() : null,
+                key.points(), key.completions());
+    }
+
+    private void apply(Member member) {
+        lock.writeLock().lock();
+        try {
+            Member current = members.get(member.userId());
+            if (current != null) {
+                if (current.totalPoints() > member.totalPoints()) {
+                    return;
+                }
+                tree.remove(current.key());
+            }
+            members.put(member.userId(), member);
+            tree.insert(member.key());
+            if (rebuilding) {
+                updatedDuringRebuild.add(member.userId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 木のキー。花レベル（降順）→ ポイント（降順）→ ユーザーID（昇順）の順に並ぶ
+     */
+    record RankKey(int flowerLevel, int totalPoints, long userId) implements Comparable<RankKey> {
+
+        @Override
+        public int compareTo(RankKey other) {
+            int cmp = Integer.compare(other.flowerLevel, flowerLevel);
+            if (cmp == 0) {
+                cmp = Integer.compare(other.totalPoints, totalPoints);
+            }
+            return cmp != 0 ? cmp : Long.compare(userId, other.userId);
+        }
+
+        boolean sameScore(RankKey other) {
+            return flowerLevel == other.flowerLevel && totalPoints == other.totalPoints;
+        }
+
+        /**
+         * 同じ花レベル・ポイントの中で最も前に来るキー（これより前の件数 + 1 が順位）
+         */
+        RankKey firstWithSameScore() {
+            return new RankKey(flowerLevel, totalPoints, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * 期間別の木のキー。ポイント（降順）→ 達成数（降順）→ ユーザーID（昇順）の順に並ぶ
+     */
+    record WindowKey(int points, int completions, long userId) implements Comparable<WindowKey> {
+
+        @Override
+        public int compareTo(WindowKey other) {
+            int cmp = Integer.compare(other.points, points);
+            if (cmp == 0) {
+                cmp = Integer.compare(other.completions, completions);
+            }
+            return cmp != 0 ? cmp : Long.compare(userId, other.userId);
+        }
+
+        boolean sameScore(WindowKey other) {
+            return points == other.points && completions == other.completions;
+        }
+
+        WindowKey firstWithSameScore() {
+            return new WindowKey(points, completions, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * ユーザーごとの日別バケット。epoch day を BUCKET_DAYS で割った余りの位置に入れ、古い日は上書きする
+     */
+    private static final class Activity {
+        private final long[] days = new long[BUCKET_DAYS];
+        private final int[] points = new int[BUCKET_DAYS];
+        private final int[] completions = new int[BUCKET_DAYS];
+
+        Activity() {
+            Arrays.fill(days, Long.MIN_VALUE);
+        }
+
+        void add(long day, int addedPoints, int addedCompletions) {
+            int slot = slot(day);
+            if (slot >= 0) {
+                points[slot] += addedPoints;
+                completions[slot] += addedCompletions;
+            }
+        }
+
+        void max(long day, int dayPoints, int dayCompletions) {
+            int slot = slot(day);
+            if (slot >= 0) {
+                points[slot] = Math.max(points[slot], dayPoints);
+                completions[slot] = Math.max(completions[slot], dayCompletions);
+            }
+        }
+
+        Activity mergeMax(Activity other) {
+            for (int i = 0; i < BUCKET_DAYS; i++) {
+                if (other.days[i] != Long.MIN_VALUE) {
+                    max(other.days[i], other.points[i], other.completions[i]);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * today を含む直近 window.days 日の合計。達成がなければ null
+         */
+        WindowKey keyFor(long userId, long today, Window window) {
+            int sumPoints = 0;
+            int sumCompletions = 0;
+            for (int i = 0; i < BUCKET_DAYS; i++) {
+                long age = today - days[i];
+                if (days[i] != Long.MIN_VALUE && age >= 0 && age < window.getDays()) {
+                    sumPoints += points[i];
+                    sumCompletions += completions[i];
+                }
+            }
+            return sumCompletions > 0 ? new WindowKey(sumPoints, sumCompletions, userId) : null;
+        }
+
+        boolean isEmptySince(long firstDay) {
+            for (long day : days) {
+                if (day != Long.MIN_VALUE && day >= firstDay) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int slot(long day) {
+            int slot = (int) Math.floorMod(day, (long) BUCKET_DAYS);
+            if (days[slot] != day) {
+                if (days[slot] > day) {
+                    // より新しい日が入っている位置には戻さない
+                    return -1;
+                }
+                days[slot] = day;
+                points[slot] = 0;
+                completions[slot] = 0;
+            }
+            return slot;
+        }
+    }
+
+    private record Member(Long userId, String username, String displayName, int totalPoints, int flowerLevel) {
+
+        RankKey key() {
+            return new RankKey(flowerLevel, totalPoints, userId);
+        }
+
+        Member withNames(String newUsername, String newDisplayName) {
+            return new Member(userId, newUsername, newDisplayName, totalPoints, flowerLevel);
+        }
+
+        RankingEntry toEntry(int rank) {
+            return new RankingEntry(rank, userId, username, displayName, totalPoints, flowerLevel,
+                    UserProgress.flowerEmoji(flowerLevel));
+        }
+    }
+}
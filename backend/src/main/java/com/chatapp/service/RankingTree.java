@@ -0,0 +1,145 @@
+package com.chatapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 部分木のサイズを持つトリープ（順序統計木）
+ *
+ * 追加・削除・「自分より前にいくつあるか」は O(log n)、offset から limit 件の取得は O(log n + limit)。
+ * スレッドセーフではないため、呼び出し側で排他すること。
+ */
+final class RankingTree<K extends Comparable<? super K>> {
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node<K> root;
+
+    int size() {
+        return size(root);
+    }
+
+    void insert(K key) {
+        Node<K>[] parts = split(root, key, false);
+        root = merge(merge(parts[0], new Node<>(key, random.nextInt())), parts[1]);
+    }
+
+    boolean remove(K key) {
+        Node<K>[] lower = split(root, key, false);
+        Node<K>[] upper = split(lower[1], key, true);
+        boolean removed = upper[0] != null;
+        if (removed) {
+            // 同じキーは1つしか入れない
+            upper[0] = merge(upper[0].left, upper[0].right);
+        }
+        root = merge(lower[0], merge(upper[0], upper[1]));
+        return removed;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    /**
+     * key より前（小さい）キーの数
+     */
+    int countBefore(K key) {
+        int count = 0;
+        Node<K> node = root;
+        while (node != null) {
+            if (key.compareTo(node.key) <= 0) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 小さい順に offset 番目から最大 limit 件
+     */
+    List<K> range(int offset, int limit) {
+        List<K> result = new ArrayList<>(Math.max(0, Math.min(limit, size() - offset)));
+        collect(root, offset, offset + limit, 0, result);
+        return result;
+    }
+
+    private static <K> void collect(Node<K> node, int from, int to, int base, List<K> out) {
+        if (node == null || from >= to) {
+            return;
+        }
+        int index = base + size(node.left);
+        if (from < index) {
+            collect(node.left, from, to, base, out);
+        }
+        if (index >= from && index < to) {
+            out.add(node.key);
+        }
+        if (index + 1 < to) {
+            collect(node.right, from, to, index + 1, out);
+        }
+    }
+
+    /**
+     * inclusive が false なら [key 未満, key 以上]、true なら [key 以下, key より大きい] に分ける
+     */
+    @SuppressWarnings("unchecked")
+    private Node<K>[] split(Node<K> node, K key, boolean inclusive) {
+        if (node == null) {
+            return new Node[] {null, null};
+        }
+        int cmp = node.key.compareTo(key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node<K>[] parts = split(node.right, key, inclusive);
+            node.right = parts[0];
+            node.update();
+            parts[0] = node;
+            return parts;
+        }
+        Node<K>[] parts = split(node.left, key, inclusive);
+        node.left = parts[1];
+        node.update();
+        parts[1] = node;
+        return parts;
+    }
+
+    private static <K> Node<K> merge(Node<K> left, Node<K> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private final int priority;
+        private int size = 1;
+        private Node<K> left;
+        private Node<K> right;
+
+        Node(K key, int priority) {
+            this.key = key;
+            this.priority = priority;
+        }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
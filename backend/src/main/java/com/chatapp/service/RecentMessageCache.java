@@ -0,0 +1,357 @@
+package com.chatapp.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Component;
+
+import com.chatapp.config.ChatCacheProperties;
+import com.chatapp.config.WebSocketBrokerProperties;
+import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.dto.ChatMessagePageDto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ルームごとの最新メッセージを保持するリングバッファ
+ * 履歴の最新ページをMySQLに問い合わせずに返すために使う。
+ * グループルームは閲覧者ごとに匿名名が変わるため対象外。
+ * バッファにはこのノードで保存したメッセージしか追加されないため、ブローカーが simple モードの
+ * （単一ノードの）場合だけ使う。relay / cluster モードでは常にDBから返す。
+ */
+@Component
+public class RecentMessageCache {
+
+    private static final long DTO_OVERHEAD_BYTES = 96;
+
+    private final ChatCacheProperties properties;
+    private final boolean singleNode;
+
+    // アクセス順のLinkedHashMap（先頭が最も長く使われていないルーム）。this をロックとして使う
+    private final LinkedHashMap<String, RoomBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public RecentMessageCache(ChatCacheProperties properties, WebSocketBrokerProperties brokerProperties,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.singleNode = brokerProperties.getMode() == WebSocketBrokerProperties.Mode.SIMPLE;
+        this.hits = Counter.builder("chat.history.cache.requests").tag("result", "hit")
+                .description("History reads served from the recent message cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("chat.history.cache.requests").tag("result", "miss")
+                .description("History reads that fell through to the database")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("chat.history.cache.evictions")
+                .description("Room buffers evicted by LRU or memory budget")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.cache.rooms", this, RecentMessageCache::roomCount)
+                .description("Rooms currently buffered")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.cache.bytes", totalBytes, AtomicLong::get)
+                .description("Estimated heap used by buffered messages")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean supports(String roomId) {
+        return properties.isEnabled() && singleNode && roomId != null && !roomId.startsWith("group-");
+    }
+
+    /**
+     * バッファから履歴ページを返す。バッファだけで答えられない場合は null
+     */
+    public ChatMessagePageDto getPage(String roomId, Long beforeId, int limit) {
+        if (!supports(roomId)) {
+            return null;
+        }
+        RoomBuffer buffer;
+        synchronized (this) {
+            buffer = buffers.get(roomId);
+        }
+        ChatMessagePageDto page = buffer != null ? buffer.page(beforeId, limit) : null;
+        if (page != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return page;
+    }
+
+    /**
+     * afterId より新しいメッセージをバッファから返す（新しい方から最大 limit 件）
+     * バッファが afterId まで遡れない場合は null
+     */
+    public ChatMessagePageDto getNewer(String roomId, long afterId, int limit) {
+        if (!supports(roomId)) {
+            return null;
+        }
+        RoomBuffer buffer;
+        synchronized (this) {
+            buffer = buffers.get(roomId);
+        }
+        ChatMessagePageDto page = buffer != null ? buffer.newer(afterId, limit) : null;
+        if (page != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return page;
+    }
+
+    /**
+     * DBから最新メッセージを読み込んでバッファを作成し、最新ページを返す
+     * loader には取得件数が渡され、新しい順のDTOリストを返す（件数+1件で切り捨て判定）
+     */
+    public ChatMessagePageDto load(String roomId, int limit, IntFunction<List<ChatMessageDto>> loader) {
+        int capacity = Math.max(1, properties.getMessagesPerRoom());
+        RoomBuffer buffer = new RoomBuffer(capacity);
+        boolean owner;
+        synchronized (this) {
+            RoomBuffer existing = buffers.putIfAbsent(roomId, buffer);
+            owner = existing == null;
+        }
+
+        List<ChatMessageDto> newestFirst;
+        try {
+            newestFirst = loader.apply(Math.max(capacity, limit));
+        } catch (RuntimeException e) {
+            if (owner) {
+                remove(roomId, buffer);
+            }
+            throw e;
+        }
+
+        if (owner) {
+            buffer.fill(newestFirst);
+            evictIfNecessary();
+        }
+
+        // ページはDBの結果から組み立てる（バッファの状態に依存しない）
+        boolean hasMore = newestFirst.size() > limit;
+        List<ChatMessageDto> pageMessages = new ArrayList<>(Math.min(limit, newestFirst.size()));
+        for (int i = Math.min(limit, newestFirst.size()) - 1; i >= 0; i--) {
+            pageMessages.add(newestFirst.get(i));
+        }
+        Long nextCursor = hasMore ? pageMessages.get(0).getId() : null;
+        return new ChatMessagePageDto(pageMessages, nextCursor, hasMore);
+    }
+
+    /**
+     * 保存済みメッセージを既存のバッファに追加する（バッファがないルームは何もしない）
+     */
+    public void append(ChatMessageDto message) {
+        if (!supports(message.getRoomId())) {
+            return;
+        }
+        RoomBuffer buffer;
+        synchronized (this) {
+            buffer = buffers.get(message.getRoomId());
+        }
+        if (buffer != null) {
+            buffer.append(copyOf(message));
+            evictIfNecessary();
+        }
+    }
+
+    private void remove(String roomId, RoomBuffer buffer) {
+        synchronized (this) {
+            buffers.remove(roomId, buffer);
+        }
+        buffer.discard();
+    }
+
+    private void evictIfNecessary() {
+        List<RoomBuffer> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, RoomBuffer>> it = buffers.entrySet().iterator();
+            while (it.hasNext()
+                    && (buffers.size() > properties.getMaxRooms() || totalBytes.get() > properties.getMaxBytes())) {
+                evicted.add(it.next().getValue());
+                it.remove();
+            }
+        }
+        for (RoomBuffer buffer : evicted) {
+            buffer.discard();
+            evictions.increment();
+        }
+    }
+
+    private synchronized int roomCount() {
+        return buffers.size();
+    }
+
+    private static long estimateBytes(ChatMessageDto dto) {
+        return DTO_OVERHEAD_BYTES
+                + 2L * (length(dto.getContent()) + length(dto.getSenderUsername())
+                        + length(dto.getSenderDisplayName()) + length(dto.getRoomId())
+                        + length(dto.getMessageType()) + length(dto.getTimestamp()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static ChatMessageDto copyOf(ChatMessageDto source) {
+        ChatMessageDto copy = new ChatMessageDto();
+        copy.setId(source.getId());
+        copy.setContent(source.getContent());
+        copy.setSenderUsername(source.getSenderUsername());
+        copy.setSenderDisplayName(source.getSenderDisplayName());
+        copy.setRoomId(source.getRoomId());
+        copy.setMessageType(source.getMessageType());
+        copy.setTimestamp(source.getTimestamp());
+        return copy;
+    }
+
+    /**
+     * 1ルーム分のバッファ（古い→新しい順）
+     * 読み込み中に保存されたメッセージは pending に溜め、読み込み完了時にマージする
+     */
+    private final class RoomBuffer {
+        private final int capacity;
+        private final ArrayDeque<ChatMessageDto> messages;
+        private List<ChatMessageDto> pending = new ArrayList<>();
+        // バッファより古いメッセージがDBに存在するか
+        private boolean truncated;
+        private boolean discarded;
+        private long bytes;
+
+        RoomBuffer(int capacity) {
+            this.capacity = capacity;
+            this.messages = new ArrayDeque<>(capacity);
+        }
+
+        synchronized void fill(List<ChatMessageDto> newestFirst) {
+            if (discarded) {
+                return;
+            }
+            truncated = newestFirst.size() > capacity;
+            long lastId = Long.MIN_VALUE;
+            for (int i = Math.min(capacity, newestFirst.size()) - 1; i >= 0; i--) {
+                ChatMessageDto dto = newestFirst.get(i);
+                add(dto);
+                lastId = Math.max(lastId, dto.getId());
+            }
+            for (ChatMessageDto dto : pending) {
+                if (dto.getId() > lastId) {
+                    add(dto);
+                }
+            }
+            pending = null;
+        }
+
+        synchronized void append(ChatMessageDto dto) {
+            if (discarded) {
+                return;
+            }
+            if (pending != null) {
+                pending.add(dto);
+                return;
+            }
+            add(dto);
+        }
+
+        synchronized ChatMessagePageDto page(Long beforeId, int limit) {
+            if (discarded || pending != null) {
+                return null;
+            }
+
+            // before カーソルより古い部分の末尾を探す
+            int end = messages.size();
+            if (beforeId != null) {
+                end = -1;
+                int index = 0;
+                for (ChatMessageDto dto : messages) {
+                    if (dto.getId().equals(beforeId)) {
+                        end = index;
+                        break;
+                    }
+                    index++;
+                }
+                if (end < 0) {
+                    return null;
+                }
+            }
+
+            int start = Math.max(0, end - limit);
+            boolean olderInBuffer = start > 0;
+            if (!olderInBuffer && truncated && end - start < limit) {
+                // バッファだけではページを埋められない
+                return null;
+            }
+
+            List<ChatMessageDto> pageMessages = new ArrayList<>(end - start);
+            int index = 0;
+            for (ChatMessageDto dto : messages) {
+                if (index >= end) {
+                    break;
+                }
+                if (index >= start) {
+                    pageMessages.add(dto);
+                }
+                index++;
+            }
+            boolean hasMore = olderInBuffer || truncated;
+            Long nextCursor = hasMore && !pageMessages.isEmpty() ? pageMessages.get(0).getId() : null;
+            return new ChatMessagePageDto(pageMessages, nextCursor, hasMore && nextCursor != null);
+        }
+
+        synchronized ChatMessagePageDto newer(long afterId, int limit) {
+            if (discarded || pending != null) {
+                return null;
+            }
+            ChatMessageDto oldest = messages.peekFirst();
+            if (truncated && (oldest == null || oldest.getId() > afterId)) {
+                // afterId との間にバッファにないメッセージがあるかもしれない
+                return null;
+            }
+
+            List<ChatMessageDto> newer = new ArrayList<>();
+            for (ChatMessageDto dto : messages) {
+                if (dto.getId() > afterId) {
+                    newer.add(dto);
+                }
+            }
+            boolean hasMore = newer.size() > limit;
+            List<ChatMessageDto> pageMessages = hasMore
+                    ? new ArrayList<>(newer.subList(newer.size() - limit, newer.size()))
+                    : newer;
+            Long nextCursor = hasMore ? pageMessages.get(0).getId() : null;
+            return new ChatMessagePageDto(pageMessages, nextCursor, hasMore);
+        }
+
+        synchronized void discard() {
+            discarded = true;
+            totalBytes.addAndGet(-bytes);
+            bytes = 0;
+            messages.clear();
+            pending = null;
+        }
+
+        private void add(ChatMessageDto dto) {
+            if (messages.size() >= capacity) {
+                ChatMessageDto oldest = messages.pollFirst();
+                long size = estimateBytes(oldest);
+                bytes -= size;
+                totalBytes.addAndGet(-size);
+                truncated = true;
+            }
+            messages.addLast(dto);
+            long size = estimateBytes(dto);
+            bytes += size;
+            totalBytes.addAndGet(size);
+        }
+    }
+}
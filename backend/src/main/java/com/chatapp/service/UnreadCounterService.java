@@ -0,0 +1,544 @@
+package com.chatapp.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.chatapp.config.UnreadCounterProperties;
+import com.chatapp.config.WebSocketBrokerProperties;
+import com.chatapp.dto.UnreadDtos.RoomUnread;
+import com.chatapp.model.RoomReadCursor;
+import com.chatapp.repository.ChatMessageRepository;
+import com.chatapp.repository.FriendRepository;
+import com.chatapp.repository.GroupMemberRepository;
+import com.chatapp.repository.RoomReadCursorRepository;
+import com.chatapp.repository.UserRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * チャットルームの未読数と既読位置
+ *
+ * 未読数はユーザーごとにメモリ上で保持し、メッセージの保存時に増やす（DBアクセスなし）。
+ * 初回アクセス時だけ、既読位置より新しいメッセージを (room_id, created_at, id) インデックスで数えて初期化する。
+ * 既読位置は変更があったものだけを persist-interval ごとにまとめて保存し、
+ * しばらくアクセスのないユーザーの分はメモリから外す。
+ *
+ * onMessageSaved にはこのノードで保存したメッセージしか届かないため、メモリ上の未読数は
+ * ブローカーが simple モードの（単一ノードの）場合だけ使う。relay / cluster モードでは
+ * 毎回DBの既読位置から数え、既読位置もその場で保存する。ノードごとにIDをまとめて確保するため
+ * IDは時刻順に並ばず、DBでの比較は既読位置のメッセージとの (created_at, id) で行う。
+ */
+@Service
+public class UnreadCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounterService.class);
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private RoomReadCursorRepository cursorRepository;
+
+    @Autowired
+    private GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    private FriendRepository friendRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private UnreadCounterProperties properties;
+
+    @Autowired
+    private WebSocketBrokerProperties brokerProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, UserCounters> users = new ConcurrentHashMap<>();
+    // roomId -> 未読数をメモリに持っているユーザー
+    private final Map<String, Set<Long>> watchers = new ConcurrentHashMap<>();
+    // roomId -> このノードで保存した最新のメッセージID
+    private final Map<String, Long> latestIds = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initTransactionTemplate() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 保存されたメッセージを、そのルームの未読数を持っている他のユーザーに反映する
+     */
+    public void onMessageSaved(String roomId, Long messageId, Long senderId) {
+        if (!singleNode()) {
+            return;
+        }
+        latestIds.merge(roomId, messageId, Math::max);
+        Set<Long> userIds = watchers.get(roomId);
+        if (userIds == null) {
+            return;
+        }
+        for (Long userId : userIds) {
+            if (userId.equals(senderId)) {
+                continue;
+            }
+            UserCounters counters = users.get(userId);
+            RoomCounter counter = counters != null ? counters.rooms.get(roomId) : null;
+            if (counter != null) {
+                counter.messageArrived(messageId);
+            }
+        }
+    }
+
+    /**
+     * 参加しているグループ・フレンドのルームと、既読位置のあるルームの未読数をまとめて返す
+     */
+    public List<RoomUnread> getUnreadCounts(Long userId) {
+        Set<String> roomIds = new LinkedHashSet<>();
+        groupMemberRepository.findGroupIdsByUserId(userId).forEach(id -> roomIds.add("group-" + id));
+        friendRepository.findAcceptedFriendshipIds(userId).forEach(id -> roomIds.add("friend-" + id));
+        if (!singleNode()) {
+            return countFromDatabase(userId, roomIds);
+        }
+
+        UserCounters counters = acquire(userId);
+        load(userId, counters, roomIds);
+        roomIds.addAll(counters.rooms.keySet());
+
+        List<RoomUnread> result = new ArrayList<>();
+        for (String roomId : roomIds) {
+            RoomCounter counter = counters.rooms.get(roomId);
+            synchronized (counter) {
+                result.add(new RoomUnread(roomId, counter.unread, counter.lastReadId > 0 ? counter.lastReadId : null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 既読位置を進める（戻す方向の更新は無視する）。保存は次の定期書き込みで行う
+     * 参加していないグループ・フレンドのルームは IllegalStateException（トピックは誰でも可）
+     * そのルームにない（DBにも書き込み待ちにもない）メッセージIDは IllegalArgumentException
+     */
+    public RoomUnread markRead(Long userId, String roomId, Long messageId) {
+        if (roomId == null || roomId.isBlank() || messageId == null || messageId <= 0) {
+            throw new IllegalArgumentException("roomId and messageId are required");
+        }
+        checkAccess(userId, roomId);
+        List<ChatMessageWriteBehind.PendingMessage> pending = writeBehind.pendingFor(roomId);
+        LocalDateTime createdAt = createdAtOf(roomId, messageId, pending)
+                .orElseThrow(() -> new IllegalArgumentException("Message not found in room: " + messageId));
+        if (!singleNode()) {
+            return markReadInDatabase(userId, roomId, messageId, createdAt, pending);
+        }
+        UserCounters counters = acquire(userId);
+        load(userId, counters, Set.of(roomId));
+        RoomCounter counter = counters.rooms.get(roomId);
+
+        Long latest = latestIds.get(roomId);
+        // 最新のメッセージまで読んだなら数え直す必要はない
+        Integer remaining = latest != null && messageId >= latest ? Integer.valueOf(0) : null;
+        if (remaining == null) {
+            remaining = countUnread(userId, roomId, messageId);
+        }
+        synchronized (counter) {
+            if (messageId > counter.lastReadId) {
+                counter.lastReadId = messageId;
+                counter.unread = remaining;
+                counter.dirty = true;
+            }
+            return new RoomUnread(roomId, counter.unread, counter.lastReadId);
+        }
+    }
+
+    /**
+     * 変更のあった既読位置をまとめて保存し、アイドル状態のユーザーをメモリから外す
+     */
+    @Scheduled(fixedDelayString = "${app.chat.unread.persist-interval-ms:5000}")
+    public void persistDirtyCursors() {
+        long idleDeadline = System.currentTimeMillis() - properties.getIdleTimeoutMs();
+        users.forEach((userId, counters) -> {
+            Map<String, Long> dirty = counters.takeDirty();
+            if (!dirty.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> saveCursors(userId, dirty));
+                } catch (RuntimeException e) {
+                    counters.restoreDirty(dirty);
+                    logger.error("Failed to persist read cursors for user {}", userId, e);
+                    return;
+                }
+            }
+            if (counters.evictIfIdle(idleDeadline)) {
+                users.remove(userId, counters);
+                counters.rooms.keySet().forEach(roomId -> {
+                    Set<Long> userIds = watchers.get(roomId);
+                    if (userIds != null) {
+                        userIds.remove(userId);
+                    }
+                });
+            }
+        });
+    }
+
+    @PreDestroy
+    void persistOnShutdown() {
+        persistDirtyCursors();
+    }
+
+    private void saveCursors(Long userId, Map<String, Long> dirty) {
+        Map<String, RoomReadCursor> existing = new HashMap<>();
+        cursorRepository.findByUserIdAndRoomIdIn(userId, dirty.keySet())
+                .forEach(cursor -> existing.put(cursor.getRoomId(), cursor));
+        List<RoomReadCursor> changed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        dirty.forEach((roomId, lastReadId) -> {
+            RoomReadCursor cursor = existing.get(roomId);
+            if (cursor == null) {
+                cursor = new RoomReadCursor();
+                cursor.setUser(userRepository.getReferenceById(userId));
+                cursor.setRoomId(roomId);
+            } else if (cursor.getLastReadMessageId() >= lastReadId) {
+                return;
+            }
+            cursor.setLastReadMessageId(lastReadId);
+            cursor.setUpdatedAt(now);
+            changed.add(cursor);
+        });
+        cursorRepository.saveAll(changed);
+    }
+
+    /**
+     * ユーザーの未読数を取得し、メモリから外されないように最終アクセス時刻を更新する
+     */
+    private UserCounters acquire(Long userId) {
+        while (true) {
+            UserCounters counters = users.computeIfAbsent(userId, id -> new UserCounters());
+            if (counters.touch()) {
+                return counters;
+            }
+            // 外された直後のものを掴んだ場合は作り直す
+            users.remove(userId, counters);
+        }
+    }
+
+    /**
+     * まだメモリにないルームの未読数を数える
+     * 先に保存時の通知を受け取れるようにしてから数え、数えている間に届いたメッセージは後から足す
+     */
+    private void load(Long userId, UserCounters counters, Collection<String> roomIds) {
+        synchronized (counters) {
+            if (!counters.cursorsLoaded) {
+                for (RoomReadCursor cursor : cursorRepository.findByUserId(userId)) {
+                    counters.rooms.put(cursor.getRoomId(), new RoomCounter(cursor.getLastReadMessageId()));
+                }
+                counters.cursorsLoaded = true;
+            }
+            for (String roomId : roomIds) {
+                counters.rooms.computeIfAbsent(roomId, key -> new RoomCounter(0));
+            }
+
+            List<String> withCursor = new ArrayList<>();
+            List<String> withoutCursor = new ArrayList<>();
+            counters.rooms.forEach((roomId, counter) -> {
+                if (!counter.loaded) {
+                    watchers.computeIfAbsent(roomId, key -> ConcurrentHashMap.newKeySet()).add(userId);
+                    (counter.lastReadId > 0 ? withCursor : withoutCursor).add(roomId);
+                }
+            });
+            if (withCursor.isEmpty() && withoutCursor.isEmpty()) {
+                return;
+            }
+
+            Map<String, long[]> counts = new HashMap<>();
+            if (!withCursor.isEmpty()) {
+                chatMessageRepository.countUnreadAfterCursors(userId, withCursor).forEach(row -> collect(counts, row));
+            }
+            if (!withoutCursor.isEmpty()) {
+                chatMessageRepository.countFromOthers(userId, withoutCursor).forEach(row -> collect(counts, row));
+            }
+            for (String roomId : withCursor) {
+                finishLoad(userId, roomId, counters.rooms.get(roomId), counts.get(roomId));
+            }
+            for (String roomId : withoutCursor) {
+                finishLoad(userId, roomId, counters.rooms.get(roomId), counts.get(roomId));
+            }
+        }
+    }
+
+    private void finishLoad(Long userId, String roomId, RoomCounter counter, long[] counted) {
+        long count = counted != null ? counted[0] : 0;
+        long maxId = counted != null ? counted[1] : 0;
+        // まだDBに書かれていないメッセージも未読に含める
+        Set<Long> pendingIds = new HashSet<>();
+        for (ChatMessageWriteBehind.PendingMessage pending : writeBehind.pendingFor(roomId)) {
+            if (!userId.equals(pending.senderId()) && pending.id() > Math.max(maxId, counter.lastReadId)) {
+                pendingIds.add(pending.id());
+            }
+        }
+        counter.finishLoad((int) count + pendingIds.size(), maxId, pendingIds);
+    }
+
+    /**
+     * syncRooms と同じ基準でルームへのアクセスを確認する
+     */
+    private void checkAccess(Long userId, String roomId) {
+        Long groupId = ChatService.roomNumber(roomId, "group-");
+        if (groupId != null) {
+            if (!groupMemberRepository.findGroupIdsByUserId(userId).contains(groupId)) {
+                throw new IllegalStateException("You do not have access to this room");
+            }
+            return;
+        }
+        Long friendshipId = ChatService.roomNumber(roomId, "friend-");
+        if (friendshipId != null) {
+            if (!friendRepository.findAcceptedFriendshipIds(userId).contains(friendshipId)) {
+                throw new IllegalStateException("You do not have access to this room");
+            }
+            return;
+        }
+        if (ChatService.roomNumber(roomId, "topic-") == null) {
+            throw new IllegalArgumentException("Invalid room ID: " + roomId);
+        }
+    }
+
+    private boolean singleNode() {
+        return brokerProperties.getMode() == WebSocketBrokerProperties.Mode.SIMPLE;
+    }
+
+    /**
+     * メモリに持たずに、保存済みの既読位置からルームごとの未読数を数える（relay / cluster モード）
+     */
+    private List<RoomUnread> countFromDatabase(Long userId, Set<String> roomIds) {
+        Map<String, Long> lastReadIds = new HashMap<>();
+        for (RoomReadCursor cursor : cursorRepository.findByUserId(userId)) {
+            lastReadIds.put(cursor.getRoomId(), cursor.getLastReadMessageId());
+        }
+        roomIds.addAll(lastReadIds.keySet());
+
+        List<String> withCursor = new ArrayList<>();
+        List<String> withoutCursor = new ArrayList<>();
+        roomIds.forEach(roomId -> (lastReadIds.containsKey(roomId) ? withCursor : withoutCursor).add(roomId));
+        Map<String, long[]> counts = new HashMap<>();
+        if (!withCursor.isEmpty()) {
+            chatMessageRepository.countUnreadAfterCursors(userId, withCursor).forEach(row -> collect(counts, row));
+        }
+        if (!withoutCursor.isEmpty()) {
+            chatMessageRepository.countFromOthers(userId, withoutCursor).forEach(row -> collect(counts, row));
+        }
+
+        List<RoomUnread> result = new ArrayList<>();
+        for (String roomId : roomIds) {
+            long[] counted = counts.get(roomId);
+            Long lastReadId = lastReadIds.get(roomId);
+            int unread = (counted != null ? (int) counted[0] : 0) + countPendingAfter(userId, roomId, lastReadId);
+            result.add(new RoomUnread(roomId, unread, lastReadId));
+        }
+        return result;
+    }
+
+    /**
+     * 既読位置をその場で保存する（relay / cluster モード）
+     * 複数ノードではIDが時刻順に並ばないため、戻す方向かどうかは (createdAt, id) で判定する
+     */
+    private RoomUnread markReadInDatabase(Long userId, String roomId, Long messageId, LocalDateTime createdAt,
+                                          List<ChatMessageWriteBehind.PendingMessage> pending) {
+        Long lastReadId = transactionTemplate.execute(status -> {
+            RoomReadCursor cursor = cursorRepository.findByUserIdAndRoomIdIn(userId, Set.of(roomId)).stream()
+                    .findFirst()
+                    .orElse(null);
+            if (cursor == null) {
+                cursor = new RoomReadCursor();
+                cursor.setUser(userRepository.getReferenceById(userId));
+                cursor.setRoomId(roomId);
+            } else {
+                Long currentId = cursor.getLastReadMessageId();
+                LocalDateTime current = createdAtOf(roomId, currentId, pending).orElse(null);
+                if (current != null && !isNewer(createdAt, messageId, current, currentId)) {
+                    return currentId;
+                }
+            }
+            cursor.setLastReadMessageId(messageId);
+            cursor.setUpdatedAt(LocalDateTime.now());
+            cursorRepository.save(cursor);
+            return messageId;
+        });
+        return new RoomUnread(roomId, countUnreadInDatabase(userId, roomId, lastReadId, pending), lastReadId);
+    }
+
+    private int countUnreadInDatabase(Long userId, String roomId, Long lastReadId,
+                                      List<ChatMessageWriteBehind.PendingMessage> pending) {
+        long count = createdAtOf(roomId, lastReadId, pending)
+                .map(createdAt -> chatMessageRepository.countFromOthersNewerThan(roomId, createdAt, lastReadId, userId))
+                .orElseGet(() -> chatMessageRepository.countFromOthersAfter(roomId, lastReadId, userId));
+        return (int) count + countPendingAfter(userId, roomId, lastReadId);
+    }
+
+    /**
+     * 既読位置より新しい、まだDBに書かれていない他人のメッセージの件数
+     * 書き込み中のバッチはDBでも数えられている場合があるため、保存済みのものは除く
+     */
+    private int countPendingAfter(Long userId, String roomId, Long lastReadId) {
+        List<ChatMessageWriteBehind.PendingMessage> pending = writeBehind.pendingFor(roomId);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime lastReadAt = lastReadId != null ? createdAtOf(roomId, lastReadId, pending).orElse(null) : null;
+        Set<Long> ids = new HashSet<>();
+        for (ChatMessageWriteBehind.PendingMessage message : pending) {
+            if (userId.equals(message.senderId())) {
+                continue;
+            }
+            boolean unread = lastReadId == null
+                    || (lastReadAt != null
+                            ? isNewer(message.createdAt(), message.id(), lastReadAt, lastReadId)
+                            : message.id() > lastReadId);
+            if (unread) {
+                ids.add(message.id());
+            }
+        }
+        if (!ids.isEmpty()) {
+            chatMessageRepository.findExistingIds(ids).forEach(ids::remove);
+        }
+        return ids.size();
+    }
+
+    /**
+     * メッセージの作成日時。DBになければ書き込み待ちのメッセージから探す
+     */
+    private Optional<LocalDateTime> createdAtOf(String roomId, Long messageId,
+                                                List<ChatMessageWriteBehind.PendingMessage> pending) {
+        return chatMessageRepository.findCreatedAtByIdAndRoomId(messageId, roomId)
+                .or(() -> pending.stream()
+                        .filter(message -> message.id().equals(messageId))
+                        .map(ChatMessageWriteBehind.PendingMessage::createdAt)
+                        .findFirst());
+    }
+
+    private static boolean isNewer(LocalDateTime createdAt, long id, LocalDateTime otherCreatedAt, long otherId) {
+        return createdAt.isAfter(otherCreatedAt) || (createdAt.isEqual(otherCreatedAt) && id > otherId);
+    }
+
+    private int countUnread(Long userId, String roomId, Long afterId) {
+        long count = chatMessageRepository.countFromOthersAfter(roomId, afterId, userId);
+        for (ChatMessageWriteBehind.PendingMessage pending : writeBehind.pendingFor(roomId)) {
+            if (!userId.equals(pending.senderId()) && pending.id() > afterId) {
+                count++;
+            }
+        }
+        return (int) count;
+    }
+
+    private static void collect(Map<String, long[]> counts, Object[] row) {
+        counts.put((String) row[0], new long[] {((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+    }
+
+    /**
+     * 1ユーザー分の未読数。読み込みは this をロックとして行う
+     */
+    private static final class UserCounters {
+        private final Map<String, RoomCounter> rooms = new ConcurrentHashMap<>();
+        private boolean cursorsLoaded;
+        private long lastAccess = System.currentTimeMillis();
+        private boolean evicted;
+
+        synchronized boolean touch() {
+            if (evicted) {
+                return false;
+            }
+            lastAccess = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized boolean evictIfIdle(long deadline) {
+            if (lastAccess >= deadline || rooms.values().stream().anyMatch(counter -> counter.dirty)) {
+                return false;
+            }
+            evicted = true;
+            return true;
+        }
+
+        Map<String, Long> takeDirty() {
+            Map<String, Long> dirty = new HashMap<>();
+            rooms.forEach((roomId, counter) -> {
+                synchronized (counter) {
+                    if (counter.dirty) {
+                        counter.dirty = false;
+                        dirty.put(roomId, counter.lastReadId);
+                    }
+                }
+            });
+            return dirty;
+        }
+
+        void restoreDirty(Map<String, Long> dirty) {
+            dirty.keySet().forEach(roomId -> {
+                RoomCounter counter = rooms.get(roomId);
+                synchronized (counter) {
+                    counter.dirty = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * 1ルーム分の未読数と既読位置
+     */
+    private static final class RoomCounter {
+        private long lastReadId;
+        private int unread;
+        private boolean dirty;
+        private boolean loaded;
+        // 数えている間に届いたメッセージのID
+        private List<Long> arrivedWhileLoading = new ArrayList<>();
+
+        RoomCounter(long lastReadId) {
+            this.lastReadId = lastReadId;
+        }
+
+        synchronized void messageArrived(long messageId) {
+            if (!loaded) {
+                arrivedWhileLoading.add(messageId);
+            } else if (messageId > lastReadId) {
+                unread++;
+            }
+        }
+
+        /**
+         * 数えた件数で初期化する。数えている間に届いたメッセージは、DBと書き込み待ちのどちらでも
+         * 数えられていないものだけを足す
+         */
+        synchronized void finishLoad(int counted, long maxCountedId, Set<Long> countedPendingIds) {
+            long threshold = Math.max(maxCountedId, lastReadId);
+            unread = counted + (int) arrivedWhileLoading.stream()
+                    .filter(id -> id > threshold && !countedPendingIds.contains(id))
+                    .count();
+            arrivedWhileLoading = null;
+            loaded = true;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chatapp.websocket;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+
+import com.chatapp.config.WebSocketBrokerProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * SpringのWebSocket統計をメトリクスとして公開する
+ */
+@Component
+public class BrokerMetrics {
+
+    public BrokerMetrics(WebSocketMessageBrokerStats stats, WebSocketBrokerProperties properties,
+                         MeterRegistry meterRegistry) {
+        Gauge.builder("chat.websocket.sessions", stats, s -> s.getWebSocketSessionStats().getTotalSessions())
+                .description("Open WebSocket/SockJS sessions on this node")
+                .tag("mode", properties.getMode().name().toLowerCase())
+                .register(meterRegistry);
+        if (properties.getMode() == WebSocketBrokerProperties.Mode.RELAY) {
+            Gauge.builder("chat.broker.relay.connections", stats,
+                            s -> s.getStompBrokerRelayStats() != null ? s.getStompBrokerRelayStats().getTotalHandlers() : 0)
+                    .description("Client sessions relayed to the external STOMP broker")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.chatapp.websocket;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * /topic 宛てのブロードキャストの送信口
+ *
+ * ペイロードは配信ごとに1回だけJSONにし、そのバイト列をブローカーに渡す（メッセージコンバーターは通さない）。
+ * シンプルブローカーは同じ配列を購読者全員のメッセージで共有し、リレーモードでは外部ブローカーに1回だけ送る。
+ * クラスタモードでは同じバイト列を他ノードへ中継する。共有されるため、配列は送信後に変更してはならない。
+ */
+@Component
+public class ChatBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectProvider<ClusterFanout> clusterFanout;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary payloadBytes;
+
+    public ChatBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectProvider<ClusterFanout> clusterFanout,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.clusterFanout = clusterFanout;
+        this.objectMapper = objectMapper;
+        this.payloadBytes = DistributionSummary.builder("chat.broadcast.payload")
+                .description("Serialized size of each topic broadcast (encoded once, shared by all subscribers)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void broadcast(String destination, Object payload) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize broadcast for " + destination, e);
+        }
+        payloadBytes.record(json.length);
+
+        messagingTemplate.send(destination, jsonMessage(json));
+        ClusterFanout fanout = clusterFanout.getIfAvailable();
+        if (fanout != null) {
+            fanout.publish(destination, json);
+        }
+    }
+
+    /**
+     * シリアライズ済みJSONをそのままブローカーに渡すためのメッセージ
+     */
+    static Message<byte[]> jsonMessage(byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,39 @@
+package com.chatapp.websocket;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.chatapp.config.WebSocketBrokerProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Beans for app.websocket.broker.mode=cluster.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.websocket.broker", name = "mode", havingValue = "cluster")
+public class ClusterBrokerConfig {
+
+    @Bean
+    public ClusterBus clusterBus(WebSocketBrokerProperties properties,
+                                 ObjectProvider<RedisConnectionFactory> redisConnectionFactory,
+                                 ObjectMapper objectMapper) {
+        WebSocketBrokerProperties.Cluster cluster = properties.getCluster();
+        return switch (cluster.getBus()) {
+            case IN_MEMORY -> new InMemoryClusterBus();
+            case REDIS -> new RedisClusterBus(redisConnectionFactory.getObject(), objectMapper,
+                    cluster.getChannelPrefix());
+        };
+    }
+
+    @Bean
+    public ClusterFanout clusterFanout(ClusterBus clusterBus, SimpMessagingTemplate messagingTemplate,
+                                       MeterRegistry meterRegistry) {
+        return new ClusterFanout(clusterBus, messagingTemplate, meterRegistry);
+    }
+}
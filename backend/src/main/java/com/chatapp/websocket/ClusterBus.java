@@ -0,0 +1,18 @@
+package com.chatapp.websocket;
+
+import java.util.function.Consumer;
+
+/**
+ * クラスタ内のノードをつなぐ共有バス
+ * 宛先ごとに購読し、購読しているノードにだけメッセージが届く
+ */
+public interface ClusterBus {
+
+    void publish(ClusterMessage message);
+
+    Subscription subscribe(String destination, Consumer<ClusterMessage> listener);
+
+    interface Subscription {
+        void cancel();
+    }
+}
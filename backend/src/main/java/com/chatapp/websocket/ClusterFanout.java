@@ -0,0 +1,139 @@
+package com.chatapp.websocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 共有バスを介したノード間のブロードキャスト中継
+ * このノードに購読者がいる宛先だけをバスで購読し、他ノードからのメッセージをローカルのブローカーに流す
+ */
+public class ClusterFanout {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ClusterBus bus;
+    private final SimpMessagingTemplate localBroker;
+
+    // 宛先 -> ローカル購読数とバスの購読。this をロックとして使う
+    private final Map<String, LocalDestination> destinations = new HashMap<>();
+    // セッションID -> (購読ID -> 宛先)
+    private final Map<String, Map<String, String>> sessions = new HashMap<>();
+
+    private final Counter published;
+    private final Counter received;
+
+    public ClusterFanout(ClusterBus bus, SimpMessagingTemplate localBroker, MeterRegistry meterRegistry) {
+        this.bus = bus;
+        this.localBroker = localBroker;
+        this.published = Counter.builder("chat.cluster.published")
+                .description("Broadcasts published to the cluster bus")
+                .register(meterRegistry);
+        this.received = Counter.builder("chat.cluster.received")
+                .description("Broadcasts from other nodes delivered to local subscribers")
+                .register(meterRegistry);
+        Gauge.builder("chat.cluster.destinations", this, ClusterFanout::destinationCount)
+                .description("Destinations this node is subscribed to on the cluster bus")
+                .register(meterRegistry);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void publish(String destination, byte[] payload) {
+        bus.publish(new ClusterMessage(nodeId, destination, payload));
+        published.increment();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        subscribed(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        unsubscribed(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnected(event.getSessionId());
+    }
+
+    synchronized void subscribed(String sessionId, String subscriptionId, String destination) {
+        // /user/queue/... はセッション宛てでノード内で完結するため、バスには参加しない
+        if (sessionId == null || subscriptionId == null || destination == null
+                || !destination.startsWith(PresenceRegistry.TOPIC_PREFIX)) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, key -> new HashMap<>()).put(subscriptionId, destination);
+        if (previous != null) {
+            release(previous);
+        }
+        destinations.computeIfAbsent(destination,
+                key -> new LocalDestination(bus.subscribe(key, this::deliver))).count++;
+    }
+
+    synchronized void unsubscribed(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        String destination = subscriptions.remove(subscriptionId);
+        if (subscriptions.isEmpty()) {
+            sessions.remove(sessionId);
+        }
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    synchronized void disconnected(String sessionId) {
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(String destination) {
+        LocalDestination local = destinations.get(destination);
+        if (local != null && --local.count <= 0) {
+            destinations.remove(destination);
+            local.subscription.cancel();
+        }
+    }
+
+    private void deliver(ClusterMessage message) {
+        if (nodeId.equals(message.origin())) {
+            return;
+        }
+        localBroker.send(message.destination(), ChatBroadcaster.jsonMessage(message.payload()));
+        received.increment();
+    }
+
+    private synchronized int destinationCount() {
+        return destinations.size();
+    }
+
+    private static final class LocalDestination {
+        private final ClusterBus.Subscription subscription;
+        private int count;
+
+        LocalDestination(ClusterBus.Subscription subscription) {
+            this.subscription = subscription;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.chatapp.websocket;
+
+/**
+ * ノード間で中継するブロードキャスト
+ * payload はSTOMPフレームの本文（JSON）そのもので、受信側は再シリアライズせずに配信する
+ */
+public record ClusterMessage(String origin, String destination, byte[] payload) {
+}
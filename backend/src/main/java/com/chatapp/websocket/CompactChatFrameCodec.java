@@ -0,0 +1,316 @@
+package com.chatapp.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.MimeType;
+
+import com.chatapp.dto.ChatMessageDto;
+
+/**
+ * チャットメッセージのコンパクトなバイナリ形式（v1）
+ *
+ * <pre>
+ * u8     バージョン (1)
+ * varint id
+ * varint 送信日時（エポックミリ秒）
+ * ref    roomId
+ * ref    送信者（senderUsername, senderDisplayName の組）
+ * u8     messageType（CHAT=0, JOIN=1, LEAVE=2, それ以外は 0x7F の後に string）
+ * string content
+ *
+ * string: varint (UTF-8バイト長 + 1) の後に本体。0 は null
+ * ref:    varint。0 は値をそのまま続ける（登録しない）、1 は値を続けて次の番号で登録、
+ *         n >= 2 は登録済みの n - 2 番を参照する。番号は ref の種類（ルーム・送信者）ごとに 0 から振る
+ * </pre>
+ *
+ * 登録表はセッションごとに持つため、フレームは送った順に届く必要がある。
+ */
+public final class CompactChatFrameCodec {
+
+    public static final String PROFILE = "chat-compact-v1";
+    // StompSubProtocolHandler は application/octet-stream 互換の場合だけバイナリフレームで送る
+    public static final MimeType MIME_TYPE = new MimeType("application", "octet-stream", Map.of("profile", PROFILE));
+
+    static final int VERSION = 1;
+
+    private static final List<String> MESSAGE_TYPES = List.of("CHAT", "JOIN", "LEAVE");
+    private static final int OTHER_MESSAGE_TYPE = 0x7F;
+    private static final int LITERAL = 0;
+    private static final int DEFINE = 1;
+    private static final int REFERENCE_BASE = 2;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private CompactChatFrameCodec() {
+    }
+
+    /**
+     * 購読時に指定された content-type がこの形式か
+     */
+    public static boolean isCompact(MimeType contentType) {
+        return contentType != null && MIME_TYPE.equalsTypeAndSubtype(contentType)
+                && PROFILE.equals(contentType.getParameter("profile"));
+    }
+
+    /**
+     * 配信1回分のメッセージ。日時の変換と文字列のUTF-8化は購読者ごとではなくここで1回だけ行う
+     */
+    public static final class Prepared {
+        private final long id;
+        private final long epochMillis;
+        private final String roomId;
+        private final Sender sender;
+        private final byte[] room;
+        private final byte[] username;
+        private final byte[] displayName;
+        private final int messageType;
+        private final byte[] otherMessageType;
+        private final byte[] content;
+
+        private Prepared(ChatMessageDto message) {
+            this.id = message.getId() != null ? message.getId() : 0;
+            this.epochMillis = toEpochMillis(message.getTimestamp());
+            this.roomId = message.getRoomId();
+            this.sender = new Sender(message.getSenderUsername(), message.getSenderDisplayName());
+            this.room = utf8(message.getRoomId());
+            this.username = utf8(message.getSenderUsername());
+            this.displayName = utf8(message.getSenderDisplayName());
+            this.messageType = MESSAGE_TYPES.indexOf(message.getMessageType());
+            this.otherMessageType = messageType < 0 ? utf8(message.getMessageType()) : null;
+            this.content = utf8(message.getContent());
+        }
+
+        private int maxSize() {
+            // 固定部分（バージョン・varint 4個・種別）と、文字列5個の長さ（varint）の上限
+            return 1 + 4 * 10 + 1 + 5 * 5
+                    + size(room) + size(username) + size(displayName) + size(otherMessageType) + size(content);
+        }
+    }
+
+    public static Prepared prepare(ChatMessageDto message) {
+        return new Prepared(message);
+    }
+
+    /**
+     * 1セッション分の送信側。ルームと送信者を登録表に載せ、2回目以降は番号だけを送る
+     * maxEntries が 0 の場合は登録せず、常に値をそのまま送る
+     */
+    public static final class Encoder {
+        private final int maxEntries;
+        private final Map<String, Integer> rooms = new HashMap<>();
+        private final Map<Sender, Integer> senders = new HashMap<>();
+
+        public Encoder(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public byte[] encode(ChatMessageDto message) {
+            return encode(prepare(message));
+        }
+
+        public synchronized byte[] encode(Prepared message) {
+            Writer out = new Writer(message.maxSize());
+            out.write(VERSION);
+            out.writeVarLong(message.id);
+            out.writeVarLong(message.epochMillis);
+
+            Integer room = rooms.get(message.roomId);
+            if (room != null) {
+                out.writeVarLong(REFERENCE_BASE + room);
+            } else {
+                out.writeVarLong(define(rooms, message.roomId) ? DEFINE : LITERAL);
+                out.writeString(message.room);
+            }
+
+            Integer sender = senders.get(message.sender);
+            if (sender != null) {
+                out.writeVarLong(REFERENCE_BASE + sender);
+            } else {
+                out.writeVarLong(define(senders, message.sender) ? DEFINE : LITERAL);
+                out.writeString(message.username);
+                out.writeString(message.displayName);
+            }
+
+            if (message.messageType >= 0) {
+                out.write(message.messageType);
+            } else {
+                out.write(OTHER_MESSAGE_TYPE);
+                out.writeString(message.otherMessageType);
+            }
+            out.writeString(message.content);
+            return out.toByteArray();
+        }
+
+        private <K> boolean define(Map<K, Integer> table, K key) {
+            if (table.size() >= maxEntries) {
+                return false;
+            }
+            table.put(key, table.size());
+            return true;
+        }
+    }
+
+    /**
+     * 受信側（クライアント実装の参考とテスト用）。送信側と同じ順にフレームを読む必要がある
+     */
+    public static final class Decoder {
+        private final List<String> rooms = new ArrayList<>();
+        private final List<Sender> senders = new ArrayList<>();
+
+        public synchronized ChatMessageDto decode(byte[] frame) {
+            Reader in = new Reader(frame);
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported compact frame version: " + version);
+            }
+            ChatMessageDto message = new ChatMessageDto();
+            long id = in.readVarLong();
+            message.setId(id != 0 ? id : null);
+            message.setTimestamp(fromEpochMillis(in.readVarLong()));
+
+            int roomRef = (int) in.readVarLong();
+            if (roomRef >= REFERENCE_BASE) {
+                message.setRoomId(rooms.get(roomRef - REFERENCE_BASE));
+            } else {
+                message.setRoomId(in.readString());
+                if (roomRef == DEFINE) {
+                    rooms.add(message.getRoomId());
+                }
+            }
+
+            int senderRef = (int) in.readVarLong();
+            Sender sender;
+            if (senderRef >= REFERENCE_BASE) {
+                sender = senders.get(senderRef - REFERENCE_BASE);
+            } else {
+                sender = new Sender(in.readString(), in.readString());
+                if (senderRef == DEFINE) {
+                    senders.add(sender);
+                }
+            }
+            message.setSenderUsername(sender.username());
+            message.setSenderDisplayName(sender.displayName());
+
+            int type = in.readByte();
+            message.setMessageType(type == OTHER_MESSAGE_TYPE ? in.readString() : MESSAGE_TYPES.get(type));
+            message.setContent(in.readString());
+            return message;
+        }
+    }
+
+    private record Sender(String username, String displayName) {
+    }
+
+    static long toEpochMillis(String timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        try {
+            return LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    static String fromEpochMillis(long epochMillis) {
+        if (epochMillis == 0) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).format(TIMESTAMP_FORMAT);
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int size(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+
+    private static final class Writer {
+        private final byte[] buffer;
+        private int position;
+
+        Writer(int maxSize) {
+            this.buffer = new byte[maxSize];
+        }
+
+        void write(int value) {
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(byte[] value) {
+            if (value == null) {
+                write(0);
+                return;
+            }
+            writeVarLong(value.length + 1L);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated compact frame");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in compact frame");
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            int size = (int) (length - 1);
+            if (size > data.length - position) {
+                throw new IllegalArgumentException("Truncated compact frame");
+            }
+            String value = new String(data, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+    }
+}
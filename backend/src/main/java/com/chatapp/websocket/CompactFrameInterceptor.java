@@ -0,0 +1,176 @@
+package com.chatapp.websocket;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.chatapp.config.CompactFrameProperties;
+import com.chatapp.config.WebSocketTransportProperties;
+import com.chatapp.dto.ChatMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * チャットルームの購読ごとに送信形式を切り替える
+ *
+ * SUBSCRIBE の content-type に CompactChatFrameCodec.MIME_TYPE を指定した購読には、
+ * /topic/{roomId} のメッセージを JSON ではなくコンパクト形式で送る（クライアント受信チャネル側で変換）。
+ * ブローカーは1回の配信で全購読者に同じJSONを渡すため、JSONの解析は配信ごとに1回だけ行う。
+ *
+ * SockJS はテキストフレームしか送れないため、ネイティブWebSocket（/ws/websocket）のセッションだけが対象。
+ * 送信が詰まったときにメッセージを捨てる設定（DROP）では、登録表が食い違わないよう登録を使わない。
+ */
+@Component
+public class CompactFrameInterceptor implements ChannelInterceptor {
+
+    // SlowConsumerAwareWebSocketHandler が接続時にセッション属性に入れる
+    static final String BINARY_FRAMES_ATTRIBUTE = "chat.binaryFrames";
+
+    private final CompactFrameProperties properties;
+    private final ObjectMapper objectMapper;
+    private final int maxInternedEntries;
+
+    private final Map<String, CompactSession> sessions = new ConcurrentHashMap<>();
+    // 配信ごとに共有されるJSONペイロード（同一インスタンス）-> 解析・変換済みのメッセージ
+    private final Cache<byte[], CompactChatFrameCodec.Prepared> decoded = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(256)
+            .build();
+
+    private final Counter frames;
+    private final Counter bytesSaved;
+    private final Counter rejected;
+
+    public CompactFrameInterceptor(CompactFrameProperties properties, WebSocketTransportProperties transportProperties,
+                                   ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.maxInternedEntries = transportProperties.getSlowConsumerPolicy() == WebSocketTransportProperties.SlowConsumerPolicy.DROP
+                ? 0
+                : properties.getMaxInternedEntries();
+        this.frames = Counter.builder("chat.websocket.compact.frames")
+                .description("Chat messages sent to subscribers in the compact encoding")
+                .register(meterRegistry);
+        this.bytesSaved = Counter.builder("chat.websocket.compact.bytes-saved")
+                .description("Payload bytes saved by the compact encoding compared with JSON")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.websocket.compact.rejected")
+                .description("Subscriptions that asked for the compact encoding but were served JSON")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        if (type == SimpMessageType.MESSAGE) {
+            return sessions.isEmpty() ? message : encode(message);
+        }
+        if (type == SimpMessageType.SUBSCRIBE) {
+            subscribed(headers);
+        } else if (type == SimpMessageType.UNSUBSCRIBE) {
+            CompactSession session = sessions.get(SimpMessageHeaderAccessor.getSessionId(headers));
+            String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+            if (session != null && subscriptionId != null) {
+                session.subscriptions.remove(subscriptionId);
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    private void subscribed(MessageHeaders headers) {
+        if (!CompactChatFrameCodec.isCompact(contentType(headers))) {
+            return;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        boolean binaryFrames = attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE));
+        if (!properties.isEnabled() || !binaryFrames || sessionId == null || subscriptionId == null
+                || PresenceRegistry.roomOf(SimpMessageHeaderAccessor.getDestination(headers)) == null) {
+            rejected.increment();
+            return;
+        }
+        sessions.computeIfAbsent(sessionId, key -> new CompactSession(maxInternedEntries))
+                .subscriptions.add(subscriptionId);
+    }
+
+    private Message<?> encode(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        // クライアントからの SEND（受信チャネル）には購読IDがない。変換せずコントローラーに渡す
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        if (subscriptionId == null) {
+            return message;
+        }
+        CompactSession session = sessions.get(SimpMessageHeaderAccessor.getSessionId(headers));
+        if (session == null || !session.subscriptions.contains(subscriptionId)
+                || !(message.getPayload() instanceof byte[] json)
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType(headers))) {
+            return message;
+        }
+        CompactChatFrameCodec.Prepared prepared = decoded.get(json, this::parse);
+        if (prepared == null) {
+            return message;
+        }
+
+        byte[] compact = session.encoder.encode(prepared);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(CompactChatFrameCodec.MIME_TYPE);
+        accessor.removeNativeHeader(StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER);
+        frames.increment();
+        bytesSaved.increment(json.length - compact.length);
+        return MessageBuilder.createMessage(compact, accessor.getMessageHeaders());
+    }
+
+    private CompactChatFrameCodec.Prepared parse(byte[] json) {
+        try {
+            return CompactChatFrameCodec.prepare(objectMapper.readValue(json, ChatMessageDto.class));
+        } catch (IOException e) {
+            // チャットメッセージ以外はJSONのまま送る
+            return null;
+        }
+    }
+
+    private static MimeType contentType(MessageHeaders headers) {
+        Object value = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (value instanceof MimeType mimeType) {
+            return mimeType;
+        }
+        return value instanceof String text ? MimeTypeUtils.parseMimeType(text) : null;
+    }
+
+    private static final class CompactSession {
+        private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+        private final CompactChatFrameCodec.Encoder encoder;
+
+        CompactSession(int maxInternedEntries) {
+            this.encoder = new CompactChatFrameCodec.Encoder(maxInternedEntries);
+        }
+    }
+}
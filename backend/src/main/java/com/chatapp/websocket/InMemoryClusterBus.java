@@ -0,0 +1,33 @@
+package com.chatapp.websocket;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * 同一JVM内だけで完結する {@link ClusterBus}
+ * テストや単一ノードでクラスタモードを動かす場合の代替として使う
+ */
+public class InMemoryClusterBus implements ClusterBus {
+
+    private final Map<String, Set<Consumer<ClusterMessage>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(ClusterMessage message) {
+        Set<Consumer<ClusterMessage>> subscribed = listeners.get(message.destination());
+        if (subscribed != null) {
+            subscribed.forEach(listener -> listener.accept(message));
+        }
+    }
+
+    @Override
+    public Subscription subscribe(String destination, Consumer<ClusterMessage> listener) {
+        listeners.computeIfAbsent(destination, key -> new CopyOnWriteArraySet<>()).add(listener);
+        return () -> listeners.computeIfPresent(destination, (key, set) -> {
+            set.remove(listener);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
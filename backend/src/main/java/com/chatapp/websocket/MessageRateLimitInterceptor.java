@@ -0,0 +1,193 @@
+package com.chatapp.websocket;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.chatapp.config.MessageRateLimitProperties;
+import com.chatapp.dto.RateLimitedDto;
+import com.chatapp.security.StompPrincipal;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * /app/chat.sendMessage への送信をセッション・ユーザー・ルームごとのトークンバケットで制限する
+ *
+ * 保存（INSERT）と配信はメッセージごとに発生するため、コントローラーに届く前にここで破棄する。
+ * セッション → ユーザー → ルームの順に判定し、破棄した送信もそれまでに判定したバケットのトークンは消費する
+ * （送り続けるクライアントは自分の上限に当たり続け、ルーム全体の枠は消費しない）。
+ *
+ * 破棄したことは送ったセッションの /user/queue/errors に知らせる。通知自体が溢れないよう、
+ * セッションごとに次のトークンが使えるようになるまでは再通知しない。
+ * SimpMessagingTemplate はWebSocket設定との循環を避けて遅延注入する。
+ */
+@Component
+public class MessageRateLimitInterceptor implements ChannelInterceptor {
+
+    static final String SEND_MESSAGE_DESTINATION = "/app/chat.sendMessage";
+    static final String ERRORS_DESTINATION = "/queue/errors";
+
+    private final MessageRateLimitProperties properties;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, SessionLimit> sessions = new ConcurrentHashMap<>();
+    private final Cache<Long, TokenBucket> users;
+    private final Cache<String, TokenBucket> rooms;
+
+    private final Counter accepted;
+    private final Map<RateLimitedDto.Scope, Counter> rejected = new EnumMap<>(RateLimitedDto.Scope.class);
+
+    public MessageRateLimitInterceptor(MessageRateLimitProperties properties,
+                                       @Lazy SimpMessagingTemplate messagingTemplate,
+                                       ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.users = Caffeine.newBuilder().expireAfterAccess(properties.getIdleTimeout()).build();
+        this.rooms = Caffeine.newBuilder().expireAfterAccess(properties.getIdleTimeout()).build();
+
+        this.accepted = Counter.builder("chat.websocket.rate-limit.accepted")
+                .description("Chat messages that passed the session, user and room rate limits")
+                .register(meterRegistry);
+        for (RateLimitedDto.Scope scope : RateLimitedDto.Scope.values()) {
+            rejected.put(scope, Counter.builder("chat.websocket.rate-limit.rejected")
+                    .description("Chat messages dropped because a rate limit was exceeded")
+                    .tag("scope", scope.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("chat.websocket.rate-limit.buckets", sessions, Map::size)
+                .description("Rate limit buckets currently held in memory")
+                .tag("scope", "session")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.rate-limit.buckets", users, Cache::estimatedSize)
+                .tag("scope", "user")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.rate-limit.buckets", rooms, Cache::estimatedSize)
+                .tag("scope", "room")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (!properties.isEnabled()
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !SEND_MESSAGE_DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(headers))) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null || !(SimpMessageHeaderAccessor.getUser(headers) instanceof StompPrincipal sender)) {
+            // 未認証の送信は StompAuthChannelInterceptor が拒否する
+            return message;
+        }
+
+        long now = System.nanoTime();
+        SessionLimit session = sessions.computeIfAbsent(sessionId, key -> new SessionLimit(properties.getSession(), now));
+        String roomId = null;
+        RateLimitedDto.Scope scope = RateLimitedDto.Scope.SESSION;
+        long wait = session.bucket != null ? session.bucket.tryAcquire(now) : 0;
+        if (wait == 0 && properties.getUser().isEnabled()) {
+            scope = RateLimitedDto.Scope.USER;
+            wait = users.get(sender.getId(), key -> new TokenBucket(properties.getUser())).tryAcquire(now);
+        }
+        if (wait == 0 && properties.getRoom().isEnabled()) {
+            roomId = roomIdOf(message.getPayload());
+            if (roomId != null) {
+                scope = RateLimitedDto.Scope.ROOM;
+                wait = rooms.get(roomId, key -> new TokenBucket(properties.getRoom())).tryAcquire(now);
+            }
+        }
+        if (wait == 0) {
+            accepted.increment();
+            return message;
+        }
+
+        rejected.get(scope).increment();
+        if (session.shouldNotify(now, wait)) {
+            notifyRejected(sessionId, sender, new RateLimitedDto(scope, SEND_MESSAGE_DESTINATION,
+                    roomId != null ? roomId : roomIdOf(message.getPayload()),
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait))));
+        }
+        // null を返すとメッセージはコントローラーに届かない
+        return null;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    private void notifyRejected(String sessionId, StompPrincipal sender, RateLimitedDto notice) {
+        // セッションIDを指定すると、同じユーザーの他のセッションには送られない
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sender.getName(), ERRORS_DESTINATION, notice,
+                accessor.getMessageHeaders());
+    }
+
+    /**
+     * ペイロード（JSON）の最上位の roomId だけを読む。読めなければ null
+     */
+    private String roomIdOf(Object payload) {
+        if (!(payload instanceof byte[] json)) {
+            return null;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("roomId".equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class SessionLimit {
+        private final TokenBucket bucket;
+        // この時刻までは破棄しても再通知しない
+        private final AtomicLong quietUntil;
+
+        SessionLimit(MessageRateLimitProperties.Limit limit, long now) {
+            this.bucket = limit.isEnabled() ? new TokenBucket(limit) : null;
+            this.quietUntil = new AtomicLong(now);
+        }
+
+        boolean shouldNotify(long now, long wait) {
+            long until = quietUntil.get();
+            return now - until >= 0 && quietUntil.compareAndSet(until, now + wait);
+        }
+    }
+}
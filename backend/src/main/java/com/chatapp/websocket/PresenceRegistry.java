@@ -0,0 +1,259 @@
+package com.chatapp.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.chatapp.config.PresenceProperties;
+import com.chatapp.dto.PresenceDtos.PresenceDelta;
+import com.chatapp.security.StompPrincipal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ルームごとのオンラインユーザー
+ * /topic/{roomId} の購読をそのルームにいるものとみなし、購読解除・切断・ハートビート切れで外す。
+ *
+ * 入退室はルームごとに集約し、flush-interval ごとに差分だけを /topic/presence.{roomId} に送る
+ * （期間内に入って出たユーザーは送らない）。チャット履歴には書き込まない。
+ * 状態はノードごとに持つため、クラスタモードでは各ノードに接続しているユーザーだけが対象になる。
+ */
+@Component
+public class PresenceRegistry {
+
+    static final String TOPIC_PREFIX = "/topic/";
+    static final String PRESENCE_PREFIX = "presence.";
+
+    private final PresenceProperties properties;
+    private final ChatBroadcaster chatBroadcaster;
+
+    // roomId -> (userId -> そのルームを購読しているセッション数)。読み取りはロックなし
+    private final Map<String, Map<Long, Integer>> rooms = new ConcurrentHashMap<>();
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    // 未送信の差分。更新は this をロックとして行う
+    private Map<String, PendingDelta> pending = new HashMap<>();
+
+    private final Counter deltas;
+    private final Counter expired;
+
+    public PresenceRegistry(PresenceProperties properties, ChatBroadcaster chatBroadcaster,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.chatBroadcaster = chatBroadcaster;
+        this.deltas = Counter.builder("chat.presence.deltas")
+                .description("Coalesced presence deltas broadcast to rooms")
+                .register(meterRegistry);
+        this.expired = Counter.builder("chat.presence.expired")
+                .description("Sessions dropped from presence after missing heartbeats")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.sessions", sessions, Map::size)
+                .description("WebSocket sessions present in at least one room")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.rooms", rooms, Map::size)
+                .description("Rooms with at least one online user")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (!(event.getUser() instanceof StompPrincipal principal)) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        subscribed(accessor.getSessionId(), principal.getId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        unsubscribed(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnected(event.getSessionId());
+    }
+
+    /**
+     * セッションからフレームを受け取ったことを記録する（STOMPのハートビートを含む）
+     */
+    public void touch(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        SessionPresence session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    public boolean isOnline(String roomId, Long userId) {
+        Map<Long, Integer> users = rooms.get(roomId);
+        return users != null && users.containsKey(userId);
+    }
+
+    public int onlineCount(String roomId) {
+        Map<Long, Integer> users = rooms.get(roomId);
+        return users != null ? users.size() : 0;
+    }
+
+    public List<Long> onlineUserIds(String roomId) {
+        Map<Long, Integer> users = rooms.get(roomId);
+        return users != null ? List.copyOf(users.keySet()) : List.of();
+    }
+
+    synchronized void subscribed(String sessionId, Long userId, String subscriptionId, String destination) {
+        String roomId = roomOf(destination);
+        if (sessionId == null || userId == null || subscriptionId == null || roomId == null) {
+            return;
+        }
+        SessionPresence session = sessions.computeIfAbsent(sessionId, key -> new SessionPresence(userId));
+        session.lastSeen = System.currentTimeMillis();
+        boolean wasInRoom = session.subscriptions.containsValue(roomId);
+        String previous = session.subscriptions.put(subscriptionId, roomId);
+        if (previous != null && !previous.equals(roomId) && !session.subscriptions.containsValue(previous)) {
+            leaveRoom(previous, session.userId);
+        }
+        if (!wasInRoom) {
+            joinRoom(roomId, session.userId);
+        }
+    }
+
+    synchronized void unsubscribed(String sessionId, String subscriptionId) {
+        SessionPresence session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null) {
+            return;
+        }
+        String roomId = session.subscriptions.remove(subscriptionId);
+        if (roomId != null && !session.subscriptions.containsValue(roomId)) {
+            leaveRoom(roomId, session.userId);
+        }
+        if (session.subscriptions.isEmpty()) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    synchronized void disconnected(String sessionId) {
+        SessionPresence session = sessionId != null ? sessions.remove(sessionId) : null;
+        if (session != null) {
+            new LinkedHashSet<>(session.subscriptions.values()).forEach(roomId -> leaveRoom(roomId, session.userId));
+        }
+    }
+
+    /**
+     * ハートビートが途絶えたセッションを外す（切断イベントが届かなかった場合の保険）
+     */
+    @Scheduled(fixedDelayString = "${app.presence.sweep-interval-ms:15000}")
+    public void expireStaleSessions() {
+        expireStaleSessions(System.currentTimeMillis());
+    }
+
+    void expireStaleSessions(long now) {
+        long deadline = now - properties.getHeartbeatTimeoutMs();
+        List<String> stale = new ArrayList<>();
+        sessions.forEach((sessionId, session) -> {
+            if (session.lastSeen < deadline) {
+                stale.add(sessionId);
+            }
+        });
+        stale.forEach(sessionId -> {
+            disconnected(sessionId);
+            expired.increment();
+        });
+    }
+
+    /**
+     * 溜まった差分をルームごとに1件ずつ送る
+     */
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms:1000}")
+    public void flush() {
+        Map<String, PendingDelta> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        batch.forEach((roomId, delta) -> {
+            if (delta.joined.isEmpty() && delta.left.isEmpty()) {
+                return;
+            }
+            chatBroadcaster.broadcast(TOPIC_PREFIX + PRESENCE_PREFIX + roomId, new PresenceDelta(roomId,
+                    List.copyOf(delta.joined), List.copyOf(delta.left), onlineCount(roomId)));
+            deltas.increment();
+        });
+    }
+
+    private void joinRoom(String roomId, Long userId) {
+        Map<Long, Integer> users = rooms.computeIfAbsent(roomId, key -> new ConcurrentHashMap<>());
+        if (users.merge(userId, 1, Integer::sum) == 1) {
+            PendingDelta delta = pending.computeIfAbsent(roomId, key -> new PendingDelta());
+            // 同じ期間内に出ていたなら差分なし
+            if (!delta.left.remove(userId)) {
+                delta.joined.add(userId);
+            }
+        }
+    }
+
+    private void leaveRoom(String roomId, Long userId) {
+        Map<Long, Integer> users = rooms.get(roomId);
+        if (users == null) {
+            return;
+        }
+        if (users.computeIfPresent(userId, (key, count) -> count > 1 ? count - 1 : null) == null) {
+            PendingDelta delta = pending.computeIfAbsent(roomId, key -> new PendingDelta());
+            if (!delta.joined.remove(userId)) {
+                delta.left.add(userId);
+            }
+        }
+        if (users.isEmpty()) {
+            rooms.remove(roomId);
+        }
+    }
+
+    /**
+     * /topic/{roomId} ならルームID、それ以外は null
+     * ルームIDに '.' は含まれないため、presence.* や events.* などの付随チャネルは対象外になる
+     */
+    static String roomOf(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return null;
+        }
+        String roomId = destination.substring(TOPIC_PREFIX.length());
+        if (roomId.isEmpty() || roomId.indexOf('.') >= 0 || roomId.indexOf('/') >= 0) {
+            return null;
+        }
+        return roomId;
+    }
+
+    private static final class SessionPresence {
+        private final Long userId;
+        // 購読ID -> ルームID。PresenceRegistry のロック内でのみ更新する
+        private final Map<String, String> subscriptions = new HashMap<>();
+        private volatile long lastSeen;
+
+        SessionPresence(Long userId) {
+            this.userId = userId;
+        }
+    }
+
+    private static final class PendingDelta {
+        private final Set<Long> joined = new LinkedHashSet<>();
+        private final Set<Long> left = new LinkedHashSet<>();
+    }
+}
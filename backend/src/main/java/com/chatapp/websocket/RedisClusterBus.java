@@ -0,0 +1,73 @@
+package com.chatapp.websocket;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Redis Pub/Sub を使った {@link ClusterBus}
+ * 宛先ごとにチャネル（prefix + 宛先）を分けるため、Redisは購読者がいるノードにだけ配送する
+ */
+public class RedisClusterBus implements ClusterBus, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisClusterBus.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer container;
+    private final ObjectMapper objectMapper;
+    private final String channelPrefix;
+
+    public RedisClusterBus(RedisConnectionFactory connectionFactory, ObjectMapper objectMapper, String channelPrefix) {
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        this.container = new RedisMessageListenerContainer();
+        this.container.setConnectionFactory(connectionFactory);
+        this.objectMapper = objectMapper;
+        this.channelPrefix = channelPrefix;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        container.destroy();
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        try {
+            redisTemplate.convertAndSend(channelPrefix + message.destination(),
+                    objectMapper.writeValueAsString(message));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize cluster message", e);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(String destination, Consumer<ClusterMessage> listener) {
+        MessageListener redisListener = (message, pattern) -> {
+            try {
+                listener.accept(objectMapper.readValue(message.getBody(), ClusterMessage.class));
+            } catch (IOException e) {
+                logger.warn("Dropping malformed cluster message on {}: {}", destination, e.getMessage());
+            }
+        };
+        ChannelTopic topic = new ChannelTopic(channelPrefix + destination);
+        container.addMessageListener(redisListener, topic);
+        return () -> container.removeMessageListener(redisListener, topic);
+    }
+}
@@ -0,0 +1,139 @@
+package com.chatapp.websocket;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.chatapp.config.ChatEventProperties;
+import com.chatapp.dto.RoomEventDto;
+import com.chatapp.security.StompPrincipal;
+import com.chatapp.service.AnonymousNameService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 入室・退室・入力中イベントの中継
+ * イベントは /topic/events.{roomId} に送るだけで、データベースには書き込まない。
+ *
+ * セッションごとに同じ状態の繰り返しをまとめ（入室済みの JOIN、typing-window-ms 内の TYPING など）、
+ * 残ったイベントはトークンバケットで rate-per-second（最大 burst）に制限する。
+ */
+@Component
+public class RoomEventRelay {
+
+    static final String EVENTS_PREFIX = "events.";
+
+    private final ChatEventProperties properties;
+    private final ChatBroadcaster chatBroadcaster;
+    private final AnonymousNameService anonymousNameService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, SessionEvents> sessions = new ConcurrentHashMap<>();
+
+    public RoomEventRelay(ChatEventProperties properties, ChatBroadcaster chatBroadcaster,
+                          AnonymousNameService anonymousNameService, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.chatBroadcaster = chatBroadcaster;
+        this.anonymousNameService = anonymousNameService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * イベントを送る。まとめられた・制限されたイベントは送らずに false を返す
+     */
+    public boolean publish(String sessionId, StompPrincipal sender, RoomEventDto.Type type, String roomId) {
+        if (sessionId == null || type == null || roomId == null || roomId.isEmpty() || roomId.indexOf('.') >= 0) {
+            throw new IllegalArgumentException("Invalid room event");
+        }
+        long now = System.currentTimeMillis();
+        SessionEvents session = sessions.computeIfAbsent(sessionId, key -> new SessionEvents(properties.getBurst(), now));
+        String dropReason = session.admit(type, roomId, now, properties);
+        if (dropReason != null) {
+            meterRegistry.counter("chat.events.dropped", "type", type.name(), "reason", dropReason).increment();
+            return false;
+        }
+
+        RoomEventDto event = new RoomEventDto(type, roomId);
+        event.setUserId(sender.getId());
+        event.setDisplayName(displayName(sender, roomId));
+        event.setSentAt(now);
+        chatBroadcaster.broadcast(PresenceRegistry.TOPIC_PREFIX + EVENTS_PREFIX + roomId, event);
+        meterRegistry.counter("chat.events.published", "type", type.name()).increment();
+        return true;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    private String displayName(StompPrincipal sender, String roomId) {
+        // グループでは全員が同じ匿名名を見る（匿名名はキャッシュされる）
+        if (roomId.startsWith("group-")) {
+            try {
+                return anonymousNameService.getAnonymousName(sender.getId(), Long.valueOf(roomId.substring(6)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return sender.getDisplayName();
+    }
+
+    /**
+     * 1セッション分の状態。同じセッションからのイベントは this をロックとして処理する
+     */
+    static final class SessionEvents {
+        private final Set<String> joinedRooms = new HashSet<>();
+        // roomId -> 最後に TYPING を送った時刻
+        private final Map<String, Long> typing = new HashMap<>();
+        private double tokens;
+        private long refilledAt;
+
+        SessionEvents(int burst, long now) {
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        /**
+         * 送ってよければ状態を進めて null、送らない場合はその理由を返す
+         */
+        synchronized String admit(RoomEventDto.Type type, String roomId, long now, ChatEventProperties properties) {
+            boolean redundant = switch (type) {
+                case JOIN -> joinedRooms.contains(roomId);
+                case LEAVE -> !joinedRooms.contains(roomId) && !typing.containsKey(roomId);
+                case TYPING -> {
+                    Long last = typing.get(roomId);
+                    yield last != null && now - last < properties.getTypingWindowMs();
+                }
+                case STOPPED_TYPING -> !typing.containsKey(roomId);
+            };
+            if (redundant) {
+                return "coalesced";
+            }
+
+            tokens = Math.min(properties.getBurst(), tokens + (now - refilledAt) * properties.getRatePerSecond() / 1000.0);
+            refilledAt = now;
+            if (tokens < 1) {
+                return "rate-limited";
+            }
+            tokens -= 1;
+
+            switch (type) {
+                case JOIN -> joinedRooms.add(roomId);
+                case LEAVE -> {
+                    joinedRooms.remove(roomId);
+                    typing.remove(roomId);
+                }
+                case TYPING -> typing.put(roomId, now);
+                case STOPPED_TYPING -> typing.remove(roomId);
+            }
+            return null;
+        }
+    }
+}
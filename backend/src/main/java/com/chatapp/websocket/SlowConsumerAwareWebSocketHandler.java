@@ -0,0 +1,59 @@
+package com.chatapp.websocket;
+
+import java.io.IOException;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import com.chatapp.config.WebSocketTransportProperties.SlowConsumerPolicy;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * 送信が詰まったセッションの扱いを選べる SubProtocolWebSocketHandler
+ *
+ * 各セッションへの送信はセッションごとのバッファを経由するため、遅いクライアントがいても
+ * 送信中のスレッド1本が待つだけで、他のセッションへの配信は止まらない。
+ * バッファが上限を超えたら、DROP では古いメッセージを捨て、DISCONNECT では切断する。
+ */
+public class SlowConsumerAwareWebSocketHandler extends SubProtocolWebSocketHandler {
+
+    private final SlowConsumerPolicy policy;
+    private final Counter disconnects;
+
+    public SlowConsumerAwareWebSocketHandler(MessageChannel clientInboundChannel,
+                                             SubscribableChannel clientOutboundChannel,
+                                             SlowConsumerPolicy policy, Counter disconnects) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.policy = policy;
+        this.disconnects = disconnects;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // SockJS はテキストフレームしか送れないため、バイナリ形式を使えるのはネイティブWebSocketだけ
+        session.getAttributes().put(CompactFrameInterceptor.BINARY_FRAMES_ATTRIBUTE, !(session instanceof SockJsSession));
+        super.afterConnectionEstablished(session);
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        OverflowStrategy strategy = policy == SlowConsumerPolicy.DROP ? OverflowStrategy.DROP : OverflowStrategy.TERMINATE;
+        return new ConcurrentWebSocketSessionDecorator(session, getSendTimeLimit(), getSendBufferSizeLimit(), strategy) {
+            @Override
+            public void close(CloseStatus status) throws IOException {
+                // 送信上限の超過による切断は SESSION_NOT_RELIABLE で閉じられる
+                if (CloseStatus.SESSION_NOT_RELIABLE.equals(status)) {
+                    disconnects.increment();
+                }
+                super.close(status);
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.chatapp.websocket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.chatapp.model.User;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.security.AuthenticatedPrincipalCache;
+import com.chatapp.security.JwtUtils;
+import com.chatapp.security.StompPrincipal;
+import com.chatapp.security.UserPrincipal;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+
+/**
+ * STOMPのCONNECTフレームでJWTを検証し、ユーザーをセッションに紐付けるインターセプター
+ * 以降のフレームはセッションのユーザーで処理されるため、メッセージごとのユーザー検索は発生しない
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private AuthenticatedPrincipalCache principalCache;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.CONNECT) {
+            // CONNECT時に設定したユーザーはセッションに保存され、以降のフレームにも付与される
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader(AUTHORIZATION_HEADER)));
+        } else if ((command == StompCommand.SEND || command == StompCommand.SUBSCRIBE)
+                && !(accessor.getUser() instanceof StompPrincipal)) {
+            throw new BadCredentialsException("STOMP session is not authenticated");
+        }
+        return message;
+    }
+
+    private StompPrincipal authenticate(String header) {
+        if (!StringUtils.hasText(header) || !header.startsWith(BEARER_PREFIX)) {
+            throw new BadCredentialsException("Missing bearer token on STOMP CONNECT");
+        }
+        String token = header.substring(BEARER_PREFIX.length());
+
+        try {
+            Claims claims = jwtUtils.parseClaims(token);
+            jwtUtils.checkNotRevoked(claims);
+
+            UserPrincipal principal = jwtUtils.isClaimsOnly() ? jwtUtils.getPrincipalFromClaims(claims) : null;
+            if (principal == null) {
+                principal = (UserPrincipal) principalCache.get(token, claims.getExpiration(),
+                        () -> userDetailsService.loadUserByUsername(claims.getSubject()));
+            }
+
+            // 表示名はセッション中ずっと使うため、接続時に一度だけ読み込む
+            User user = userRepository.findById(principal.getId())
+                    .orElseThrow(() -> new BadCredentialsException("User not found"));
+            return new StompPrincipal(user.getId(), user.getUsername(), user.getDisplayName());
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new BadCredentialsException("Invalid JWT on STOMP CONNECT: " + e.getMessage(), e);
+        }
+    }
+}
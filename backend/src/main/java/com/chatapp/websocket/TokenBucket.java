@@ -0,0 +1,45 @@
+package com.chatapp.websocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.chatapp.config.MessageRateLimitProperties;
+
+/**
+ * ロックを使わないトークンバケット
+ *
+ * 残りトークン数の代わりに「バケットが満杯に戻る時刻から burst 分を引いた時刻」（次のトークンが使える理論上の時刻）を
+ * 1つの long で持ち、CAS で進める（GCRA）。毎秒 ratePerSecond 個補充され、最大 burst 個までためられるバケットと同じ判定になる。
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    // 理論上の次の到着時刻（System.nanoTime 基準）
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    TokenBucket(MessageRateLimitProperties.Limit limit) {
+        this(limit.getRatePerSecond(), limit.getBurst());
+    }
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.capacityNanos = intervalNanos * burst;
+    }
+
+    /**
+     * トークンを1つ使う。使えた場合は 0、足りない場合は次のトークンが使えるまでのナノ秒を返す（トークンは使わない）
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long wait = next - nowNanos - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
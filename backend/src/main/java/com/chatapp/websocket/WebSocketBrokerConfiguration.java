@@ -0,0 +1,40 @@
+package com.chatapp.websocket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+import com.chatapp.config.WebSocketTransportProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Replaces {@code @EnableWebSocketMessageBroker} so the WebSocket handler can apply the slow-consumer policy.
+ * Everything else is still configured through {@link WebSocketConfig}.
+ */
+@Configuration
+public class WebSocketBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Autowired
+    private WebSocketTransportProperties transportProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                        AbstractSubscribableChannel clientOutboundChannel) {
+        Counter disconnects = Counter.builder("chat.websocket.slow-consumer.disconnects")
+                .description("Sessions closed because they could not keep up with outbound messages")
+                .register(meterRegistry);
+        SlowConsumerAwareWebSocketHandler handler = new SlowConsumerAwareWebSocketHandler(
+                clientInboundChannel, clientOutboundChannel, transportProperties.getSlowConsumerPolicy(), disconnects);
+        handler.setPhase(getPhase());
+        return handler;
+    }
+}
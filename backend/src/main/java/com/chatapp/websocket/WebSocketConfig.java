@@ -1,20 +1,149 @@
 package com.chatapp.websocket;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import com.chatapp.config.CompactFrameProperties;
+import com.chatapp.config.PresenceProperties;
+import com.chatapp.config.WebSocketBrokerProperties;
+import com.chatapp.config.WebSocketTransportProperties;
+
+// メッセージブローカーは WebSocketBrokerConfiguration で有効化している
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    
+    @Autowired
+    private PresenceHeartbeatInterceptor presenceHeartbeatInterceptor;
+    
+    @Autowired
+    private MessageRateLimitInterceptor messageRateLimitInterceptor;
+    
+    @Autowired
+    private CompactFrameInterceptor compactFrameInterceptor;
+    
+    @Autowired
+    private WebSocketBrokerProperties brokerProperties;
+    
+    @Autowired
+    private CompactFrameProperties compactFrameProperties;
+    
+    @Autowired
+    private WebSocketTransportProperties transportProperties;
+    
+    @Autowired
+    private Environment environment;
+    
+    @Autowired
+    private PresenceProperties presenceProperties;
+    
+    // ブローカー自身が作るスケジューラ。この設定クラスから作られるため遅延注入する
+    @Lazy
+    @Autowired
+    @Qualifier("messageBrokerTaskScheduler")
+    private TaskScheduler messageBrokerTaskScheduler;
+    
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        // /queue はセッション宛ての通知（/user/queue/errors）だけに使う
+        if (brokerProperties.getMode() == WebSocketBrokerProperties.Mode.RELAY) {
+            // 購読の管理と配信は外部のSTOMPブローカー（RabbitMQ, ActiveMQ など）が行う
+            WebSocketBrokerProperties.Relay relay = brokerProperties.getRelay();
+            StompBrokerRelayRegistration registration = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relay.getHost())
+                    .setRelayPort(relay.getPort())
+                    .setClientLogin(relay.getClientLogin())
+                    .setClientPasscode(relay.getClientPasscode())
+                    .setSystemLogin(relay.getSystemLogin())
+                    .setSystemPasscode(relay.getSystemPasscode());
+            if (relay.getVirtualHost() != null) {
+                registration.setVirtualHost(relay.getVirtualHost());
+            }
+        } else {
+            // SIMPLE と CLUSTER はノード内のブローカー（CLUSTER は ClusterFanout がノード間を中継）
+            // ハートビートがないと、購読しているだけのクライアントからはフレームが届かず
+            // プレゼンスの heartbeat-timeout で退室扱いになるため、ブローカーでハートビートを交換する
+            long heartbeat = brokerProperties.getHeartbeatIntervalMs();
+            if (heartbeat <= 0 || presenceProperties.getHeartbeatTimeoutMs() <= 2 * heartbeat) {
+                throw new IllegalStateException("app.presence.heartbeat-timeout-ms ("
+                        + presenceProperties.getHeartbeatTimeoutMs()
+                        + ") must be more than twice app.websocket.broker.heartbeat-interval-ms (" + heartbeat + ")");
+            }
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setTaskScheduler(messageBrokerTaskScheduler)
+                    .setHeartbeatValue(new long[] {heartbeat, heartbeat});
+        }
         config.setApplicationDestinationPrefixes("/app");
+        // コンパクト形式の登録表はセッションへの送信順に依存するため、送信順を保つ
+        config.setPreservePublishOrder(compactFrameProperties.isEnabled());
+    }
+    
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        // SockJSのハンドシェイクではヘッダーを送れないため、認証はSTOMPのCONNECTで行う
+        // 送信制限は認証済みのユーザーで判定するため、認証の後に置く
+        registration.interceptors(stompAuthChannelInterceptor, presenceHeartbeatInterceptor,
+                messageRateLimitInterceptor, compactFrameInterceptor);
+        WebSocketTransportProperties.Inbound inbound = transportProperties.getInbound();
+        if (useVirtualThreads(inbound)) {
+            // 受信処理はDBアクセスで待つことが多いため、1メッセージ1仮想スレッドで処理する
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        } else {
+            applyExecutor(registration, inbound);
+        }
+    }
+    
+    /**
+     * 明示的に指定されていなければ spring.threads.virtual.enabled に従う（Java 21 未満では黙ってプールを使う）
+     * 明示的に true を指定した場合だけ、Java 21 未満で起動を止める
+     */
+    boolean useVirtualThreads(WebSocketTransportProperties.Inbound inbound) {
+        Boolean explicit = inbound.getVirtualThreads();
+        if (explicit == null) {
+            return Threading.VIRTUAL.isActive(environment);
+        }
+        if (explicit && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("app.websocket.transport.inbound.virtual-threads requires Java 21 or later");
+        }
+        return explicit;
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        registration.interceptors(compactFrameInterceptor);
+        applyExecutor(registration, transportProperties.getOutbound());
+    }
+    
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        // 上限を超えたセッションの扱いは SlowConsumerAwareWebSocketHandler が決める
+        registration.setSendTimeLimit((int) transportProperties.getSendTimeLimit().toMillis())
+                .setSendBufferSizeLimit((int) transportProperties.getSendBufferSizeLimit().toBytes())
+                .setMessageSizeLimit((int) transportProperties.getMessageSizeLimit().toBytes());
+    }
+    
+    private static void applyExecutor(ChannelRegistration registration,
+                                      WebSocketTransportProperties.ChannelExecutor executor) {
+        registration.taskExecutor()
+                .corePoolSize(executor.getCorePoolSize())
+                .maxPoolSize(executor.getMaxPoolSize())
+                .queueCapacity(executor.getQueueCapacity())
+                .keepAliveSeconds((int) executor.getKeepAlive().toSeconds());
     }
     
     @Override
@@ -0,0 +1,7 @@
+-- チャット履歴のキーセットページング用インデックス
+-- (room_id, created_at, id) の順で辿ることで、LIMIT付きの最新ページ取得・before カーソル取得を
+-- ルームのサイズに依存せずインデックスのみで解決する
+CREATE INDEX idx_room_created_id ON chat_messages(room_id, created_at, id);
+
+-- 上記インデックスの先頭列と重複するため削除
+DROP INDEX idx_room_created ON chat_messages;
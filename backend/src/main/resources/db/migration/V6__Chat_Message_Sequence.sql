@@ -0,0 +1,12 @@
+-- chat_messages のID採番を AUTO_INCREMENT からシーケンステーブルに切り替える
+-- IDをINSERT前に確定させることで、write-behind でのブロードキャスト先行とJDBCバッチINSERTを可能にする
+-- アプリケーションのデプロイ前に適用すること（ddl-auto で作成されると next_val が 1 から始まり既存IDと衝突する）
+CREATE TABLE IF NOT EXISTS chat_message_seq (
+    next_val BIGINT
+) ENGINE=InnoDB;
+
+-- allocationSize(50) 分の余裕を持たせて既存の最大IDより後ろから採番する
+INSERT INTO chat_message_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM chat_messages;
+
+ALTER TABLE chat_messages MODIFY id BIGINT NOT NULL;
@@ -0,0 +1,14 @@
+-- チャットルームごとの既読位置
+-- 未読数はメモリ上で増減させ、ここには既読位置だけを定期的に書き込む
+CREATE TABLE IF NOT EXISTS room_read_cursors (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    room_id VARCHAR(255) NOT NULL,
+    last_read_message_id BIGINT NOT NULL,
+    updated_at DATETIME,
+    CONSTRAINT uk_room_read_cursor_user_room UNIQUE (user_id, room_id),
+    CONSTRAINT fk_room_read_cursor_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- 既読位置より新しいメッセージの件数（未読数の初期値）を (room_id, id) の範囲で数える
+CREATE INDEX idx_room_id ON chat_messages(room_id, id);
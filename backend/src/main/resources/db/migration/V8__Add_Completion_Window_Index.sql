@@ -0,0 +1,3 @@
+-- 期間別ランキングの読み込み用インデックス
+-- 直近31日分の達成記録を (completed_at) の範囲で読み、ユーザー・日付ごとに集計する（インデックスのみで完結）
+CREATE INDEX idx_completed_at_user ON challenge_completions(completed_at, user_id, points_earned);
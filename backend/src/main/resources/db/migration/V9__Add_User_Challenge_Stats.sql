@@ -0,0 +1,14 @@
+-- ユーザーごとのチャレンジ達成数（総数とタイプ別）
+-- 達成のたびに同じトランザクションで加算し、バッジ判定と統計は challenge_completions を数え直さずにここを読む
+-- 既存の達成記録からは起動時のバックフィル（app.challenges.stats.*）で作る
+CREATE TABLE IF NOT EXISTS user_challenge_stats (
+    user_id BIGINT PRIMARY KEY,
+    total_completions BIGINT NOT NULL DEFAULT 0,
+    gratitude_count BIGINT NOT NULL DEFAULT 0,
+    kindness_count BIGINT NOT NULL DEFAULT 0,
+    self_care_count BIGINT NOT NULL DEFAULT 0,
+    creativity_count BIGINT NOT NULL DEFAULT 0,
+    connection_count BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME,
+    CONSTRAINT fk_user_challenge_stats_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -0,0 +1,67 @@
+package com.chatapp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rejectsApiRequestsWhenNoPermitFreesUpInTime() throws Exception {
+        ConcurrencyLimitFilter filter = filter(1);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // 1件目は許可を握ったまま処理中にする
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/groups/1"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            holding.countDown();
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(holding.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/groups/2"), rejected, new MockFilterChain());
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(meterRegistry.counter("http.concurrency-limit.rejected").count()).isEqualTo(1);
+
+        // API以外（WebSocketのハンドシェイクなど）は制限しない
+        MockHttpServletResponse handshake = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/ws/info"), handshake, new MockFilterChain());
+        assertThat(handshake.getStatus()).isEqualTo(200);
+
+        release.countDown();
+        first.join();
+        MockHttpServletResponse afterRelease = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/groups/3"), afterRelease, new MockFilterChain());
+        assertThat(afterRelease.getStatus()).isEqualTo(200);
+    }
+
+    private ConcurrencyLimitFilter filter(int maxConcurrentRequests) {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setMaxConcurrentRequests(maxConcurrentRequests);
+        properties.setAcquireTimeout(Duration.ofMillis(50));
+        return new ConcurrencyLimitFilter(properties, meterRegistry);
+    }
+}
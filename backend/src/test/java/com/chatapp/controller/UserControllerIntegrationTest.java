@@ -0,0 +1,75 @@
+package com.chatapp.controller;
+
+import com.chatapp.model.User;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.security.UserPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserControllerIntegrationTest {
+
+    @Autowired
+    private UserController userController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void searchReturnsRankedPrefixMatchesInPages() {
+        User me = createUser("srchme");
+        createUser("srchbob");
+        createUser("srch");
+        createUser("srchalice");
+        createUser("xsrch");
+        Authentication auth = authentication(me);
+
+        UserController.UserSearchPage first = userController.searchUsers("srch", null, 2, auth).getBody();
+        assertThat(usernames(first)).containsExactly("srch", "srchalice");
+        assertThat(first.isHasMore()).isTrue();
+
+        UserController.UserSearchPage second =
+                userController.searchUsers("srch", first.getNextCursor(), 2, auth).getBody();
+        // 自分自身と、途中に含むだけのユーザー（xsrch）は含まない
+        assertThat(usernames(second)).containsExactly("srchbob");
+        assertThat(second.isHasMore()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void searchTreatsLikeWildcardsLiterallyAndIgnoresBlankQueries() {
+        User me = createUser("wild-me");
+        createUser("wild_card");
+        createUser("wildxcard");
+        createUser("wild%pct");
+        Authentication auth = authentication(me);
+
+        assertThat(usernames(userController.searchUsers("wild_", null, 20, auth).getBody()))
+                .containsExactly("wild_card");
+        assertThat(usernames(userController.searchUsers("wild%", null, 20, auth).getBody()))
+                .containsExactly("wild%pct");
+        assertThat(usernames(userController.searchUsers("  ", null, 20, auth).getBody())).isEmpty();
+    }
+
+    private User createUser(String username) {
+        return userRepository.save(new User(username, username + "@example.com", "password", username));
+    }
+
+    private static Authentication authentication(User user) {
+        UserPrincipal principal = UserPrincipal.create(user);
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    private static List<String> usernames(UserController.UserSearchPage page) {
+        return page.getUsers().stream().map(UserController.UserDto::getUsername).toList();
+    }
+}
@@ -0,0 +1,96 @@
+package com.chatapp.security;
+
+import com.chatapp.model.User;
+import com.chatapp.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AuthenticatedPrincipalCacheIntegrationTest {
+
+    @Autowired
+    private AuthenticatedPrincipalCache principalCache;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenVersionStore tokenVersionStore;
+
+    @Test
+    void principalIsReusedUntilUserChanges() {
+        User user = createUser("principal-cache-user");
+        String token = issueToken(user);
+        Claims claims = jwtUtils.parseClaims(token);
+        assertThat(claims.getSubject()).isEqualTo(user.getUsername());
+
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<UserDetails> loader = () -> {
+            loads.incrementAndGet();
+            return userDetailsService.loadUserByUsername(claims.getSubject());
+        };
+
+        principalCache.get(token, claims.getExpiration(), loader);
+        UserDetails cached = principalCache.get(token, claims.getExpiration(), loader);
+        assertThat(loads).hasValue(1);
+        assertThat(((UserPrincipal) cached).getId()).isEqualTo(user.getId());
+
+        // ユーザーを更新するとエンティティリスナー経由で無効化される
+        user.setDisplayName("changed");
+        userRepository.save(user);
+        principalCache.get(token, claims.getExpiration(), loader);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void claimsCarryPrincipalAndRevocationInvalidatesIssuedTokens() {
+        User user = createUser("claims-only-user");
+        String token = issueToken(user);
+
+        Claims claims = jwtUtils.parseClaims(token);
+        jwtUtils.checkNotRevoked(claims);
+        UserPrincipal principal = jwtUtils.getPrincipalFromClaims(claims);
+        assertThat(principal.getId()).isEqualTo(user.getId());
+        assertThat(principal.getUsername()).isEqualTo(user.getUsername());
+
+        tokenVersionStore.revokeAll(user.getId());
+        assertThatThrownBy(() -> jwtUtils.checkNotRevoked(jwtUtils.parseClaims(token)))
+                .isInstanceOf(JwtException.class);
+        // 失効後に発行したトークンは有効
+        jwtUtils.checkNotRevoked(jwtUtils.parseClaims(issueToken(user)));
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        return userRepository.save(user);
+    }
+
+    private String issueToken(User user) {
+        UserPrincipal principal = UserPrincipal.create(user);
+        return jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
@@ -0,0 +1,146 @@
+package com.chatapp.service;
+
+import com.chatapp.model.Group;
+import com.chatapp.model.GroupMemberAlias;
+import com.chatapp.model.User;
+import com.chatapp.repository.GroupMemberAliasRepository;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.scheduler.AnonymousNameScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AnonymousNameServiceIntegrationTest {
+
+    @Autowired
+    private AnonymousNameService anonymousNameService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private GroupMemberAliasRepository aliasRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AnonymousNameScheduler anonymousNameScheduler;
+
+    @Test
+    void repeatedLookupsAreServedFromCache() {
+        User owner = createUser("alias-cache-owner");
+        User member = createUser("alias-cache-member");
+        Group group = groupService.createGroup("alias cache", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+
+        String first = anonymousNameService.getAnonymousName(member.getId(), group.getId());
+        double hitsBefore = cacheGets("hit");
+
+        assertThat(anonymousNameService.getAnonymousName(member.getId(), group.getId())).isEqualTo(first);
+        Map<Long, String> names = anonymousNameService.getAnonymousNames(group.getId(), List.of(member.getId()));
+        assertThat(names).containsEntry(member.getId(), first);
+        assertThat(cacheGets("hit")).isEqualTo(hitsBefore + 2);
+    }
+
+    @Test
+    void resetAndRotationInvalidateCachedNames() {
+        User owner = createUser("alias-reset-owner");
+        User member = createUser("alias-reset-member");
+        Group group = groupService.createGroup("alias reset", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+
+        anonymousNameService.getAnonymousName(member.getId(), group.getId());
+        anonymousNameService.resetGroupAliases(group.getId());
+        assertThat(aliasRepository.findByGroupId(group.getId())).isEmpty();
+
+        // キャッシュが破棄されていれば匿名名が作り直される
+        anonymousNameService.getAnonymousName(member.getId(), group.getId());
+        List<GroupMemberAlias> aliases = aliasRepository.findByGroupId(group.getId());
+        assertThat(aliases).hasSize(1);
+
+        GroupMemberAlias alias = aliases.get(0);
+        anonymousNameService.rotateAnonymousName(alias);
+        String rotated = aliasRepository.findById(alias.getId()).orElseThrow().getAnonymousName();
+        assertThat(anonymousNameService.getAnonymousName(member.getId(), group.getId())).isEqualTo(rotated);
+    }
+
+    @Test
+    void lazyRotationKeepsNameAlreadyRotatedToday() {
+        User owner = createUser("alias-lazy-owner");
+        User member = createUser("alias-lazy-member");
+        Group group = groupService.createGroup("alias lazy", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        GroupMemberAlias stale = saveAlias(member, group, LocalDate.now().minusDays(1));
+
+        // 古い状態を読んだ後に、他のノード（または日次ジョブ）が先にローテーションした
+        GroupMemberAlias rotatedElsewhere = aliasRepository.findById(stale.getId()).orElseThrow();
+        rotatedElsewhere.setAnonymousName("other-node");
+        rotatedElsewhere.setLastRotationDate(LocalDate.now());
+        aliasRepository.save(rotatedElsewhere);
+
+        assertThat(anonymousNameService.rotateAnonymousName(stale)).isEqualTo("other-node");
+        assertThat(aliasRepository.findById(stale.getId()).orElseThrow().getAnonymousName()).isEqualTo("other-node");
+        assertThat(anonymousNameService.getAnonymousName(member.getId(), group.getId())).isEqualTo("other-node");
+    }
+
+    @Test
+    void dailyJobRotatesOnlyStaleAliasesInChunks() {
+        User owner = createUser("alias-rotation-owner");
+        Group group = groupService.createGroup("alias rotation", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+
+        GroupMemberAlias fresh = saveAlias(createUser("alias-rotation-fresh"), group, today);
+        for (int i = 0; i < 3; i++) {
+            saveAlias(createUser("alias-rotation-stale-" + i), group, yesterday);
+        }
+
+        AnonymousNameService.RotationChunk first = anonymousNameService.rotateStaleAliases(today, 0, 2);
+        assertThat(first.rotated()).isEqualTo(2);
+        AnonymousNameService.RotationChunk second = anonymousNameService.rotateStaleAliases(today, first.lastId(), 2);
+        assertThat(second.rotated()).isEqualTo(1);
+
+        // 途中で止まっても、再実行すれば残りの行だけが対象になる
+        saveAlias(createUser("alias-rotation-late"), group, yesterday);
+        double rotatedBefore = meterRegistry.counter("anonymous-names.rotation.rotated").count();
+        anonymousNameScheduler.rotateAnonymousNames();
+        assertThat(meterRegistry.counter("anonymous-names.rotation.rotated").count()).isEqualTo(rotatedBefore + 1);
+
+        assertThat(aliasRepository.findByGroupId(group.getId()))
+                .extracting(GroupMemberAlias::getLastRotationDate)
+                .containsOnly(today);
+        assertThat(aliasRepository.findById(fresh.getId()).orElseThrow().getAnonymousName())
+                .isEqualTo(fresh.getAnonymousName());
+    }
+
+    private GroupMemberAlias saveAlias(User user, Group group, LocalDate rotationDate) {
+        GroupMemberAlias alias = new GroupMemberAlias(user, group, "桜(さくら)");
+        alias.setLastRotationDate(rotationDate);
+        return aliasRepository.save(alias);
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "anonymousNames").tag("result", result)
+                .functionCounter().count();
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setDisplayName(username + " display");
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,72 @@
+package com.chatapp.service;
+
+import com.chatapp.model.ChallengeCompletion;
+import com.chatapp.model.DailyChallenge;
+import com.chatapp.model.User;
+import com.chatapp.model.UserBadge;
+import com.chatapp.model.UserProgress;
+import com.chatapp.repository.ChallengeCompletionRepository;
+import com.chatapp.repository.DailyChallengeRepository;
+import com.chatapp.repository.UserProgressRepository;
+import com.chatapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BadgeServiceIntegrationTest {
+
+    @Autowired
+    private BadgeService badgeService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private DailyChallengeRepository dailyChallengeRepository;
+
+    @Autowired
+    private ChallengeCompletionRepository challengeCompletionRepository;
+
+    @Test
+    void rulesAwardEveryCrossedThresholdOnce() {
+        User user = userRepository.save(new User("badgerules", "badgerules@example.com", "password", "Badge Rules"));
+        DailyChallenge gratitude = dailyChallengeRepository.findByChallengeTypeAndIsActiveTrue(DailyChallenge.ChallengeType.GRATITUDE)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No seeded gratitude challenges found"));
+        for (int i = 0; i < 10; i++) {
+            ChallengeCompletion completion = new ChallengeCompletion();
+            completion.setUser(user);
+            completion.setChallenge(gratitude);
+            completion.setPointsEarned(gratitude.getPoints());
+            challengeCompletionRepository.save(completion);
+        }
+        UserProgress progress = new UserProgress();
+        progress.setUser(user);
+        progress.setTotalPoints(250);
+        progress.setFlowerLevel(3);
+        progress.setCurrentStreak(3);
+        progress.setLongestStreak(3);
+        userProgressRepository.save(progress);
+
+        List<UserBadge> earned = badgeService.checkAndAwardBadges(user);
+        assertThat(earned)
+                .extracting(badge -> badge.getBadge().getBadgeType())
+                .containsExactlyInAnyOrder("FIRST_STEP", "STREAK_3", "TOTAL_10", "GRATITUDE_10", "LEVEL_3");
+        assertThat(earned).allMatch(UserBadge::getIsNew);
+
+        // 獲得済みのバッジは再度付与しない
+        assertThat(badgeService.checkAndAwardBadges(user)).isEmpty();
+        assertThat(badgeService.getUserBadges(user)).hasSize(5);
+    }
+}
@@ -1,5 +1,7 @@
 package com.chatapp.service;
 
+import com.chatapp.dto.LeaderboardDtos.RankingEntry;
+import com.chatapp.dto.LeaderboardDtos.WindowRankingEntry;
 import com.chatapp.model.DailyChallenge;
 import com.chatapp.model.User;
 import com.chatapp.model.UserBadge;
@@ -33,6 +35,9 @@ class ChallengeServiceIntegrationTest {
     @Autowired
     private UserBadgeRepository userBadgeRepository;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     @Test
     void completingFirstChallengeAwardsFirstStepBadge() {
         User user = new User();
@@ -89,4 +94,69 @@ class ChallengeServiceIntegrationTest {
         assertThat(challengeService.getTodayRecommendedChallenges(savedUser.getId())).isEmpty();
         assertThat(challengeService.getTodayCompletedCount(savedUser.getId())).isEqualTo(3);
     }
+
+    @Test
+    void rankingIsUpdatedOnCompletionAndMatchesRebuild() {
+        // 他のテストがDBに直接書いた進捗・達成記録を読み込んでから比べる
+        leaderboardService.rebuild();
+        User leader = userRepository.save(new User("rankleader", "rankleader@example.com", "password", "Leader"));
+        User runnerUp = userRepository.save(new User("rankrunner", "rankrunner@example.com", "password", "Runner"));
+        List<DailyChallenge> activeChallenges = dailyChallengeRepository.findByIsActiveTrue();
+
+        assertThat(challengeService.getUserRanking(leader.getId())).isNull();
+        challengeService.completeChallenge(leader.getId(), activeChallenges.get(0).getId(), null);
+        challengeService.completeChallenge(leader.getId(), activeChallenges.get(1).getId(), null);
+        challengeService.completeChallenge(runnerUp.getId(), activeChallenges.get(0).getId(), null);
+
+        RankingEntry leaderRank = challengeService.getUserRanking(leader.getId());
+        RankingEntry runnerUpRank = challengeService.getUserRanking(runnerUp.getId());
+        assertThat(leaderRank.getTotalPoints())
+                .isEqualTo(activeChallenges.get(0).getPoints() + activeChallenges.get(1).getPoints());
+        assertThat(leaderRank.getDisplayName()).isEqualTo("Leader");
+        assertThat(leaderRank.getRank()).isLessThan(runnerUpRank.getRank());
+
+        List<RankingEntry> top = challengeService.getTopRanking(2);
+        assertThat(top).hasSizeLessThanOrEqualTo(2);
+        assertThat(top).extracting(RankingEntry::getRank).isSorted();
+        assertThat(challengeService.getTopRanking(1000)).hasSizeLessThanOrEqualTo(LeaderboardService.MAX_RANKING_LIMIT);
+
+        // DBから作り直しても同じ順位になる
+        leaderboardService.rebuild();
+        assertThat(challengeService.getUserRanking(leader.getId()).getRank()).isEqualTo(leaderRank.getRank());
+        assertThat(challengeService.getUserRanking(runnerUp.getId()).getRank()).isEqualTo(runnerUpRank.getRank());
+    }
+
+    @Test
+    void windowRankingsCountTodaysCompletionsAndMatchRebuild() {
+        // 他のテストがDBに直接書いた進捗・達成記録を読み込んでから比べる
+        leaderboardService.rebuild();
+        User first = userRepository.save(new User("windowfirst", "windowfirst@example.com", "password", "First"));
+        User second = userRepository.save(new User("windowsecond", "windowsecond@example.com", "password", "Second"));
+        List<DailyChallenge> activeChallenges = dailyChallengeRepository.findByIsActiveTrue();
+
+        assertThat(challengeService.getUserRanking(LeaderboardService.Window.DAY, first.getId())).isNull();
+        challengeService.completeChallenge(first.getId(), activeChallenges.get(0).getId(), null);
+        challengeService.completeChallenge(first.getId(), activeChallenges.get(1).getId(), null);
+        challengeService.completeChallenge(second.getId(), activeChallenges.get(0).getId(), null);
+
+        int firstPoints = activeChallenges.get(0).getPoints() + activeChallenges.get(1).getPoints();
+        for (LeaderboardService.Window window : LeaderboardService.Window.values()) {
+            WindowRankingEntry firstRank = challengeService.getUserRanking(window, first.getId());
+            WindowRankingEntry secondRank = challengeService.getUserRanking(window, second.getId());
+            assertThat(firstRank.getPoints()).isEqualTo(firstPoints);
+            assertThat(firstRank.getCompletions()).isEqualTo(2);
+            assertThat(firstRank.getDisplayName()).isEqualTo("First");
+            assertThat(firstRank.getRank()).isLessThan(secondRank.getRank());
+            assertThat(challengeService.countCompletions(window, second.getId())).isEqualTo(1);
+            assertThat(challengeService.getTopRanking(window, 1000)).extracting(WindowRankingEntry::getRank).isSorted();
+        }
+
+        // DBの達成記録から作り直しても同じ集計・順位になる
+        WindowRankingEntry beforeRebuild = challengeService.getUserRanking(LeaderboardService.Window.WEEK, first.getId());
+        leaderboardService.rebuild();
+        WindowRankingEntry afterRebuild = challengeService.getUserRanking(LeaderboardService.Window.WEEK, first.getId());
+        assertThat(afterRebuild.getRank()).isEqualTo(beforeRebuild.getRank());
+        assertThat(afterRebuild.getPoints()).isEqualTo(firstPoints);
+        assertThat(challengeService.countCompletions(LeaderboardService.Window.MONTH, first.getId())).isEqualTo(2);
+    }
 }
@@ -0,0 +1,189 @@
+package com.chatapp.service;
+
+import com.chatapp.model.ChallengeCompletion;
+import com.chatapp.model.DailyChallenge;
+import com.chatapp.model.User;
+import com.chatapp.model.UserChallengeStats;
+import com.chatapp.repository.ChallengeCompletionRepository;
+import com.chatapp.repository.DailyChallengeRepository;
+import com.chatapp.repository.UserChallengeStatsRepository;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.scheduler.ChallengeStatsBackfillJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ChallengeStatsServiceIntegrationTest {
+
+    @Autowired
+    private ChallengeService challengeService;
+
+    @Autowired
+    private ChallengeStatsBackfillJob backfillJob;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DailyChallengeRepository dailyChallengeRepository;
+
+    @Autowired
+    private ChallengeCompletionRepository challengeCompletionRepository;
+
+    @Autowired
+    private UserChallengeStatsRepository userChallengeStatsRepository;
+
+    @Autowired
+    private ChallengeStatsService challengeStatsService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void completionsIncrementStatsAndBackfillRecountsFromLog() {
+        User user = userRepository.save(new User("statsuser", "statsuser@example.com", "password", "Stats User"));
+        List<DailyChallenge> activeChallenges = dailyChallengeRepository.findByIsActiveTrue();
+        DailyChallenge first = activeChallenges.get(0);
+        DailyChallenge second = activeChallenges.get(1);
+
+        assertThat(challengeService.getChallengeStats(user.getId()).getTotalCompletions()).isZero();
+        assertThat(userChallengeStatsRepository.existsById(user.getId())).isFalse();
+
+        challengeService.completeChallenge(user.getId(), first.getId(), null);
+        challengeService.completeChallenge(user.getId(), second.getId(), null);
+
+        UserChallengeStats stats = userChallengeStatsRepository.findById(user.getId()).orElseThrow();
+        assertThat(stats.getTotalCompletions()).isEqualTo(2);
+        assertThat(stats.getCountsByType().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(2);
+        assertThat(stats.getCount(first.getChallengeType())).isPositive();
+
+        // 集計テーブルを通らずに書かれた達成記録は、全件のバックフィルで反映される
+        saveCompletionDirectly(user, first);
+        assertThat(challengeService.getChallengeStats(user.getId()).getTotalCompletions()).isEqualTo(2);
+        assertThat(backfillJob.backfill(false)).isPositive();
+        assertThat(challengeService.getChallengeStats(user.getId()).getTotalCompletions()).isEqualTo(3);
+    }
+
+    @Test
+    void missingRowsAreBackfilled() {
+        User user = userRepository.save(new User("statslegacy", "statslegacy@example.com", "password", "Legacy"));
+        DailyChallenge challenge = dailyChallengeRepository.findByIsActiveTrue().get(0);
+        saveCompletionDirectly(user, challenge);
+        saveCompletionDirectly(user, challenge);
+
+        backfillJob.backfill(true);
+
+        UserChallengeStats stats = userChallengeStatsRepository.findById(user.getId()).orElseThrow();
+        assertThat(stats.getTotalCompletions()).isEqualTo(2);
+        assertThat(stats.getCount(challenge.getChallengeType())).isEqualTo(2);
+        // 行ができた後は対象にならない
+        assertThat(backfillJob.backfill(true)).isZero();
+    }
+
+    @Test
+    void concurrentFirstCompletionsAreBothCounted() throws Exception {
+        User user = userRepository.save(new User("statsrace", "statsrace@example.com", "password", "Race"));
+        List<DailyChallenge> challenges = dailyChallengeRepository.findByIsActiveTrue().subList(0, 2);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        // 両方が「行がない」ことを確認した後で行を作りにいくように揃える
+        CyclicBarrier barrier = new CyclicBarrier(challenges.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(challenges.size());
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (DailyChallenge challenge : challenges) {
+                results.add(executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                    saveCompletionDirectly(user, challenge);
+                    await(barrier);
+                    challengeStatsService.recordCompletion(user.getId(), challenge.getChallengeType());
+                })));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        UserChallengeStats stats = userChallengeStatsRepository.findById(user.getId()).orElseThrow();
+        assertThat(stats.getTotalCompletions()).isEqualTo(2);
+        assertThat(challengeCompletionRepository.countByUserGroupByChallengeType(user.getId())
+                .stream().mapToLong(ChallengeCompletionRepository.TypeCountProjection::getCompletions).sum())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void rebuildWaitingForLockCountsCompletionCommittedMeanwhile() throws Exception {
+        User user = userRepository.save(new User("statsrebuild", "statsrebuild@example.com", "password", "Rebuild"));
+        DailyChallenge challenge = dailyChallengeRepository.findByIsActiveTrue().get(0);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            saveCompletionDirectly(user, challenge);
+            challengeStatsService.recordCompletion(user.getId(), challenge.getChallengeType());
+        });
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // 達成を記録して行ロックを持ったまま、数え直しが始まるのを待つ
+            Future<?> completion = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                saveCompletionDirectly(user, challenge);
+                challengeStatsService.recordCompletion(user.getId(), challenge.getChallengeType());
+                locked.countDown();
+                awaitLatch(release);
+            }));
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<?> rebuild = executor.submit(() -> challengeStatsService.rebuild(user.getId()));
+            Thread.sleep(200);
+            release.countDown();
+            completion.get(30, TimeUnit.SECONDS);
+            rebuild.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(userChallengeStatsRepository.findById(user.getId()).orElseThrow().getTotalCompletions())
+                .isEqualTo(2);
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void saveCompletionDirectly(User user, DailyChallenge challenge) {
+        ChallengeCompletion completion = new ChallengeCompletion();
+        completion.setUser(user);
+        completion.setChallenge(challenge);
+        completion.setPointsEarned(challenge.getPoints());
+        challengeCompletionRepository.save(completion);
+    }
+}
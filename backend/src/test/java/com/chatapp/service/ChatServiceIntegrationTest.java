@@ -0,0 +1,318 @@
+package com.chatapp.service;
+
+import com.chatapp.config.ChatWriteBehindProperties;
+import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.dto.ChatMessagePageDto;
+import com.chatapp.model.ChatMessage;
+import com.chatapp.model.Group;
+import com.chatapp.model.User;
+import com.chatapp.repository.ChatMessageRepository;
+import com.chatapp.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatServiceIntegrationTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private AnonymousNameService anonymousNameService;
+
+    @Autowired
+    private ChatWriteBehindProperties writeBehindProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void historyIsReturnedInKeysetPages() {
+        User sender = createUser("history-user");
+        String roomId = "topic-9001";
+        LocalDateTime base = LocalDateTime.now().minusHours(1);
+        for (int i = 0; i < 7; i++) {
+            ChatMessage message = new ChatMessage("message " + i, sender, roomId);
+            message.setCreatedAt(base.plusSeconds(i));
+            chatMessageRepository.save(message);
+        }
+
+        ChatMessagePageDto latest = chatService.getRecentMessages(roomId, null, 3);
+        assertThat(latest.getMessages())
+                .extracting(ChatMessageDto::getContent)
+                .containsExactly("message 4", "message 5", "message 6");
+        assertThat(latest.isHasMore()).isTrue();
+        assertThat(latest.getNextCursor()).isEqualTo(latest.getMessages().get(0).getId());
+
+        List<String> older = new ArrayList<>();
+        ChatMessagePageDto page = latest;
+        while (page.isHasMore()) {
+            page = chatService.getRecentMessages(roomId, page.getNextCursor(), 3);
+            older.addAll(0, page.getMessages().stream().map(ChatMessageDto::getContent).toList());
+        }
+        assertThat(older).containsExactly("message 0", "message 1", "message 2", "message 3");
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void savedMessagesAreServedFromRecentMessageCache() {
+        User sender = createUser("cache-user");
+        String roomId = "topic-9004";
+        chatMessageRepository.save(new ChatMessage("before cache", sender, roomId));
+
+        // 初回読み込みでバッファを作成
+        assertThat(chatService.getRecentMessages(roomId, null, 50).getMessages()).hasSize(1);
+
+        ChatMessageDto outgoing = new ChatMessageDto("after cache", sender.getUsername(), roomId, "CHAT");
+        chatService.saveMessage(outgoing);
+
+        double hitsBefore = meterRegistry.counter("chat.history.cache.requests", "result", "hit").count();
+        ChatMessagePageDto page = chatService.getRecentMessages(roomId, null, 50);
+        assertThat(page.getMessages())
+                .extracting(ChatMessageDto::getContent)
+                .containsExactly("before cache", "after cache");
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(meterRegistry.counter("chat.history.cache.requests", "result", "hit").count())
+                .isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void messagesAreBroadcastWithIdAndPersistedByWriteBehind() {
+        User sender = createUser("write-behind-user");
+        String roomId = "topic-9005";
+        LocalDateTime before = LocalDateTime.now();
+
+        ChatMessageDto saved = chatService.saveMessage(
+                new ChatMessageDto("persist me", sender.getUsername(), roomId, "CHAT"));
+        assertThat(saved.getId()).isNotNull();
+
+        assertThat(writeBehind.flush(Duration.ofSeconds(5))).isTrue();
+        ChatMessage persisted = chatMessageRepository.findById(saved.getId()).orElseThrow();
+        assertThat(persisted.getContent()).isEqualTo("persist me");
+        assertThat(persisted.getRoomId()).isEqualTo(roomId);
+        // JPAで保存した行と同じタイムゾーン基準で created_at が書かれている
+        assertThat(persisted.getCreatedAt()).isBetween(before, LocalDateTime.now());
+    }
+
+    @Test
+    void duplicateIdIsSkippedOnlyWhenStoredRowMatches() throws Exception {
+        User sender = createUser("duplicate-id-user");
+        String roomId = "topic-9010";
+
+        // スピルの再投入など、同じメッセージが2回書かれる場合は1行だけ残る
+        ChatMessage replayed = new ChatMessage("replayed", sender, roomId);
+        replayed.setId(writeBehind.nextId());
+        writeBehind.submit(replayed);
+        writeBehind.submit(replayed);
+
+        // 別のメッセージが使っているIDで書こうとした場合はIDを振り直さず conflicts.jsonl に退避する
+        double conflictsBefore = meterRegistry.counter("chat.write-behind.conflicts").count();
+        Long takenId = writeBehind.nextId();
+        jdbcTemplate.update("INSERT INTO chat_messages (id, content, sender_id, room_id, created_at, message_type) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", takenId, "existing", sender.getId(), roomId, LocalDateTime.now(), "CHAT");
+        ChatMessage newcomer = new ChatMessage("newcomer", sender, roomId);
+        newcomer.setId(takenId);
+        writeBehind.submit(newcomer);
+
+        assertThat(writeBehind.flush(Duration.ofSeconds(5))).isTrue();
+        List<ChatMessage> stored = chatMessageRepository.findLatestByRoom(roomId, PageRequest.of(0, 10));
+        assertThat(stored).extracting(ChatMessage::getContent)
+                .containsExactlyInAnyOrder("replayed", "existing");
+        assertThat(stored).filteredOn(message -> message.getContent().equals("existing"))
+                .extracting(ChatMessage::getId).containsExactly(takenId);
+        assertThat(meterRegistry.counter("chat.write-behind.conflicts").count()).isEqualTo(conflictsBefore + 1);
+        assertThat(Files.readAllLines(Paths.get(writeBehindProperties.getSpillDirectory(), "conflicts.jsonl")))
+                .anyMatch(line -> line.contains("\"id\":" + takenId + ",") && line.contains("newcomer"));
+    }
+
+    @Test
+    void groupHistoryResolvesAnonymousNamesForWholePage() {
+        User owner = createUser("group-owner");
+        User member = createUser("group-member");
+        Group group = groupService.createGroup("history group", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        groupService.addMember(owner.getId(), group.getId(), member.getUsername());
+
+        String roomId = "group-" + group.getId();
+        chatMessageRepository.save(new ChatMessage("from owner", owner, roomId));
+        chatMessageRepository.save(new ChatMessage("from member", member, roomId));
+        chatMessageRepository.save(new ChatMessage("member again", member, roomId));
+
+        ChatMessagePageDto page = chatService.getGroupMessages(group.getId(), owner.getId(), null, 50);
+
+        String memberName = anonymousNameService.getAnonymousName(member.getId(), group.getId());
+        assertThat(page.getMessages())
+                .extracting(ChatMessageDto::getSenderDisplayName)
+                .containsExactly("あなた", memberName, memberName);
+    }
+
+    @Test
+    void pendingGroupMessagesAppearInHistoryAndSyncAndCanBeUsedAsCursor() throws Exception {
+        User owner = createUser("pending-owner");
+        Group group = groupService.createGroup("pending group", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        String roomId = "group-" + group.getId();
+        ChatMessage persisted = chatMessageRepository.save(new ChatMessage("persisted", owner, roomId));
+
+        // ライターを止めて、書き込み待ちのまま読む（止まっている間に受け付けたメッセージはスピルされる）
+        assertThat(writeBehind.flush(Duration.ofSeconds(5))).isTrue();
+        writeBehind.stop();
+        List<Long> pendingIds = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                ChatMessage message = new ChatMessage("pending " + i, owner, roomId);
+                message.setId(writeBehind.nextId());
+                message.setCreatedAt(LocalDateTime.now().plusSeconds(i + 1));
+                writeBehind.submit(message);
+                pendingIds.add(message.getId());
+            }
+
+            ChatMessagePageDto latest = chatService.getGroupMessages(group.getId(), owner.getId(), null, 2);
+            assertThat(latest.getMessages()).extracting(ChatMessageDto::getContent)
+                    .containsExactly("pending 1", "pending 2");
+            assertThat(latest.getMessages()).extracting(ChatMessageDto::getSenderDisplayName)
+                    .containsOnly("あなた");
+
+            ChatMessagePageDto older = chatService.getGroupMessages(group.getId(), owner.getId(), latest.getNextCursor(), 2);
+            assertThat(older.getMessages()).extracting(ChatMessageDto::getContent)
+                    .containsExactly("persisted", "pending 0");
+
+            Map<String, ChatMessagePageDto> synced = chatService.syncRooms(owner.getId(),
+                    Map.of(roomId, persisted.getId()), 50);
+            assertThat(synced.get(roomId).getMessages()).extracting(ChatMessageDto::getId)
+                    .containsExactlyElementsOf(pendingIds);
+            assertThat(Files.exists(Paths.get(writeBehindProperties.getSpillDirectory(), "spill.jsonl"))).isTrue();
+        } finally {
+            writeBehind.start();
+        }
+        assertThat(writeBehind.flush(Duration.ofSeconds(5))).isTrue();
+
+        // 再起動後のアイドル時にスピルから再投入され、DBから読めるようになる
+        long deadline = System.currentTimeMillis() + 5000;
+        while (chatMessageRepository.findExistingIds(pendingIds).size() < pendingIds.size()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(chatMessageRepository.findExistingIds(pendingIds)).containsExactlyInAnyOrderElementsOf(pendingIds);
+        assertThat(writeBehind.pendingFor(roomId)).isEmpty();
+    }
+
+    @Test
+    void syncReturnsOnlyNewerMessagesBoundedPerRoom() {
+        User owner = createUser("sync-owner");
+        User outsider = createUser("sync-outsider");
+        Group group = groupService.createGroup("sync group", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        String groupRoom = "group-" + group.getId();
+        String topicRoom = "topic-9006";
+
+        List<Long> topicIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            topicIds.add(chatMessageRepository.save(new ChatMessage("topic " + i, outsider, topicRoom)).getId());
+        }
+        ChatMessage seen = chatMessageRepository.save(new ChatMessage("seen", owner, groupRoom));
+        chatMessageRepository.save(new ChatMessage("new in group", owner, groupRoom));
+
+        Map<String, Long> lastSeen = new LinkedHashMap<>();
+        lastSeen.put(topicRoom, topicIds.get(1));
+        lastSeen.put(groupRoom, seen.getId());
+        lastSeen.put("bogus-room", 0L);
+
+        Map<String, ChatMessagePageDto> synced = chatService.syncRooms(owner.getId(), lastSeen, 2);
+        assertThat(synced).containsOnlyKeys(topicRoom, groupRoom);
+
+        ChatMessagePageDto topicPage = synced.get(topicRoom);
+        assertThat(topicPage.getMessages())
+                .extracting(ChatMessageDto::getContent)
+                .containsExactly("topic 3", "topic 4");
+        assertThat(topicPage.isHasMore()).isTrue();
+        assertThat(topicPage.getNextCursor()).isEqualTo(topicIds.get(3));
+
+        ChatMessagePageDto groupPage = synced.get(groupRoom);
+        assertThat(groupPage.getMessages())
+                .extracting(ChatMessageDto::getContent, ChatMessageDto::getSenderDisplayName)
+                .containsExactly(tuple("new in group", "あなた"));
+        assertThat(groupPage.isHasMore()).isFalse();
+
+        assertThat(chatService.syncRooms(outsider.getId(), Map.of(groupRoom, 0L), 50)).isEmpty();
+    }
+
+    @Test
+    void syncIsServedFromRecentMessageCacheAfterShortDisconnect() {
+        User sender = createUser("sync-cache-user");
+        String roomId = "topic-9007";
+        chatMessageRepository.save(new ChatMessage("before", sender, roomId));
+        ChatMessagePageDto initial = chatService.getRecentMessages(roomId, null, 50);
+        Long lastSeen = initial.getMessages().get(0).getId();
+
+        chatService.saveMessage(new ChatMessageDto("missed", sender.getUsername(), roomId, "CHAT"));
+
+        double hitsBefore = meterRegistry.counter("chat.history.cache.requests", "result", "hit").count();
+        ChatMessagePageDto page = chatService.syncRooms(sender.getId(), Map.of(roomId, lastSeen), 50).get(roomId);
+        assertThat(page.getMessages())
+                .extracting(ChatMessageDto::getContent)
+                .containsExactly("missed");
+        assertThat(meterRegistry.counter("chat.history.cache.requests", "result", "hit").count())
+                .isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void syncRejectsTooManyRooms() {
+        Map<String, Long> lastSeen = new LinkedHashMap<>();
+        for (int i = 0; i < 101; i++) {
+            lastSeen.put("topic-" + i, 0L);
+        }
+
+        assertThatThrownBy(() -> chatService.syncRooms(1L, lastSeen, 50))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void cursorFromAnotherRoomIsRejected() {
+        User sender = createUser("cursor-user");
+        ChatMessage other = chatMessageRepository.save(new ChatMessage("elsewhere", sender, "topic-9002"));
+
+        assertThatThrownBy(() -> chatService.getRecentMessages("topic-9003", other.getId(), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setDisplayName(username + " display");
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,186 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.dto.ChatMessagePageDto;
+import com.chatapp.dto.UnreadDtos.RoomUnread;
+import com.chatapp.model.ChatMessage;
+import com.chatapp.model.Group;
+import com.chatapp.model.GroupMemberAlias;
+import com.chatapp.model.RoomReadCursor;
+import com.chatapp.model.User;
+import com.chatapp.repository.ChatMessageRepository;
+import com.chatapp.repository.GroupMemberAliasRepository;
+import com.chatapp.repository.RoomReadCursorRepository;
+import com.chatapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.websocket.broker.mode=cluster",
+        "app.websocket.broker.cluster.bus=in-memory"
+})
+@ActiveProfiles("test")
+class ClusterModeIntegrationTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private RoomReadCursorRepository cursorRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private AnonymousNameService anonymousNameService;
+
+    @Autowired
+    private GroupMemberAliasRepository aliasRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void historySeesMessagesSavedByOtherNodes() {
+        User writer = createUser("cluster-history-writer");
+        String roomId = "topic-7201";
+        assertThat(recentMessageCache.supports(roomId)).isFalse();
+
+        chatService.saveMessage(new ChatMessageDto("local", writer.getUsername(), roomId, "CHAT"));
+        assertThat(chatService.getRecentMessages(roomId, null, 10).getMessages()).hasSize(1);
+
+        // 他のノードが保存したメッセージ（このノードの onMessageSaved は呼ばれない）
+        chatMessageRepository.save(new ChatMessage("remote", writer, roomId));
+
+        assertThat(chatService.getRecentMessages(roomId, null, 10).getMessages())
+                .extracting(ChatMessageDto::getContent)
+                .containsExactly("local", "remote");
+    }
+
+    @Test
+    void unreadCountsAreCountedFromDatabaseAndCursorsSavedImmediately() {
+        User owner = createUser("cluster-unread-owner");
+        User member = createUser("cluster-unread-member");
+        Group group = groupService.createGroup("cluster unread", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        groupService.addMember(owner.getId(), group.getId(), member.getUsername());
+        String roomId = "group-" + group.getId();
+
+        ChatMessage earlier = chatMessageRepository.save(new ChatMessage("earlier", member, roomId));
+        ChatMessageDto local = chatService.saveMessage(new ChatMessageDto("local", member.getUsername(), roomId, "CHAT"));
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isEqualTo(2);
+
+        chatMessageRepository.save(new ChatMessage("remote", member, roomId));
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isEqualTo(3);
+
+        RoomUnread read = unreadCounterService.markRead(owner.getId(), roomId, local.getId());
+        assertThat(read.getUnreadCount()).isEqualTo(1);
+        assertThat(read.getLastReadMessageId()).isEqualTo(local.getId());
+
+        List<RoomReadCursor> cursors = cursorRepository.findByUserId(owner.getId());
+        assertThat(cursors).hasSize(1);
+        assertThat(cursors.get(0).getLastReadMessageId()).isEqualTo(local.getId());
+
+        // 戻す方向の更新は無視される
+        RoomUnread ignored = unreadCounterService.markRead(owner.getId(), roomId, earlier.getId());
+        assertThat(ignored.getLastReadMessageId()).isEqualTo(local.getId());
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isEqualTo(1);
+    }
+
+    @Test
+    void syncAndUnreadCompareByCreatedAtWhenIdsAreOutOfOrder() {
+        User owner = createUser("cluster-order-owner");
+        User member = createUser("cluster-order-member");
+        Group group = groupService.createGroup("cluster order", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        groupService.addMember(owner.getId(), group.getId(), member.getUsername());
+        String roomId = "group-" + group.getId();
+
+        // 他のノードが先に確保した小さいIDのメッセージが、後から保存される
+        long remoteId = writeBehind.nextId();
+        long localId = writeBehind.nextId();
+        LocalDateTime now = LocalDateTime.now();
+        insertMessage(localId, "local", member, roomId, now.minusSeconds(2));
+        insertMessage(remoteId, "remote", member, roomId, now.minusSeconds(1));
+
+        ChatMessagePageDto synced = chatService.syncRooms(owner.getId(), Map.of(roomId, localId), 50).get(roomId);
+        assertThat(synced.getMessages()).extracting(ChatMessageDto::getId).containsExactly(remoteId);
+
+        RoomUnread read = unreadCounterService.markRead(owner.getId(), roomId, localId);
+        assertThat(read.getUnreadCount()).isEqualTo(1);
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isEqualTo(1);
+
+        // IDは小さいが新しいメッセージなので既読位置は進む
+        RoomUnread caughtUp = unreadCounterService.markRead(owner.getId(), roomId, remoteId);
+        assertThat(caughtUp.getLastReadMessageId()).isEqualTo(remoteId);
+        assertThat(caughtUp.getUnreadCount()).isZero();
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isZero();
+        assertThat(unreadCounterService.markRead(owner.getId(), roomId, localId).getLastReadMessageId())
+                .isEqualTo(remoteId);
+    }
+
+    @Test
+    void anonymousNamesAreReadFromDatabaseOnEveryLookup() {
+        User owner = createUser("cluster-alias-owner");
+        User member = createUser("cluster-alias-member");
+        Group group = groupService.createGroup("cluster alias", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        groupService.addMember(owner.getId(), group.getId(), member.getUsername());
+
+        anonymousNameService.getAnonymousName(member.getId(), group.getId());
+
+        // 他のノードがリセットして作り直した匿名名
+        GroupMemberAlias alias = aliasRepository.findByGroupId(group.getId()).stream()
+                .filter(candidate -> candidate.getTargetUser().getId().equals(member.getId()))
+                .findFirst()
+                .orElseThrow();
+        alias.setAnonymousName("other-node");
+        aliasRepository.save(alias);
+
+        assertThat(anonymousNameService.getAnonymousName(member.getId(), group.getId())).isEqualTo("other-node");
+        assertThat(anonymousNameService.getAnonymousNames(group.getId(), List.of(member.getId())))
+                .containsEntry(member.getId(), "other-node");
+    }
+
+    private void insertMessage(long id, String content, User sender, String roomId, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO chat_messages (id, content, sender_id, room_id, message_type, created_at) "
+                + "VALUES (?, ?, ?, ?, 'CHAT', ?)", id, content, sender.getId(), roomId, createdAt);
+    }
+
+    private RoomUnread unreadFor(User user, String roomId) {
+        return unreadCounterService.getUnreadCounts(user.getId()).stream()
+                .filter(unread -> unread.getRoomId().equals(roomId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setDisplayName(username + " display");
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,74 @@
+package com.chatapp.service;
+
+import com.chatapp.model.Group;
+import com.chatapp.model.User;
+import com.chatapp.repository.GroupMemberAliasRepository;
+import com.chatapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "app.anonymous-names.mode=derived",
+        "app.anonymous-names.secret=test-anonymous-name-secret",
+        "app.anonymous-names.avoid-collisions=true"
+})
+@ActiveProfiles("test")
+class DerivedAnonymousNameIntegrationTest {
+
+    @Autowired
+    private AnonymousNameService anonymousNameService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private GroupMemberAliasRepository aliasRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void namesAreDerivedWithoutStorageAndAreUniqueWithinGroup() {
+        User owner = createUser("derived-owner");
+        Group group = groupService.createGroup("derived", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        List<Long> memberIds = new ArrayList<>();
+        memberIds.add(owner.getId());
+        for (int i = 0; i < 20; i++) {
+            User member = createUser("derived-member-" + i);
+            groupService.addMember(owner.getId(), group.getId(), member.getUsername());
+            memberIds.add(member.getId());
+        }
+
+        Map<Long, String> names = anonymousNameService.getAnonymousNames(group.getId(), memberIds);
+        assertThat(names).hasSize(memberIds.size());
+        assertThat(names.values()).doesNotHaveDuplicates();
+
+        Long member = memberIds.get(1);
+        assertThat(anonymousNameService.getAnonymousName(member, group.getId())).isEqualTo(names.get(member));
+        assertThat(anonymousNameService.getAnonymousNameMap(owner.getId(), group.getId()))
+                .containsEntry(owner.getId(), "あなた")
+                .containsEntry(member, names.get(member));
+
+        assertThat(aliasRepository.findByGroupId(group.getId())).isEmpty();
+        assertThatThrownBy(() -> anonymousNameService.resetGroupAliases(group.getId()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setDisplayName(username + " display");
+        return userRepository.save(user);
+    }
+}
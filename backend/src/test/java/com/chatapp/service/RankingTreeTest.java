@@ -0,0 +1,42 @@
+package com.chatapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RankingTreeTest {
+
+    @Test
+    void matchesSortedListUnderRandomInsertsAndRemoves() {
+        Random random = new Random(42);
+        RankingTree<Integer> tree = new RankingTree<>();
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(2000);
+            int position = Collections.binarySearch(expected, key);
+            if (position >= 0) {
+                assertThat(tree.remove(key)).isTrue();
+                expected.remove(position);
+            } else {
+                tree.insert(key);
+                expected.add(-position - 1, key);
+            }
+        }
+        assertThat(tree.remove(-1)).isFalse();
+
+        assertThat(tree.size()).isEqualTo(expected.size());
+        assertThat(tree.range(0, expected.size() + 10)).isEqualTo(expected);
+        assertThat(tree.range(100, 25)).isEqualTo(expected.subList(100, 125));
+        assertThat(tree.range(expected.size(), 5)).isEmpty();
+        for (int key = -1; key <= 2000; key += 7) {
+            int position = Collections.binarySearch(expected, key);
+            assertThat(tree.countBefore(key)).isEqualTo(position >= 0 ? position : -position - 1);
+        }
+    }
+}
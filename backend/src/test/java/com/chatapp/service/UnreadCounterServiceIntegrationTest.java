@@ -0,0 +1,172 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.dto.UnreadDtos.RoomUnread;
+import com.chatapp.model.ChatMessage;
+import com.chatapp.model.Group;
+import com.chatapp.model.RoomReadCursor;
+import com.chatapp.model.User;
+import com.chatapp.repository.ChatMessageRepository;
+import com.chatapp.repository.RoomReadCursorRepository;
+import com.chatapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UnreadCounterServiceIntegrationTest {
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private RoomReadCursorRepository cursorRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void unreadCountsAreLoadedOnceThenMaintainedInMemory() {
+        User owner = createUser("unread-owner");
+        User member = createUser("unread-member");
+        Group group = groupService.createGroup("unread group", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        groupService.addMember(owner.getId(), group.getId(), member.getUsername());
+        String roomId = "group-" + group.getId();
+
+        chatMessageRepository.save(new ChatMessage("first", member, roomId));
+        chatMessageRepository.save(new ChatMessage("second", member, roomId));
+        chatMessageRepository.save(new ChatMessage("mine", owner, roomId));
+
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isEqualTo(2);
+        assertThat(unreadFor(member, roomId).getUnreadCount()).isEqualTo(1);
+
+        chatService.saveMessage(new ChatMessageDto("third", member.getUsername(), roomId, "CHAT"));
+        ChatMessageDto reply = chatService.saveMessage(new ChatMessageDto("reply", owner.getUsername(), roomId, "CHAT"));
+
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isEqualTo(3);
+        assertThat(unreadFor(member, roomId).getUnreadCount()).isEqualTo(2);
+
+        RoomUnread read = unreadCounterService.markRead(owner.getId(), roomId, reply.getId());
+        assertThat(read.getUnreadCount()).isZero();
+        assertThat(read.getLastReadMessageId()).isEqualTo(reply.getId());
+        assertThat(unreadFor(owner, roomId).getUnreadCount()).isZero();
+    }
+
+    @Test
+    void markReadIsMonotonicAndPersistedInBatches() {
+        User reader = createUser("cursor-reader");
+        User writer = createUser("cursor-writer");
+        String roomId = "topic-7101";
+        ChatMessage earlier = chatMessageRepository.save(new ChatMessage("zero", writer, roomId));
+        ChatMessage first = chatMessageRepository.save(new ChatMessage("one", writer, roomId));
+        chatMessageRepository.save(new ChatMessage("two", writer, roomId));
+        ChatMessage third = chatMessageRepository.save(new ChatMessage("three", writer, roomId));
+
+        assertThat(unreadCounterService.markRead(reader.getId(), roomId, first.getId()).getUnreadCount()).isEqualTo(2);
+        assertThat(cursorRepository.findByUserId(reader.getId())).isEmpty();
+
+        RoomUnread ignored = unreadCounterService.markRead(reader.getId(), roomId, earlier.getId());
+        assertThat(ignored.getLastReadMessageId()).isEqualTo(first.getId());
+        assertThat(ignored.getUnreadCount()).isEqualTo(2);
+
+        unreadCounterService.markRead(reader.getId(), roomId, third.getId());
+        unreadCounterService.persistDirtyCursors();
+
+        List<RoomReadCursor> cursors = cursorRepository.findByUserId(reader.getId());
+        assertThat(cursors).hasSize(1);
+        assertThat(cursors.get(0).getRoomId()).isEqualTo(roomId);
+        assertThat(cursors.get(0).getLastReadMessageId()).isEqualTo(third.getId());
+    }
+
+    @Test
+    void persistedCursorsAreCountedFromOnFirstLoad() {
+        User reader = createUser("stored-reader");
+        User writer = createUser("stored-writer");
+        String roomId = "topic-7102";
+        chatMessageRepository.save(new ChatMessage("old", writer, roomId));
+        ChatMessage seen = chatMessageRepository.save(new ChatMessage("seen", writer, roomId));
+        chatMessageRepository.save(new ChatMessage("new", writer, roomId));
+
+        RoomReadCursor cursor = new RoomReadCursor();
+        cursor.setUser(reader);
+        cursor.setRoomId(roomId);
+        cursor.setLastReadMessageId(seen.getId());
+        cursor.setUpdatedAt(LocalDateTime.now());
+        cursorRepository.save(cursor);
+
+        RoomUnread unread = unreadFor(reader, roomId);
+        assertThat(unread.getUnreadCount()).isEqualTo(1);
+        assertThat(unread.getLastReadMessageId()).isEqualTo(seen.getId());
+    }
+
+    @Test
+    void markReadRejectsMissingMessageId() {
+        User reader = createUser("invalid-reader");
+        ChatMessage elsewhere = chatMessageRepository.save(new ChatMessage("elsewhere", reader, "topic-7104"));
+
+        assertThatThrownBy(() -> unreadCounterService.markRead(reader.getId(), "topic-7103", null))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 存在しないID・別のルームのメッセージIDでは既読位置を進めない
+        assertThatThrownBy(() -> unreadCounterService.markRead(reader.getId(), "topic-7103", Long.MAX_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> unreadCounterService.markRead(reader.getId(), "topic-7103", elsewhere.getId()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(unreadCounterService.getUnreadCounts(reader.getId()))
+                .extracting(RoomUnread::getRoomId)
+                .doesNotContain("topic-7103");
+    }
+
+    @Test
+    void markReadRequiresAccessToRoom() {
+        User owner = createUser("access-owner");
+        User outsider = createUser("access-outsider");
+        Group group = groupService.createGroup("access group", "desc", Group.GroupType.INVITE_ONLY, owner.getId(), null);
+        String roomId = "group-" + group.getId();
+        ChatMessage message = chatMessageRepository.save(new ChatMessage("private", owner, roomId));
+
+        assertThatThrownBy(() -> unreadCounterService.markRead(outsider.getId(), roomId, message.getId()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> unreadCounterService.markRead(outsider.getId(), "friend-999999", message.getId()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> unreadCounterService.markRead(outsider.getId(), "bogus-room", message.getId()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(unreadCounterService.getUnreadCounts(outsider.getId()))
+                .extracting(RoomUnread::getRoomId)
+                .doesNotContain(roomId);
+
+        assertThat(unreadCounterService.markRead(owner.getId(), roomId, message.getId()).getUnreadCount()).isZero();
+    }
+
+    private RoomUnread unreadFor(User user, String roomId) {
+        return unreadCounterService.getUnreadCounts(user.getId()).stream()
+                .filter(unread -> unread.getRoomId().equals(roomId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setDisplayName(username + " display");
+        return userRepository.save(user);
+    }
+}
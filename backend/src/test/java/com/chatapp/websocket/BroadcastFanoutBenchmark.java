@@ -0,0 +1,131 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.ChatMessageDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 5,000人が購読するルームへの配信で、JSONへの変換が何回起きるかと1配信あたりの時間を測る（JUnitでは実行しない）
+ * 比較用に、購読者ごとにシリアライズした場合の時間も測る。
+ *
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.chatapp.websocket.BroadcastFanoutBenchmark [subscribers]
+ */
+public final class BroadcastFanoutBenchmark {
+
+    private static final int BROADCASTS = 200;
+    private static final int ROUNDS = 8;
+
+    private BroadcastFanoutBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+        AtomicLong serializations = new AtomicLong();
+        ObjectMapper objectMapper = new ObjectMapper() {
+            @Override
+            public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+                serializations.incrementAndGet();
+                return super.writeValueAsBytes(value);
+            }
+        };
+
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        SimpleBrokerMessageHandler broker =
+                new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+
+        StompEncoder stompEncoder = new StompEncoder();
+        AtomicLong delivered = new AtomicLong();
+        AtomicLong framedBytes = new AtomicLong();
+        Set<Object> payloads = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean[] frame = {false};
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                return;
+            }
+            delivered.incrementAndGet();
+            payloads.add(message.getPayload());
+            if (frame[0]) {
+                // StompSubProtocolHandler と同じく、購読者ごとにSTOMPフレームを組み立てる
+                StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+                accessor.setSubscriptionId(SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+                accessor.setDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+                accessor.setMessageId(String.valueOf(delivered.get()));
+                accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                framedBytes.addAndGet(stompEncoder.encode(accessor.getMessageHeaders(), (byte[]) message.getPayload()).length);
+            }
+        });
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId("session-" + i);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("session-" + i);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination("/topic/topic-1");
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        ChatBroadcaster broadcaster = new ChatBroadcaster(new SimpMessagingTemplate(brokerChannel),
+                new StaticListableBeanFactory().getBeanProvider(ClusterFanout.class), objectMapper,
+                new SimpleMeterRegistry());
+        ChatMessageDto dto = new ChatMessageDto("a typical chat message of moderate length", "alice", "topic-1", "CHAT");
+        dto.setId(123456L);
+        dto.setSenderDisplayName("Alice");
+        dto.setTimestamp("2025-01-02 03:04:05");
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            frame[0] = round % 2 == 0;
+            serializations.set(0);
+            delivered.set(0);
+            framedBytes.set(0);
+            payloads.clear();
+            long start = System.nanoTime();
+            for (int i = 0; i < BROADCASTS; i++) {
+                broadcaster.broadcast("/topic/topic-1", dto);
+            }
+            long fanoutNanos = System.nanoTime() - start;
+            long serialized = serializations.get();
+
+            // 比較: 購読者ごとにシリアライズした場合に、シリアライズだけで増える時間
+            start = System.nanoTime();
+            for (int i = 0; i < BROADCASTS / 10; i++) {
+                for (int s = 0; s < subscribers; s++) {
+                    objectMapper.writeValueAsBytes(dto);
+                }
+            }
+            long perSubscriberNanos = (System.nanoTime() - start) * 10;
+
+            System.out.printf("round %d%s: serialize-once %.2f ms/broadcast (%d serializations, %d deliveries,"
+                            + " %d distinct payload arrays%s) | per-subscriber serialization alone %.2f ms/broadcast%n",
+                    round, frame[0] ? " +stomp framing" : "", fanoutNanos / 1e6 / BROADCASTS, serialized,
+                    delivered.get(), payloads.size(),
+                    frame[0] ? String.format(", %.0f B framed/broadcast", (double) framedBytes.get() / BROADCASTS) : "",
+                    perSubscriberNanos / 1e6 / BROADCASTS);
+        }
+        broker.stop();
+    }
+}
@@ -0,0 +1,79 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.ChatMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ChatBroadcasterTest {
+
+    private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    private final SimpleBrokerMessageHandler broker =
+            new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+    private final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper = spy(new ObjectMapper());
+    private final ChatBroadcaster broadcaster = new ChatBroadcaster(new SimpMessagingTemplate(brokerChannel),
+            new StaticListableBeanFactory().getBeanProvider(ClusterFanout.class), objectMapper, new SimpleMeterRegistry());
+
+    @AfterEach
+    void stopBroker() {
+        broker.stop();
+    }
+
+    @Test
+    void broadcastIsSerializedOnceAndSharedByEverySubscriber() throws Exception {
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                delivered.add(message);
+            }
+        });
+        broker.start();
+        for (int i = 0; i < 3; i++) {
+            subscribe("session-" + i, "/topic/topic-1");
+        }
+        subscribe("other", "/topic/topic-2");
+
+        ChatMessageDto dto = new ChatMessageDto("hello", "alice", "topic-1", "CHAT");
+        broadcaster.broadcast("/topic/topic-1", dto);
+
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+        assertThat(delivered).hasSize(3);
+        Object payload = delivered.get(0).getPayload();
+        assertThat(delivered).allSatisfy(message -> assertThat(message.getPayload()).isSameAs(payload));
+        assertThat(objectMapper.readValue((byte[]) payload, Map.class)).containsEntry("content", "hello");
+    }
+
+    private void subscribe(String sessionId, String destination) {
+        broker.handleMessage(frame(SimpMessageType.CONNECT, sessionId, null));
+        broker.handleMessage(frame(SimpMessageType.SUBSCRIBE, sessionId, destination));
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-1");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,60 @@
+package com.chatapp.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterFanoutTest {
+
+    private final InMemoryClusterBus bus = new InMemoryClusterBus();
+
+    @Test
+    void broadcastsReachOnlyNodesWithLocalSubscribers() {
+        Node a = new Node();
+        Node b = new Node();
+        Node c = new Node();
+
+        b.fanout.subscribed("session-b", "sub-1", "/topic/room-1");
+        c.fanout.subscribed("session-c", "sub-1", "/topic/room-2");
+
+        a.fanout.publish("/topic/room-1", "{\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(b.delivered).hasSize(1);
+        Message<?> message = b.delivered.get(0);
+        assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders())).isEqualTo("/topic/room-1");
+        assertThat(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"content\":\"hi\"}");
+        assertThat(c.delivered).isEmpty();
+        assertThat(a.delivered).isEmpty();
+    }
+
+    @Test
+    void busSubscriptionIsReleasedWhenLastLocalSubscriberLeaves() {
+        Node a = new Node();
+        Node b = new Node();
+
+        b.fanout.subscribed("session-1", "sub-1", "/topic/room-1");
+        b.fanout.subscribed("session-2", "sub-1", "/topic/room-1");
+        b.fanout.unsubscribed("session-1", "sub-1");
+        a.fanout.publish("/topic/room-1", new byte[] {'1'});
+        assertThat(b.delivered).hasSize(1);
+
+        b.fanout.disconnected("session-2");
+        a.fanout.publish("/topic/room-1", new byte[] {'2'});
+        assertThat(b.delivered).hasSize(1);
+    }
+
+    private final class Node {
+        final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+        final ClusterFanout fanout = new ClusterFanout(bus,
+                new SimpMessagingTemplate((message, timeout) -> delivered.add(message)),
+                new SimpleMeterRegistry());
+    }
+}
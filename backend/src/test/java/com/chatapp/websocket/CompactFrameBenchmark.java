@@ -0,0 +1,72 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.ChatMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSONとコンパクト形式の、1配信あたりのエンコード時間とペイロードサイズの比較（JUnitでは実行しない）
+ *
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.chatapp.websocket.CompactFrameBenchmark [subscribers]
+ */
+public final class CompactFrameBenchmark {
+
+    private static final int ROOMS = 20;
+    private static final int SENDERS = 200;
+    private static final int MESSAGES = 20_000;
+    private static final int ROUNDS = 10;
+
+    private CompactFrameBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<ChatMessageDto> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            ChatMessageDto dto = new ChatMessageDto("message number " + i + " with some typical chat text",
+                    "user" + (i % SENDERS), "topic-" + (i % ROOMS), "CHAT");
+            dto.setId(1_000_000L + i);
+            dto.setSenderDisplayName("Display Name " + (i % SENDERS));
+            dto.setTimestamp("2025-01-02 03:04:05");
+            messages.add(dto);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            // JSON: 配信ごとに1回シリアライズし、全購読者に同じバイト列を送る
+            long jsonBytes = 0;
+            long start = System.nanoTime();
+            for (ChatMessageDto dto : messages) {
+                jsonBytes += objectMapper.writeValueAsBytes(dto).length;
+            }
+            long jsonNanos = System.nanoTime() - start;
+
+            // コンパクト形式: ブローカーに渡すJSONを1回解析し、購読者（セッション）ごとにエンコードする
+            List<CompactChatFrameCodec.Encoder> sessions = new ArrayList<>(subscribers);
+            for (int i = 0; i < subscribers; i++) {
+                sessions.add(new CompactChatFrameCodec.Encoder(1024));
+            }
+            long compactBytes = 0;
+            start = System.nanoTime();
+            for (ChatMessageDto dto : messages) {
+                byte[] json = objectMapper.writeValueAsBytes(dto);
+                CompactChatFrameCodec.Prepared prepared =
+                        CompactChatFrameCodec.prepare(objectMapper.readValue(json, ChatMessageDto.class));
+                for (CompactChatFrameCodec.Encoder session : sessions) {
+                    compactBytes += session.encode(prepared).length;
+                }
+            }
+            long compactNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: json %.0f ns/broadcast, %.1f B/frame (x%d subscribers = %.0f B)"
+                            + " | compact %.0f ns/broadcast, %.1f B/frame (x%d = %.0f B)%n",
+                    round, (double) jsonNanos / MESSAGES, (double) jsonBytes / MESSAGES, subscribers,
+                    (double) jsonBytes * subscribers / MESSAGES,
+                    (double) compactNanos / MESSAGES, (double) compactBytes / MESSAGES / subscribers, subscribers,
+                    (double) compactBytes / MESSAGES);
+        }
+    }
+}
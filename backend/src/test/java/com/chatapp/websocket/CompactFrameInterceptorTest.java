@@ -0,0 +1,148 @@
+package com.chatapp.websocket;
+
+import com.chatapp.config.CompactFrameProperties;
+import com.chatapp.config.WebSocketTransportProperties;
+import com.chatapp.dto.ChatMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CompactFrameInterceptorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void codecRoundTripsAndInternsRoomsAndSenders() {
+        CompactChatFrameCodec.Encoder encoder = new CompactChatFrameCodec.Encoder(16);
+        CompactChatFrameCodec.Decoder decoder = new CompactChatFrameCodec.Decoder();
+
+        ChatMessageDto first = message(1L, "hello", "alice");
+        ChatMessageDto second = message(2L, "hello", "alice");
+        byte[] firstFrame = encoder.encode(first);
+        byte[] secondFrame = encoder.encode(second);
+
+        assertThat(secondFrame.length).isLessThan(firstFrame.length);
+        assertSameMessage(decoder.decode(firstFrame), first);
+        assertSameMessage(decoder.decode(secondFrame), second);
+    }
+
+    @Test
+    void valuesAreSentInlineWhenInterningIsDisabled() {
+        CompactChatFrameCodec.Encoder encoder = new CompactChatFrameCodec.Encoder(0);
+        CompactChatFrameCodec.Decoder decoder = new CompactChatFrameCodec.Decoder();
+
+        byte[] firstFrame = encoder.encode(message(1L, "same", "bob"));
+        byte[] secondFrame = encoder.encode(message(2L, "same", "bob"));
+
+        assertThat(secondFrame.length).isEqualTo(firstFrame.length);
+        decoder.decode(firstFrame);
+        assertSameMessage(decoder.decode(secondFrame), message(2L, "same", "bob"));
+    }
+
+    @Test
+    void compactSubscriptionsReceiveEncodedFramesAndOthersKeepJson() throws Exception {
+        CompactFrameInterceptor interceptor = interceptor(WebSocketTransportProperties.SlowConsumerPolicy.DISCONNECT);
+        interceptor.preSend(subscribe("s1", "sub-compact", true, true), channel);
+        interceptor.preSend(subscribe("s1", "sub-json", false, true), channel);
+
+        ChatMessageDto dto = message(10L, "broadcast", "carol");
+        byte[] json = objectMapper.writeValueAsBytes(dto);
+
+        Message<?> compact = interceptor.preSend(outbound("s1", "sub-compact", json), channel);
+        assertThat(compact.getPayload()).isNotSameAs(json);
+        assertThat(compact.getHeaders().get(MessageHeaders.CONTENT_TYPE))
+                .isEqualTo(CompactChatFrameCodec.MIME_TYPE);
+        assertSameMessage(new CompactChatFrameCodec.Decoder().decode((byte[]) compact.getPayload()), dto);
+        assertThat(meterRegistry.counter("chat.websocket.compact.bytes-saved").count()).isPositive();
+
+        Message<?> plain = interceptor.preSend(outbound("s1", "sub-json", json), channel);
+        assertThat(plain.getPayload()).isSameAs(json);
+    }
+
+    @Test
+    void sockJsSessionsAreServedJson() throws Exception {
+        CompactFrameInterceptor interceptor = interceptor(WebSocketTransportProperties.SlowConsumerPolicy.DISCONNECT);
+        interceptor.preSend(subscribe("s2", "sub-1", true, false), channel);
+
+        byte[] json = objectMapper.writeValueAsBytes(message(11L, "text only", "dave"));
+        assertThat(interceptor.preSend(outbound("s2", "sub-1", json), channel).getPayload()).isSameAs(json);
+        assertThat(meterRegistry.counter("chat.websocket.compact.rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    void sendsFromCompactSessionsPassThroughUnchanged() throws Exception {
+        CompactFrameInterceptor interceptor = interceptor(WebSocketTransportProperties.SlowConsumerPolicy.DISCONNECT);
+        interceptor.preSend(subscribe("s3", "sub-compact", true, true), channel);
+
+        // クライアントからの SEND には購読IDがない
+        byte[] json = objectMapper.writeValueAsBytes(message(null, "from client", "erin"));
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("s3");
+        accessor.setDestination("/app/chat.sendMessage");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        Message<byte[]> send = MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+
+        assertThat(interceptor.preSend(send, channel)).isSameAs(send);
+        assertThat(meterRegistry.counter("chat.websocket.compact.frames").count()).isZero();
+    }
+
+    private CompactFrameInterceptor interceptor(WebSocketTransportProperties.SlowConsumerPolicy policy) {
+        CompactFrameProperties properties = new CompactFrameProperties();
+        properties.setEnabled(true);
+        WebSocketTransportProperties transportProperties = new WebSocketTransportProperties();
+        transportProperties.setSlowConsumerPolicy(policy);
+        return new CompactFrameInterceptor(properties, transportProperties, objectMapper, meterRegistry);
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, boolean compact, boolean binaryFrames) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/topic-1");
+        if (compact) {
+            accessor.setContentType(CompactChatFrameCodec.MIME_TYPE);
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(CompactFrameInterceptor.BINARY_FRAMES_ATTRIBUTE, binaryFrames);
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> outbound(String sessionId, String subscriptionId, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/topic-1");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+
+    private static ChatMessageDto message(Long id, String content, String sender) {
+        ChatMessageDto dto = new ChatMessageDto(content, sender, "topic-1", "CHAT");
+        dto.setId(id);
+        dto.setSenderDisplayName(sender + " display");
+        dto.setTimestamp("2025-01-02 03:04:05");
+        return dto;
+    }
+
+    private static void assertSameMessage(ChatMessageDto actual, ChatMessageDto expected) {
+        assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+    }
+}
@@ -0,0 +1,152 @@
+package com.chatapp.websocket;
+
+import com.chatapp.config.MessageRateLimitProperties;
+import com.chatapp.dto.RateLimitedDto;
+import com.chatapp.security.StompPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MessageRateLimitInterceptorTest {
+
+    private static final double ALMOST_NEVER = 0.001;
+
+    private final MessageRateLimitProperties properties = new MessageRateLimitProperties();
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final StompPrincipal alice = new StompPrincipal(1L, "alice", "Alice");
+    private final StompPrincipal bob = new StompPrincipal(2L, "bob", "Bob");
+
+    private MessageRateLimitInterceptor interceptor() {
+        return new MessageRateLimitInterceptor(properties, messagingTemplate, new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void sessionIsLimitedAndNotifiedOncePerRetryWindow() {
+        properties.setSession(new MessageRateLimitProperties.Limit(ALMOST_NEVER, 2));
+        MessageRateLimitInterceptor interceptor = interceptor();
+
+        assertThat(interceptor.preSend(send("s1", alice, "topic-1"), channel)).isNotNull();
+        assertThat(interceptor.preSend(send("s1", alice, "topic-1"), channel)).isNotNull();
+        assertThat(interceptor.preSend(send("s1", alice, "topic-1"), channel)).isNull();
+        assertThat(interceptor.preSend(send("s1", alice, "topic-1"), channel)).isNull();
+
+        ArgumentCaptor<Object> notice = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<Map<String, Object>> headers = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("alice"), eq("/queue/errors"),
+                notice.capture(), headers.capture());
+        RateLimitedDto dto = (RateLimitedDto) notice.getValue();
+        assertThat(dto.getScope()).isEqualTo(RateLimitedDto.Scope.SESSION);
+        assertThat(dto.getRoomId()).isEqualTo("topic-1");
+        assertThat(dto.getRetryAfterMs()).isPositive();
+        // 同じユーザーの他のセッションではなく、送ったセッションにだけ通知する
+        assertThat(SimpMessageHeaderAccessor.getSessionId(headers.getValue())).isEqualTo("s1");
+
+        assertThat(meterRegistry.counter("chat.websocket.rate-limit.rejected", "scope", "session").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("chat.websocket.rate-limit.accepted").count()).isEqualTo(2);
+
+        // 別のセッションは別のバケット
+        assertThat(interceptor.preSend(send("s2", alice, "topic-1"), channel)).isNotNull();
+    }
+
+    @Test
+    void userLimitSpansSessionsAndRoomLimitSpansSenders() {
+        properties.setUser(new MessageRateLimitProperties.Limit(ALMOST_NEVER, 2));
+        properties.setRoom(new MessageRateLimitProperties.Limit(ALMOST_NEVER, 3));
+        MessageRateLimitInterceptor interceptor = interceptor();
+
+        assertThat(interceptor.preSend(send("s1", alice, "topic-1"), channel)).isNotNull();
+        assertThat(interceptor.preSend(send("s2", alice, "topic-1"), channel)).isNotNull();
+        assertThat(interceptor.preSend(send("s3", alice, "topic-2"), channel)).isNull();
+
+        assertThat(interceptor.preSend(send("s4", bob, "topic-1"), channel)).isNotNull();
+        assertThat(interceptor.preSend(send("s4", bob, "topic-1"), channel)).isNull();
+        // ルームの制限で破棄された送信も、送信者自身の枠は消費する
+        assertThat(interceptor.preSend(send("s5", bob, "topic-2"), channel)).isNull();
+
+        assertThat(meterRegistry.counter("chat.websocket.rate-limit.rejected", "scope", "user").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("chat.websocket.rate-limit.rejected", "scope", "room").count()).isEqualTo(1);
+    }
+
+    @Test
+    void otherDestinationsAndDisabledLimitsPassThrough() {
+        properties.setSession(new MessageRateLimitProperties.Limit(ALMOST_NEVER, 1));
+        MessageRateLimitInterceptor interceptor = interceptor();
+        for (int i = 0; i < 5; i++) {
+            assertThat(interceptor.preSend(message("s1", alice, "/app/chat.event", "topic-1"), channel)).isNotNull();
+        }
+
+        properties.setEnabled(false);
+        for (int i = 0; i < 5; i++) {
+            assertThat(interceptor.preSend(send("s1", alice, "topic-1"), channel)).isNotNull();
+        }
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(), anyMap());
+    }
+
+    @Test
+    void bucketHandsOutExactlyBurstTokensUnderContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(ALMOST_NEVER, 1000);
+        long now = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    int acquired = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (bucket.tryAcquire(now) == 0) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertThat(total).isEqualTo(1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Message<byte[]> send(String sessionId, StompPrincipal user, String roomId) {
+        return message(sessionId, user, MessageRateLimitInterceptor.SEND_MESSAGE_DESTINATION, roomId);
+    }
+
+    private static Message<byte[]> message(String sessionId, StompPrincipal user, String destination, String roomId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setUser(user);
+        accessor.setDestination(destination);
+        String json = "{\"content\":\"hi\",\"meta\":{\"roomId\":\"nested\"},\"roomId\":\"" + roomId + "\"}";
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,131 @@
+package com.chatapp.websocket;
+
+import com.chatapp.model.User;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.security.JwtUtils;
+import com.chatapp.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.websocket.broker.heartbeat-interval-ms=200",
+        "app.presence.heartbeat-timeout-ms=1000"
+})
+@ActiveProfiles("test")
+class PresenceHeartbeatIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final ThreadPoolTaskScheduler clientScheduler = new ThreadPoolTaskScheduler();
+
+    @AfterEach
+    void disconnect() {
+        sessions.forEach(StompSession::disconnect);
+        clientScheduler.shutdown();
+    }
+
+    @Test
+    void idleSubscriberSurvivesSweepWhileHeartbeatsFlow() throws Exception {
+        User reader = createUser("presence-idle-reader");
+        User silent = createUser("presence-silent-reader");
+        String roomId = "topic-9300";
+
+        // 購読するだけで何も送らないクライアント（ハートビートだけが流れる）
+        subscribe(connect(reader, new long[] {200, 200}), roomId);
+        // ハートビートを送らないクライアントは、切断イベントがなくてもタイムアウトで外れる
+        subscribe(connect(silent, new long[] {0, 0}), roomId);
+        awaitOnline(roomId, reader.getId());
+        awaitOnline(roomId, silent.getId());
+
+        Thread.sleep(1500);
+        presenceRegistry.expireStaleSessions();
+
+        assertThat(presenceRegistry.isOnline(roomId, reader.getId())).isTrue();
+        assertThat(presenceRegistry.isOnline(roomId, silent.getId())).isFalse();
+    }
+
+    private StompSession connect(User user, long[] heartbeat) throws Exception {
+        if (!clientScheduler.isRunning()) {
+            clientScheduler.initialize();
+        }
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new StringMessageConverter());
+        client.setTaskScheduler(clientScheduler);
+        client.setDefaultHeartbeat(heartbeat);
+
+        UserPrincipal principal = UserPrincipal.create(user);
+        String token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        StompSession session = client.connectAsync("http://localhost:" + port + "/ws", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    private static void subscribe(StompSession session, String roomId) {
+        session.subscribe("/topic/" + roomId, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+            }
+        });
+    }
+
+    private void awaitOnline(String roomId, Long userId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!presenceRegistry.isOnline(roomId, userId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(presenceRegistry.isOnline(roomId, userId)).isTrue();
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setDisplayName(username + " display");
+        return userRepository.save(user);
+    }
+}
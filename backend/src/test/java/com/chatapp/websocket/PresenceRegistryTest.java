@@ -0,0 +1,94 @@
+package com.chatapp.websocket;
+
+import com.chatapp.config.PresenceProperties;
+import com.chatapp.dto.PresenceDtos.PresenceDelta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PresenceRegistryTest {
+
+    private final ChatBroadcaster broadcaster = mock(ChatBroadcaster.class);
+    private final PresenceProperties properties = new PresenceProperties();
+    private final PresenceRegistry registry = new PresenceRegistry(properties, broadcaster, new SimpleMeterRegistry());
+
+    @Test
+    void tracksUsersPerRoomAcrossSessions() {
+        registry.subscribed("s1", 1L, "sub-0", "/topic/group-1");
+        registry.subscribed("s2", 1L, "sub-0", "/topic/group-1");
+        registry.subscribed("s3", 2L, "sub-0", "/topic/group-1");
+        registry.subscribed("s3", 2L, "sub-1", "/topic/presence.group-1");
+
+        assertThat(registry.onlineCount("group-1")).isEqualTo(2);
+        assertThat(registry.onlineUserIds("group-1")).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(registry.onlineCount("presence.group-1")).isZero();
+
+        // 同じユーザーの別セッションが残っていればオンラインのまま
+        registry.disconnected("s1");
+        assertThat(registry.isOnline("group-1", 1L)).isTrue();
+        registry.unsubscribed("s2", "sub-0");
+        assertThat(registry.isOnline("group-1", 1L)).isFalse();
+        assertThat(registry.onlineUserIds("group-1")).containsExactly(2L);
+    }
+
+    @Test
+    void flushSendsOneCoalescedDeltaPerRoom() {
+        registry.subscribed("s1", 1L, "sub-0", "/topic/group-1");
+        registry.subscribed("s2", 2L, "sub-0", "/topic/group-1");
+        // 同じ期間内に入って出たユーザーは差分に含めない
+        registry.subscribed("s3", 3L, "sub-0", "/topic/group-1");
+        registry.disconnected("s3");
+
+        registry.flush();
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(broadcaster).broadcast(eq("/topic/presence.group-1"), payload.capture());
+        PresenceDelta delta = (PresenceDelta) payload.getValue();
+        assertThat(delta.getJoined()).containsExactly(1L, 2L);
+        assertThat(delta.getLeft()).isEmpty();
+        assertThat(delta.getOnlineCount()).isEqualTo(2);
+    }
+
+    @Test
+    void reconnectWithinFlushIntervalProducesNoDelta() {
+        registry.subscribed("s1", 1L, "sub-0", "/topic/group-1");
+        registry.flush();
+        clearInvocations(broadcaster);
+
+        registry.disconnected("s1");
+        registry.subscribed("s2", 1L, "sub-0", "/topic/group-1");
+        registry.flush();
+
+        verify(broadcaster, never()).broadcast(anyString(), any());
+    }
+
+    @Test
+    void sessionsWithoutHeartbeatsExpire() {
+        properties.setHeartbeatTimeoutMs(1000);
+        registry.subscribed("alive", 1L, "sub-0", "/topic/group-1");
+        registry.subscribed("stale", 2L, "sub-0", "/topic/group-1");
+        long now = System.currentTimeMillis();
+
+        registry.touch("alive");
+        registry.expireStaleSessions(now + 500);
+        assertThat(registry.onlineCount("group-1")).isEqualTo(2);
+
+        registry.expireStaleSessions(now + 5000);
+        assertThat(registry.onlineCount("group-1")).isZero();
+
+        registry.subscribed("fresh", 3L, "sub-0", "/topic/group-1");
+        registry.expireStaleSessions(System.currentTimeMillis());
+        assertThat(registry.onlineUserIds("group-1")).containsExactly(3L);
+        assertThat(PresenceRegistry.roomOf("/topic/group-1")).isEqualTo("group-1");
+        assertThat(PresenceRegistry.roomOf("/user/queue/errors")).isNull();
+    }
+}
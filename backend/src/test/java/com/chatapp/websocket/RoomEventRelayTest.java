@@ -0,0 +1,80 @@
+package com.chatapp.websocket;
+
+import com.chatapp.config.ChatEventProperties;
+import com.chatapp.dto.RoomEventDto;
+import com.chatapp.security.StompPrincipal;
+import com.chatapp.service.AnonymousNameService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RoomEventRelayTest {
+
+    private final ChatBroadcaster broadcaster = mock(ChatBroadcaster.class);
+    private final AnonymousNameService anonymousNameService = mock(AnonymousNameService.class);
+    private final ChatEventProperties properties = new ChatEventProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RoomEventRelay relay = new RoomEventRelay(properties, broadcaster, anonymousNameService, meterRegistry);
+    private final StompPrincipal alice = new StompPrincipal(1L, "alice", "Alice");
+
+    @Test
+    void repeatedStateEventsAreCoalescedPerSession() {
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.JOIN, "topic-1")).isTrue();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.JOIN, "topic-1")).isFalse();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.TYPING, "topic-1")).isTrue();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.TYPING, "topic-1")).isFalse();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.STOPPED_TYPING, "topic-1")).isTrue();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.STOPPED_TYPING, "topic-1")).isFalse();
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(broadcaster, times(3)).broadcast(eq("/topic/events.topic-1"), events.capture());
+        RoomEventDto join = (RoomEventDto) events.getAllValues().get(0);
+        assertThat(join.getType()).isEqualTo(RoomEventDto.Type.JOIN);
+        assertThat(join.getUserId()).isEqualTo(1L);
+        assertThat(join.getDisplayName()).isEqualTo("Alice");
+        assertThat(meterRegistry.counter("chat.events.dropped", "type", "JOIN", "reason", "coalesced").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void sessionsAreRateLimitedIndependently() {
+        properties.setBurst(2);
+        properties.setRatePerSecond(0.001);
+
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.JOIN, "topic-1")).isTrue();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.JOIN, "topic-2")).isTrue();
+        assertThat(relay.publish("s1", alice, RoomEventDto.Type.JOIN, "topic-3")).isFalse();
+        // 制限されたイベントは状態を進めないので、後で送り直せる
+        assertThat(relay.publish("s2", alice, RoomEventDto.Type.JOIN, "topic-3")).isTrue();
+        assertThat(meterRegistry.counter("chat.events.dropped", "type", "JOIN", "reason", "rate-limited").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void groupEventsCarryTheAnonymousName() {
+        when(anonymousNameService.getAnonymousName(1L, 7L)).thenReturn("桜(さくら)");
+
+        relay.publish("s1", alice, RoomEventDto.Type.TYPING, "group-7");
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(broadcaster).broadcast(eq("/topic/events.group-7"), event.capture());
+        assertThat(((RoomEventDto) event.getValue()).getDisplayName()).isEqualTo("桜(さくら)");
+    }
+
+    @Test
+    void rejectsEventsForSideChannels() {
+        assertThatThrownBy(
+                () -> relay.publish("s1", alice, RoomEventDto.Type.JOIN, "presence.group-1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(broadcaster);
+    }
+}
@@ -0,0 +1,99 @@
+package com.chatapp.websocket;
+
+import com.chatapp.config.WebSocketTransportProperties.SlowConsumerPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlowConsumerAwareWebSocketHandlerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Counter disconnects = meterRegistry.counter("chat.websocket.slow-consumer.disconnects");
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private CompletableFuture<Void> blockedSend;
+
+    @AfterEach
+    void releaseBlockedSend() {
+        release.countDown();
+        if (blockedSend != null) {
+            blockedSend.join();
+        }
+    }
+
+    @Test
+    void dropPolicyDiscardsOldestMessagesAndKeepsSession() throws Exception {
+        WebSocketSession session = stalledSession(SlowConsumerPolicy.DROP);
+
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(new TextMessage("message-" + i));
+        }
+
+        ConcurrentWebSocketSessionDecorator decorator = (ConcurrentWebSocketSessionDecorator) session;
+        assertThat(decorator.getBufferSize()).isLessThanOrEqualTo(decorator.getBufferSizeLimit());
+        assertThat(disconnects.count()).isZero();
+    }
+
+    @Test
+    void disconnectPolicyClosesLaggingSession() throws Exception {
+        WebSocketSession session = stalledSession(SlowConsumerPolicy.DISCONNECT);
+
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 10; i++) {
+                session.sendMessage(new TextMessage("message-" + i));
+            }
+        }).isInstanceOf(SessionLimitExceededException.class);
+
+        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(disconnects.count()).isEqualTo(1);
+    }
+
+    /**
+     * 最初の送信がブロックしたままのセッション（バッファ上限は2メッセージ分）
+     */
+    private WebSocketSession stalledSession(SlowConsumerPolicy policy) throws Exception {
+        SlowConsumerAwareWebSocketHandler handler = new SlowConsumerAwareWebSocketHandler(
+                new ExecutorSubscribableChannel(), new ExecutorSubscribableChannel(), policy, disconnects);
+        handler.setSendTimeLimit(60_000);
+        handler.setSendBufferSizeLimit(20);
+
+        WebSocketSession raw = mock(WebSocketSession.class);
+        when(raw.getId()).thenReturn("slow-session");
+        when(raw.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(raw).sendMessage(any(WebSocketMessage.class));
+
+        WebSocketSession session = handler.decorateSession(raw);
+        blockedSend = CompletableFuture.runAsync(() -> {
+            try {
+                session.sendMessage(new TextMessage("first"));
+            } catch (Exception ignored) {
+                // 切断された場合は送信中の例外になる
+            }
+        });
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        return session;
+    }
+}
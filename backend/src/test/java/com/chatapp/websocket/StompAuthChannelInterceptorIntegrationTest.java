@@ -0,0 +1,102 @@
+package com.chatapp.websocket;
+
+import com.chatapp.dto.ChatMessageDto;
+import com.chatapp.model.ChatMessage;
+import com.chatapp.model.User;
+import com.chatapp.repository.ChatMessageRepository;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.security.JwtUtils;
+import com.chatapp.security.StompPrincipal;
+import com.chatapp.security.UserPrincipal;
+import com.chatapp.service.ChatMessageWriteBehind;
+import com.chatapp.service.ChatService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StompAuthChannelInterceptorIntegrationTest {
+
+    @Autowired
+    private StompAuthChannelInterceptor interceptor;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void connectBindsSessionUserUsedForSending() {
+        User user = new User();
+        user.setUsername("stomp-user");
+        user.setEmail("stomp-user@example.com");
+        user.setPassword("password");
+        user.setDisplayName("Stomp User");
+        user = userRepository.save(user);
+        UserPrincipal userPrincipal = UserPrincipal.create(user);
+        String token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userPrincipal, null, userPrincipal.getAuthorities()));
+
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.addNativeHeader("Authorization", "Bearer " + token);
+        connect.setLeaveMutable(true);
+        Message<?> result = interceptor.preSend(
+                MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()), channel);
+
+        StompPrincipal principal = (StompPrincipal) StompHeaderAccessor.wrap(result).getUser();
+        assertThat(principal.getId()).isEqualTo(user.getId());
+        assertThat(principal.getDisplayName()).isEqualTo("Stomp User");
+
+        // 送信者はペイロードではなくセッションのユーザーから決まる
+        ChatMessageDto outgoing = new ChatMessageDto("hello", "someone-else", "topic-9100", "CHAT");
+        ChatMessageDto saved = chatService.saveMessage(outgoing, principal);
+        assertThat(saved.getSenderUsername()).isEqualTo("stomp-user");
+        assertThat(saved.getSenderDisplayName()).isEqualTo("Stomp User");
+
+        assertThat(writeBehind.flush(Duration.ofSeconds(5))).isTrue();
+        ChatMessage persisted = chatMessageRepository.findById(saved.getId()).orElseThrow();
+        assertThat(persisted.getSender().getId()).isEqualTo(user.getId());
+    }
+
+    @Test
+    void framesWithoutAuthenticatedSessionAreRejected() {
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setLeaveMutable(true);
+        assertThatThrownBy(() -> interceptor.preSend(
+                MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()), channel))
+                .isInstanceOf(BadCredentialsException.class);
+
+        StompHeaderAccessor send = StompHeaderAccessor.create(StompCommand.SEND);
+        send.setDestination("/app/chat.sendMessage");
+        assertThatThrownBy(() -> interceptor.preSend(
+                MessageBuilder.createMessage(new byte[0], send.getMessageHeaders()), channel))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+}
@@ -0,0 +1,48 @@
+package com.chatapp.websocket;
+
+import com.chatapp.config.WebSocketTransportProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebSocketConfigTest {
+
+    private static final boolean JAVA_21 = Runtime.version().feature() >= 21;
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final WebSocketConfig config = new WebSocketConfig();
+
+    WebSocketConfigTest() {
+        ReflectionTestUtils.setField(config, "environment", environment);
+    }
+
+    @Test
+    void inboundFollowsSharedSettingAndFallsBackBelowJava21() {
+        WebSocketTransportProperties.Inbound inbound = new WebSocketTransportProperties.Inbound();
+        assertThat(config.useVirtualThreads(inbound)).isFalse();
+
+        // VIRTUAL_THREADS_ENABLED=true だけを設定した場合、Java 17 でも起動は止めない
+        environment.setProperty("spring.threads.virtual.enabled", "true");
+        assertThat(config.useVirtualThreads(inbound)).isEqualTo(JAVA_21);
+    }
+
+    @Test
+    void explicitSettingOverridesSharedSetting() {
+        environment.setProperty("spring.threads.virtual.enabled", "true");
+        WebSocketTransportProperties.Inbound inbound = new WebSocketTransportProperties.Inbound();
+        inbound.setVirtualThreads(false);
+        assertThat(config.useVirtualThreads(inbound)).isFalse();
+
+        inbound.setVirtualThreads(true);
+        if (JAVA_21) {
+            assertThat(config.useVirtualThreads(inbound)).isTrue();
+        } else {
+            assertThatThrownBy(() -> config.useVirtualThreads(inbound))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Java 21");
+        }
+    }
+}
@@ -1,7 +1,7 @@
 'use client';
 
 import { useState, useEffect, useRef } from 'react';
-import { ChatMessage, chatService, authService, anonymousService } from '@/services/api';
+import { ChatMessage, ChatMessagePage, chatService, authService, anonymousService } from '@/services/api';
 import websocketService from '@/services/websocket';
 
 interface ChatRoomProps {
@@ -18,16 +18,41 @@ export default function ChatRoom({ user, roomId, chatType, chatId, onLogout }: C
   const [connected, setConnected] = useState(false);
   const [error, setError] = useState<string | null>(null);
   const [anonymousNames, setAnonymousNames] = useState<Record<number, string>>({});
+  const [nextCursor, setNextCursor] = useState<number | null>(null);
+  const [hasMore, setHasMore] = useState(false);
+  const [loadingOlder, setLoadingOlder] = useState(false);
   const messagesEndRef = useRef<HTMLDivElement>(null);
+  // 古いメッセージを先頭に足したときは一番下までスクロールしない
+  const skipScrollRef = useRef(false);
 
   const scrollToBottom = () => {
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
   };
 
   useEffect(() => {
+    if (skipScrollRef.current) {
+      skipScrollRef.current = false;
+      return;
+    }
     scrollToBottom();
   }, [messages]);
 
+  // チャットタイプに応じて適切なエンドポイントから1ページ分の履歴を取得
+  const fetchPage = (before?: number): Promise<ChatMessagePage> => {
+    if (chatType === 'group' && chatId) {
+      return chatService.getGroupMessages(chatId, before);
+    } else if (chatType === 'friend' && chatId) {
+      return chatService.getFriendMessages(chatId, before);
+    } else if (chatType === 'topic' && chatId) {
+      return chatService.getGroupMessages(chatId, before); // トピックもグループと同じAPI
+    }
+    return chatService.getMessages(roomId, before);
+  };
+
+  // JOIN/LEAVEメッセージは表示しない
+  const visibleMessages = (page: ChatMessagePage) =>
+    page.messages.filter(msg => msg.messageType !== 'JOIN' && msg.messageType !== 'LEAVE');
+
   useEffect(() => {
     // 認証状態をチェック
     if (!authService.isAuthenticated()) {
@@ -41,28 +66,13 @@ export default function ChatRoom({ user, roomId, chatType, chatId, onLogout }: C
     // 過去のメッセージを取得
     const loadMessages = async () => {
       try {
-        let pastMessages;
-        
-        // チャットタイプに応じて適切なエンドポイントを使用
-        if (chatType === 'group' && chatId) {
-          console.log('Loading group messages for groupId:', chatId);
-          pastMessages = await chatService.getGroupMessages(chatId);
-        } else if (chatType === 'friend' && chatId) {
-          console.log('Loading friend messages for friendshipId:', chatId);
-          pastMessages = await chatService.getFriendMessages(chatId);
-        } else if (chatType === 'topic' && chatId) {
-          console.log('Loading topic messages for topicId:', chatId);
-          pastMessages = await chatService.getGroupMessages(chatId); // トピックもグループと同じAPI
-        } else {
-          console.log('Loading general messages for roomId:', roomId);
-          pastMessages = await chatService.getMessages(roomId);
-        }
+        console.log('Loading messages for', chatType ?? 'general', chatId ?? roomId);
+        const page = await fetchPage();
         
-        // JOIN/LEAVEメッセージをフィルタリング
-        const filteredMessages = pastMessages.filter(
-          msg => msg.messageType !== 'JOIN' && msg.messageType !== 'LEAVE'
-        );
+        const filteredMessages = visibleMessages(page);
         setMessages(filteredMessages); // サーバーから時系列順で取得
+        setNextCursor(page.nextCursor);
+        setHasMore(page.hasMore);
         console.log('Messages loaded:', filteredMessages.length, 'messages');
         
         // グループチャットの場合、匿名名マップを取得
@@ -161,13 +171,39 @@ export default function ChatRoom({ user, roomId, chatType, chatId, onLogout }: C
   // 定期的にサーバーからメッセージを同期（オプション）
   const refreshMessages = async () => {
     try {
-      const freshMessages = await chatService.getMessages(roomId);
-      setMessages(freshMessages); // サーバーから時系列順で取得
+      const page = await fetchPage();
+      setMessages(visibleMessages(page)); // サーバーから時系列順で取得
+      setNextCursor(page.nextCursor);
+      setHasMore(page.hasMore);
     } catch (error) {
       console.error('Failed to refresh messages:', error);
     }
   };
 
+  // 表示中の一番古いメッセージより前のページを読み込んで先頭に足す
+  const loadOlderMessages = async () => {
+    if (!hasMore || nextCursor === null || loadingOlder) {
+      return;
+    }
+    setLoadingOlder(true);
+    try {
+      const page = await fetchPage(nextCursor);
+      const older = visibleMessages(page);
+      skipScrollRef.current = true;
+      setMessages((prev) => {
+        const known = new Set(prev.map(m => m.id));
+        return [...older.filter(m => !m.id || !known.has(m.id)), ...prev];
+      });
+      setNextCursor(page.nextCursor);
+      setHasMore(page.hasMore);
+    } catch (error) {
+      console.error('Failed to load older messages:', error);
+      setError('過去のメッセージの読み込みに失敗しました');
+    } finally {
+      setLoadingOlder(false);
+    }
+  };
+
   const getMessageSenderName = (message: ChatMessage) => {
     // グループチャットの場合は匿名名を使用
     if (chatType === 'group' && message.senderUsername) {
@@ -231,6 +267,15 @@ export default function ChatRoom({ user, roomId, chatType, chatId, onLogout }: C
 
       {/* メッセージリスト */}
       <div style={{ flex: 1, overflowY: 'auto', padding: '1rem', display: 'flex', flexDirection: 'column', gap: '0.75rem' }}>
+        {hasMore && (
+          <button
+            onClick={loadOlderMessages}
+            disabled={loadingOlder}
+            style={{ alignSelf: 'center', padding: '0.25rem 0.75rem', fontSize: '0.75rem', color: '#EEEEEE', backgroundColor: '#222831', border: '1px solid #00ADB5', borderRadius: '0.375rem', cursor: loadingOlder ? 'not-allowed' : 'pointer', opacity: loadingOlder ? 0.5 : 1 }}
+          >
+            {loadingOlder ? '読み込み中...' : '過去のメッセージを読み込む'}
+          </button>
+        )}
         {messages.map((message, index) => {
           const isMyMessage = message.senderUsername === user.username;
           
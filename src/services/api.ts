@@ -101,6 +101,13 @@ export interface ChatMessage {
   timestamp?: string;
 }
 
+// 履歴APIのページ（messages は古い→新しい順。さらに古いページは nextCursor を before に渡して取得する）
+export interface ChatMessagePage {
+  messages: ChatMessage[];
+  nextCursor: number | null;
+  hasMore: boolean;
+}
+
 // フレンド関連の型定義
 export interface Friend {
   id: number;
@@ -127,6 +134,13 @@ export interface User {
   createdAt: string;
 }
 
+// ユーザー名の前方一致検索の1ページ。nextCursor を after に渡すと続きを取得する
+export interface UserSearchPage {
+  users: User[];
+  nextCursor: string | null;
+  hasMore: boolean;
+}
+
 export interface FriendStats {
   totalFriends: number;
   pendingRequests: number;
@@ -259,8 +273,8 @@ export const userService = {
     return response.data;
   },
 
-  async searchUsers(query: string): Promise<User[]> {
-    const response = await api.get('/users/search', { params: { query } });
+  async searchUsers(query: string, after?: string, limit = 20): Promise<UserSearchPage> {
+    const response = await api.get('/users/search', { params: { query, after, limit } });
     return response.data;
   },
 
@@ -398,18 +412,18 @@ export const groupService = {
 };
 
 export const chatService = {
-  async getMessages(roomId: string): Promise<ChatMessage[]> {
-    const response = await api.get(`/chat/messages/${roomId}`);
+  async getMessages(roomId: string, before?: number): Promise<ChatMessagePage> {
+    const response = await api.get(`/chat/messages/${roomId}`, { params: { before } });
     return response.data;
   },
 
-  async getGroupMessages(groupId: number): Promise<ChatMessage[]> {
-    const response = await api.get(`/chat/groups/${groupId}/messages`);
+  async getGroupMessages(groupId: number, before?: number): Promise<ChatMessagePage> {
+    const response = await api.get(`/chat/groups/${groupId}/messages`, { params: { before } });
     return response.data;
   },
 
-  async getFriendMessages(friendshipId: number): Promise<ChatMessage[]> {
-    const response = await api.get(`/chat/friends/${friendshipId}/messages`);
+  async getFriendMessages(friendshipId: number, before?: number): Promise<ChatMessagePage> {
+    const response = await api.get(`/chat/friends/${friendshipId}/messages`, { params: { before } });
     return response.data;
   },
 };
@@ -2,12 +2,32 @@ import { Client, IFrame } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 import { ChatMessage } from './api';
 
+export type RoomEventType = 'JOIN' | 'LEAVE' | 'TYPING' | 'STOPPED_TYPING';
+
+export interface RoomEvent {
+  type: RoomEventType;
+  roomId: string;
+  userId: number;
+  displayName?: string;
+  sentAt: number;
+}
+
+// 送信制限を超えたメッセージは保存されず、このセッションの /user/queue/errors に通知される
+export interface RateLimitedNotice {
+  error: 'RATE_LIMITED';
+  scope: 'SESSION' | 'USER' | 'ROOM';
+  destination: string;
+  roomId?: string;
+  retryAfterMs: number;
+}
+
 class WebSocketService {
   private stompClient: Client | null = null;
   private connected = false;
   private connecting = false;
   private subscriptions: Map<string, any> = new Map();
   private connectionPromise: Promise<void> | null = null;
+  private rateLimitedListeners: Set<(notice: RateLimitedNotice) => void> = new Set();
 
   connect(): Promise<void> {
     // 既に接続済みの場合
@@ -33,9 +53,12 @@ class WebSocketService {
       console.log('Connecting to WebSocket:', wsUrl);
       const socket = new SockJS(wsUrl);
       
+      // サーバーはSTOMPのCONNECTでJWTを検証し、以降はセッションのユーザーとして扱う
+      const token = typeof window !== 'undefined' ? localStorage.getItem('token') : null;
+
       this.stompClient = new Client({
         webSocketFactory: () => socket,
-        connectHeaders: {},
+        connectHeaders: token ? { Authorization: `Bearer ${token}` } : {},
         debug: (str) => {
           console.log('STOMP: ' + str);
         },
@@ -48,6 +71,15 @@ class WebSocketService {
         this.connected = true;
         this.connecting = false;
         console.log('WebSocket connected successfully');
+        this.stompClient?.subscribe('/user/queue/errors', (message) => {
+          try {
+            const notice: RateLimitedNotice = JSON.parse(message.body);
+            console.warn(`Message dropped by rate limit (${notice.scope}), retry after ${notice.retryAfterMs}ms`);
+            this.rateLimitedListeners.forEach((listener) => listener(notice));
+          } catch (error) {
+            console.error('Failed to parse error notice:', error);
+          }
+        });
         resolve();
       };
 
@@ -151,6 +183,37 @@ class WebSocketService {
     }
   }
 
+  // 入室・退室・入力中の一時イベント（サーバーには保存されない）
+  sendRoomEvent(roomId: string, type: RoomEventType) {
+    if (this.stompClient && this.connected) {
+      this.stompClient.publish({
+        destination: '/app/chat.event',
+        body: JSON.stringify({ roomId, type }),
+      });
+    }
+  }
+
+  subscribeRoomEvents(roomId: string, onEvent: (event: RoomEvent) => void): () => void {
+    if (!this.stompClient || !this.connected) {
+      return () => {};
+    }
+    const subscription = this.stompClient.subscribe(`/topic/events.${roomId}`, (message) => {
+      try {
+        onEvent(JSON.parse(message.body));
+      } catch (error) {
+        console.error('Failed to parse room event:', error);
+      }
+    });
+    return () => subscription.unsubscribe();
+  }
+
+  onRateLimited(listener: (notice: RateLimitedNotice) => void): () => void {
+    this.rateLimitedListeners.add(listener);
+    return () => {
+      this.rateLimitedListeners.delete(listener);
+    };
+  }
+
   disconnect() {
     if (this.stompClient) {
       // すべてのサブスクリプションを解除